@@ -0,0 +1,476 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Predicate;
+import org.predicode.predicator.terms.PlainTerm;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.predicode.predicator.RuleBase.NO_RULES;
+import static org.predicode.predicator.RuleBase.ruleList;
+import static org.predicode.predicator.RuleBase.rulesToString;
+import static org.predicode.predicator.RuleBase.select;
+
+
+/**
+ * Predicate resolution rule base with just-in-time multi-argument indexes.
+ *
+ * <p>Unlike {@link RuleBase}, this rule base is not limited to the first term. It records which call terms are
+ * {@link PlainTerm#isIndexKey() index keys} at call time for each call shape, i.e. for each call length. Once the
+ * term at some position has been an index key in {@link #MIN_KEYED_CALLS enough} calls of the same shape, the hash
+ * index on that position is built lazily. The index is only kept if it is selective, i.e. the patterns at that
+ * position contain more than one distinct key. Otherwise the position is never considered again.</p>
+ *
+ * <p>When selecting the rules, each index on a position the call has a key at is consulted, and the smallest of
+ * the found buckets is matched. Prefix patterns are always matched. The matching rules are selected in the order
+ * they are declared.</p>
+ *
+ * <p>The built indexes along with their hit rates are available via {@link #getIndexes()}.</p>
+ *
+ * <p>This rule base is thread-safe.</p>
+ */
+@ThreadSafe
+public final class AdaptiveRuleBase implements Rule.Selector {
+
+    /**
+     * The number of calls of the same shape with index key at some position required to index that position.
+     */
+    static final int MIN_KEYED_CALLS = 8;
+
+    /**
+     * The minimum number of exact patterns of the same length worth indexing.
+     */
+    static final int MIN_INDEXED_RULES = 8;
+
+    /**
+     * A marker of the position not worth indexing.
+     */
+    private static final Index REJECTED = new Index(-1, -1, Collections.emptyMap(), NO_RULES);
+
+    /**
+     * Constructs adaptive rule base containing the given rules.
+     *
+     * @param rules rules to select from.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static AdaptiveRuleBase of(@Nonnull Rule... rules) {
+        return of(Arrays.asList(rules));
+    }
+
+    /**
+     * Constructs adaptive rule base containing the given rules.
+     *
+     * @param rules rules to select from in the order of their selection.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static AdaptiveRuleBase of(@Nonnull Iterable<? extends Rule> rules) {
+
+        final ArrayList<Rule> list = new ArrayList<>();
+        final HashMap<Integer, RuleBase.Indices> exact = new HashMap<>();
+        final RuleBase.Indices prefix = new RuleBase.Indices();
+
+        for (final Rule rule : rules) {
+
+            final int index = list.size();
+            final Rule.Pattern pattern = rule.getCondition();
+
+            list.add(rule);
+            if (pattern.isPrefix()) {
+                prefix.add(index);
+            } else {
+                exact.computeIfAbsent(pattern.getTerms().size(), length -> new RuleBase.Indices()).add(index);
+            }
+        }
+
+        final Rule[] array = list.toArray(new Rule[0]);
+        final HashMap<Integer, Shape> shapes = new HashMap<>(exact.size() * 4 / 3 + 1);
+
+        exact.forEach((length, indices) -> shapes.put(length, new Shape(array, length, indices.toArray())));
+
+        return new AdaptiveRuleBase(array, shapes, prefix.toArray());
+    }
+
+    @Nonnull
+    private final Rule[] rules;
+
+    @Nonnull
+    private final Map<Integer, Shape> shapes;
+
+    @Nonnull
+    private final int[] prefix;
+
+    private AdaptiveRuleBase(@Nonnull Rule[] rules, @Nonnull Map<Integer, Shape> shapes, @Nonnull int[] prefix) {
+        this.rules = rules;
+        this.shapes = shapes;
+        this.prefix = prefix;
+    }
+
+    /**
+     * All rules of this rule base.
+     *
+     * @return readonly list of rules in the order of their selection.
+     */
+    @Nonnull
+    public final List<Rule> getRules() {
+        return ruleList(this.rules);
+    }
+
+    /**
+     * The number of rules in this rule base.
+     *
+     * @return rule count.
+     */
+    public final int size() {
+        return this.rules.length;
+    }
+
+    /**
+     * The indexes built so far.
+     *
+     * @return a list of indexes ordered by call length and term position.
+     */
+    @Nonnull
+    public final List<Index> getIndexes() {
+
+        final ArrayList<Index> indexes = new ArrayList<>();
+
+        this.shapes.values().forEach(shape -> shape.collectIndexes(indexes));
+        indexes.sort((index1, index2) -> index1.length != index2.length
+                ? Integer.compare(index1.length, index2.length)
+                : Integer.compare(index1.position, index2.position));
+
+        return indexes;
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return RuleMatches.flux(candidates(call), call, knowns);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return new RuleMatches(candidates(call), call, knowns);
+    }
+
+    /**
+     * Selects the rules that may match the given call.
+     *
+     * @param call predicate call.
+     *
+     * @return an array of candidate rules in the order of their declaration.
+     */
+    @Nonnull
+    final Rule[] candidates(@Nonnull Predicate.Call call) {
+
+        final int length = call.length();
+
+        if (length < 0) {
+            // Infinite call matches prefix patterns only
+            return select(this.rules, this.prefix, NO_RULES, NO_RULES);
+        }
+
+        final Shape shape = this.shapes.get(length);
+
+        if (shape == null) {
+            return select(this.rules, this.prefix, NO_RULES, NO_RULES);
+        }
+        if (length == 0) {
+            return select(this.rules, shape.all, this.prefix, NO_RULES);
+        }
+
+        return select(this.rules, shape.select(call.finiteTerms()), this.prefix, NO_RULES);
+    }
+
+    @Override
+    public String toString() {
+        return rulesToString(this.rules);
+    }
+
+    /**
+     * Just-in-time hash index on some term position of exact patterns of the same length.
+     */
+    @ThreadSafe
+    public static final class Index {
+
+        private final int length;
+
+        private final int position;
+
+        /**
+         * Indices of the rules with index key at {@link #position}, merged with {@link #unindexed} ones, bucketed by
+         * that key.
+         */
+        @Nonnull
+        private final Map<PlainTerm, int[]> buckets;
+
+        /**
+         * Indices of the rules with other terms at {@link #position}.
+         */
+        @Nonnull
+        private final int[] unindexed;
+
+        private final LongAdder lookups = new LongAdder();
+
+        private final LongAdder hits = new LongAdder();
+
+        private Index(int length, int position, @Nonnull Map<PlainTerm, int[]> buckets, @Nonnull int[] unindexed) {
+            this.length = length;
+            this.position = position;
+            this.buckets = buckets;
+            this.unindexed = unindexed;
+        }
+
+        /**
+         * The length of the call this index is applied to.
+         *
+         * @return the number of terms in indexed patterns.
+         */
+        public final int getLength() {
+            return this.length;
+        }
+
+        /**
+         * Indexed term position.
+         *
+         * @return zero-based index of the indexed term in pattern.
+         */
+        public final int getPosition() {
+            return this.position;
+        }
+
+        /**
+         * The number of distinct keys in this index.
+         *
+         * @return the number of index buckets.
+         */
+        public final int getKeys() {
+            return this.buckets.size();
+        }
+
+        /**
+         * The number of times this index has been consulted.
+         *
+         * @return the number of lookups.
+         */
+        public final long getLookups() {
+            return this.lookups.sum();
+        }
+
+        /**
+         * The number of lookups found the key in this index.
+         *
+         * @return the number of hits.
+         */
+        public final long getHits() {
+            return this.hits.sum();
+        }
+
+        /**
+         * The ratio of lookups found the key in this index.
+         *
+         * @return the number of hits divided by the number of lookups, or zero if there were no lookups.
+         */
+        public final double getHitRate() {
+
+            final long lookups = getLookups();
+
+            return lookups == 0 ? 0.0 : (double) getHits() / lookups;
+        }
+
+        @Nonnull
+        int[] lookup(@Nonnull PlainTerm key) {
+            this.lookups.increment();
+
+            final int[] bucket = this.buckets.get(key);
+
+            if (bucket == null) {
+                return this.unindexed;
+            }
+
+            this.hits.increment();
+
+            return bucket;
+        }
+
+        @Override
+        public String toString() {
+            return "Index[length=" + this.length
+                    + ", position=" + this.position
+                    + ", keys=" + getKeys()
+                    + ", lookups=" + getLookups()
+                    + ", hits=" + getHits()
+                    + ']';
+        }
+
+    }
+
+    /**
+     * Exact patterns of the same length along with the call statistics and indexes.
+     */
+    @ThreadSafe
+    private static final class Shape {
+
+        @Nonnull
+        private final Rule[] rules;
+
+        private final int length;
+
+        /**
+         * Indices of all rules of this shape.
+         */
+        @Nonnull
+        private final int[] all;
+
+        /**
+         * The number of calls with index key at each position.
+         */
+        @Nonnull
+        private final AtomicIntegerArray keyedCalls;
+
+        /**
+         * Index at each position, {@link #REJECTED} if the position is not worth indexing, or {@code null} if not
+         * decided yet.
+         */
+        @Nonnull
+        private final AtomicReferenceArray<Index> indexes;
+
+        Shape(@Nonnull Rule[] rules, int length, @Nonnull int[] all) {
+            this.rules = rules;
+            this.length = length;
+            this.all = all;
+            this.keyedCalls = new AtomicIntegerArray(length);
+            this.indexes = new AtomicReferenceArray<>(length);
+        }
+
+        @Nonnull
+        int[] select(@Nonnull List<? extends PlainTerm> terms) {
+
+            int[] selected = this.all;
+
+            for (int position = 0; position < this.length; ++position) {
+
+                final PlainTerm term = terms.get(position);
+
+                if (!term.isIndexKey()) {
+                    continue;
+                }
+
+                final Index index = index(position);
+
+                if (index == null) {
+                    continue;
+                }
+
+                final int[] bucket = index.lookup(term);
+
+                if (bucket.length < selected.length) {
+                    selected = bucket;
+                }
+            }
+
+            return selected;
+        }
+
+        void collectIndexes(@Nonnull List<Index> result) {
+            for (int position = 0; position < this.length; ++position) {
+
+                final Index index = this.indexes.get(position);
+
+                if (index != null && index != REJECTED) {
+                    result.add(index);
+                }
+            }
+        }
+
+        @Nullable
+        private Index index(int position) {
+
+            final Index existing = this.indexes.get(position);
+
+            if (existing != null) {
+                return existing != REJECTED ? existing : null;
+            }
+            if (this.keyedCalls.incrementAndGet(position) < MIN_KEYED_CALLS) {
+                return null;
+            }
+
+            this.indexes.compareAndSet(position, null, buildIndex(position));
+
+            final Index index = this.indexes.get(position);
+
+            return index != REJECTED ? index : null;
+        }
+
+        @Nonnull
+        private Index buildIndex(int position) {
+            if (this.all.length < MIN_INDEXED_RULES) {
+                return REJECTED;
+            }
+
+            final HashMap<PlainTerm, RuleBase.Indices> keyed = new HashMap<>();
+            final RuleBase.Indices unindexed = new RuleBase.Indices();
+
+            for (final int rule : this.all) {
+
+                final PlainTerm term = this.rules[rule].getCondition().getTerms().get(position);
+
+                if (term.isIndexKey()) {
+                    keyed.computeIfAbsent(term, key -> new RuleBase.Indices()).add(rule);
+                } else {
+                    unindexed.add(rule);
+                }
+            }
+            if (keyed.size() < 2) {
+                return REJECTED;
+            }
+
+            final int[] rest = unindexed.toArray();
+            final HashMap<PlainTerm, int[]> buckets = new HashMap<>(keyed.size() * 4 / 3 + 1);
+
+            keyed.forEach((key, indices) -> buckets.put(key, merge(indices.toArray(), rest)));
+
+            return new Index(this.length, position, buckets, rest);
+        }
+
+    }
+
+    @Nonnull
+    private static int[] merge(@Nonnull int[] first, @Nonnull int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+
+        final int[] result = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+
+        for (int r = 0; r < result.length; ++r) {
+            if (j == second.length || i < first.length && first[i] < second[j]) {
+                result[r] = first[i++];
+            } else {
+                result[r] = second[j++];
+            }
+        }
+
+        return result;
+    }
+
+}
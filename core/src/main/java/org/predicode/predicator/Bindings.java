@@ -0,0 +1,62 @@
+package org.predicode.predicator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Variable bindings store.
+ *
+ * <p>Each update returns a store containing the updated bindings, while the original store still contains the old
+ * ones. Either by sharing the structure ({@link HashTrie}), or by recording the updates on a {@link Trail trail}.</p>
+ *
+ * <p>Keys and values can not be {@code null}.</p>
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+interface Bindings<K, V> {
+
+    /**
+     * The number of bindings in this store.
+     *
+     * @return the number of keys bound to values.
+     */
+    int size();
+
+    /**
+     * Returns the value bound to the given key.
+     *
+     * @param key the key to find the value of.
+     *
+     * @return the value, or {@code null} if there is no such key in this store.
+     */
+    @Nullable
+    V get(@Nonnull Object key);
+
+    default boolean containsKey(@Nonnull Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Binds the given key to the given value.
+     *
+     * @param key the key to update the value of.
+     * @param value new value.
+     *
+     * @return updated store, or this instance if the key is already bound to the same value instance.
+     */
+    @Nonnull
+    Bindings<K, V> put(@Nonnull K key, @Nonnull V value);
+
+    /**
+     * Performs the given action for each binding of this store.
+     *
+     * <p>The order of bindings is unspecified.</p>
+     *
+     * @param action an action to perform.
+     */
+    void forEach(@Nonnull BiConsumer<? super K, ? super V> action);
+
+}
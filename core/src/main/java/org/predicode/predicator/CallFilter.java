@@ -0,0 +1,243 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.terms.PlainTerm;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Probabilistic filter of predicate calls that can not match any rule.
+ *
+ * <p>This is a Bloom filter keyed on the length of rule pattern and its leading {@link PlainTerm#isIndexKey() index
+ * key} terms, up to {@link #DEPTH} of them. The prefix patterns are keyed the same way, except they have no length.
+ * </p>
+ *
+ * <p>The call is {@link #check(int, List) checked} against the filter before selecting the rules. The filter
+ * never rejects a call that matches some rule. It may pass the call that matches none though. Such false positives
+ * are {@link #falsePositive() reported} by rule base, so the {@link #getFalsePositiveRate() false positive rate} can
+ * be monitored. The calls with leading variables or placeholders are passed without testing, so they are never
+ * reported as false positives.</p>
+ */
+@ThreadSafe
+public final class CallFilter {
+
+    /**
+     * The maximum number of leading terms the filter is keyed on.
+     */
+    static final int DEPTH = 2;
+
+    /**
+     * {@link #check(int, List) Check} result meaning the call does not match any rule.
+     */
+    static final int NO_MATCH = 0;
+
+    /**
+     * {@link #check(int, List) Check} result meaning the call key is found in the filter, so the call may match some
+     * rule.
+     */
+    static final int MAY_MATCH = 1;
+
+    /**
+     * {@link #check(int, List) Check} result meaning the call can not be tested by the filter, e.g. because of leading
+     * variable.
+     */
+    static final int UNTESTED = 2;
+
+    private static final int BITS_PER_KEY = 10;
+
+    private static final int NUM_HASHES = 5;
+
+    private static final int MAX_WORDS = 1 << 24;
+
+    /**
+     * Builds the filter for the given rules.
+     *
+     * @param rules rules to build the filter for.
+     *
+     * @return new call filter.
+     */
+    @Nonnull
+    static CallFilter build(@Nonnull Rule[] rules) {
+
+        final CallFilter filter = new CallFilter(rules.length);
+
+        for (final Rule rule : rules) {
+
+            final Rule.Pattern pattern = rule.getCondition();
+            final List<? extends PlainTerm> terms = pattern.getTerms();
+            final int limit = Math.min(DEPTH, terms.size());
+            int depth = 0;
+
+            while (depth < limit && terms.get(depth).isIndexKey()) {
+                ++depth;
+            }
+
+            filter.add(key(pattern.isPrefix() ? -1 : terms.size(), terms, depth));
+        }
+
+        return filter;
+    }
+
+    @Nonnull
+    private final long[] bits;
+
+    private final int mask;
+
+    private final LongAdder passed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private CallFilter(int numKeys) {
+
+        final long numBits = (long) numKeys * BITS_PER_KEY;
+        final int numWords = (int) Math.min((numBits + 63) >>> 6, MAX_WORDS);
+        final int size = Integer.highestOneBit(Math.max(numWords, 1));
+
+        this.bits = new long[size < numWords ? size << 1 : size];
+        this.mask = (this.bits.length << 6) - 1;
+    }
+
+    /**
+     * Checks whether the call may match some rule.
+     *
+     * @param length call length, or negative value if the call is infinite.
+     * @param leading leading call terms. There should be {@link #DEPTH} of them, or less if the call is shorter.
+     *
+     * @return {@link #NO_MATCH} if the call does not match any rule, {@link #MAY_MATCH} if it may match some rule, or
+     * {@link #UNTESTED} if the call is passed without testing.
+     */
+    final int check(int length, @Nonnull List<? extends PlainTerm> leading) {
+
+        final int size = leading.size();
+
+        for (int i = 0; i < size; ++i) {
+            if (!leading.get(i).isIndexKey()) {
+                // Variable or placeholder may match any term
+                this.passed.increment();
+                return UNTESTED;
+            }
+        }
+        for (int depth = 0; depth <= size; ++depth) {
+            if (length >= 0 && contains(key(length, leading, depth)) || contains(key(-1, leading, depth))) {
+                this.passed.increment();
+                return MAY_MATCH;
+            }
+        }
+
+        this.rejected.increment();
+
+        return NO_MATCH;
+    }
+
+    /**
+     * Reports the call {@link #MAY_MATCH passed} by this filter does not match any rule.
+     */
+    final void falsePositive() {
+        this.falsePositives.increment();
+    }
+
+    /**
+     * The number of calls passed by this filter.
+     *
+     * @return the number of calls that may match some rule.
+     */
+    public final long getPassed() {
+        return this.passed.sum();
+    }
+
+    /**
+     * The number of calls rejected by this filter.
+     *
+     * @return the number of calls that do not match any rule.
+     */
+    public final long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * The number of calls passed by this filter, but matching no rule.
+     *
+     * @return the number of false positives.
+     */
+    public final long getFalsePositives() {
+        return this.falsePositives.sum();
+    }
+
+    /**
+     * False positive rate.
+     *
+     * @return the ratio of false positives to all calls not matching any rule, or zero if there were
+     * no such calls.
+     */
+    public final double getFalsePositiveRate() {
+
+        final long falsePositives = getFalsePositives();
+        final long negatives = falsePositives + getRejected();
+
+        return negatives == 0 ? 0.0 : (double) falsePositives / negatives;
+    }
+
+    @Override
+    public String toString() {
+        return "CallFilter[passed=" + getPassed()
+                + ", rejected=" + getRejected()
+                + ", falsePositives=" + getFalsePositives()
+                + ']';
+    }
+
+    private void add(long key) {
+
+        final int h1 = (int) key;
+        final int h2 = (int) (key >>> 32);
+
+        for (int i = 0; i < NUM_HASHES; ++i) {
+
+            final int bit = (h1 + i * h2) & this.mask;
+
+            this.bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean contains(long key) {
+
+        final int h1 = (int) key;
+        final int h2 = (int) (key >>> 32);
+
+        for (int i = 0; i < NUM_HASHES; ++i) {
+
+            final int bit = (h1 + i * h2) & this.mask;
+
+            if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long key(int length, @Nonnull List<? extends PlainTerm> terms, int depth) {
+
+        long hash = 31L * length + depth;
+
+        for (int i = 0; i < depth; ++i) {
+            hash = 31L * hash + terms.get(i).hashCode();
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
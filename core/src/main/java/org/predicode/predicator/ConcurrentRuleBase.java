@@ -0,0 +1,841 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Predicate;
+import org.predicode.predicator.terms.PlainTerm;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Mutable predicate resolution rule base safe for concurrent use.
+ *
+ * <p>The rules are indexed the same way as in {@link RuleBase}, i.e. by the pattern length and the first pattern
+ * term when it is an {@link PlainTerm#isIndexKey() index key}.</p>
+ *
+ * <p>Each modification publishes a new immutable version of the rule base. The versions are built of persistent
+ * hash tries, so the new version shares all index buckets with the previous one, except the ones the modification
+ * touched. Each bucket is a persistent tree ordered by rule addition, so adding or removing a rule copies only
+ * {@code O(log n)} tree nodes of each bucket it belongs to. Readers never lock. They just read the current version
+ * and merge the ordered buckets to select the rules from it. The rules of each bucket version are laid out into
+ * an array when the bucket is read for the first time. Writers are serialized and may {@link #update(Consumer) batch}
+ * many modifications into one version.</p>
+ *
+ * <p>The current version can be pinned by taking its {@link #snapshot() snapshot}. A query resolved against the
+ * snapshot sees the same rules during the whole derivation, while writers keep creating new versions.</p>
+ *
+ * <p>The rule base contains each rule at most once. Rules are compared by identity. The matching rules are selected in
+ * the order they are added.</p>
+ */
+@ThreadSafe
+public final class ConcurrentRuleBase implements Rule.Selector {
+
+    /**
+     * Constructs empty rule base.
+     *
+     * @return new rule base without rules.
+     */
+    @Nonnull
+    public static ConcurrentRuleBase create() {
+        return new ConcurrentRuleBase();
+    }
+
+    /**
+     * Constructs rule base containing the given rules.
+     *
+     * @param rules initial rules.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static ConcurrentRuleBase of(@Nonnull Rule... rules) {
+        return of(Arrays.asList(rules));
+    }
+
+    /**
+     * Constructs rule base containing the given rules.
+     *
+     * @param rules initial rules in the order of their selection.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static ConcurrentRuleBase of(@Nonnull Iterable<? extends Rule> rules) {
+
+        final ConcurrentRuleBase ruleBase = new ConcurrentRuleBase();
+
+        ruleBase.update(batch -> rules.forEach(batch::add));
+
+        return ruleBase;
+    }
+
+    @Nonnull
+    private final Object writeLock = new Object();
+
+    @Nonnull
+    private volatile Snapshot snapshot = Snapshot.INITIAL;
+
+    private ConcurrentRuleBase() {
+    }
+
+    /**
+     * Current version number.
+     *
+     * <p>It is incremented by each update that modifies the rule base.</p>
+     *
+     * @return version number.
+     */
+    @Override
+    public final long version() {
+        return this.snapshot.number;
+    }
+
+    /**
+     * The number of rules in the current version of this rule base.
+     *
+     * @return rule count.
+     */
+    public final int size() {
+        return this.snapshot.size();
+    }
+
+    /**
+     * Adds the given rule to this rule base.
+     *
+     * @param rule a rule to add.
+     *
+     * @return {@code true} if the rule is added, or {@code false} if it is present already.
+     */
+    public final boolean add(@Nonnull Rule rule) {
+        return apply(new Batch().add(rule)) != null;
+    }
+
+    /**
+     * Removes the given rule from this rule base.
+     *
+     * @param rule a rule to remove.
+     *
+     * @return {@code true} if the rule is removed, or {@code false} if there is no such rule in this rule base.
+     */
+    public final boolean remove(@Nonnull Rule rule) {
+        return apply(new Batch().remove(rule)) != null;
+    }
+
+    /**
+     * Updates this rule base atomically.
+     *
+     * <p>All modifications recorded to the given batch are published as a single version. Readers either see none of
+     * them, or all of them.</p>
+     *
+     * @param changes a function recording modifications to the given batch.
+     *
+     * @return the number of the version after update. This is the same as the previous one if nothing has been
+     * changed.
+     */
+    public final long update(@Nonnull Consumer<? super Batch> changes) {
+
+        final Batch batch = new Batch();
+
+        changes.accept(batch);
+
+        final Snapshot updated = apply(batch);
+
+        return updated != null ? updated.number : version();
+    }
+
+    /**
+     * Applies the batch of modifications and publishes the updated version.
+     *
+     * @return updated snapshot, or {@code null} if nothing changed.
+     */
+    @Nullable
+    private Snapshot apply(@Nonnull Batch batch) {
+        synchronized (this.writeLock) {
+
+            final Snapshot snapshot = this.snapshot;
+            final Snapshot updated = batch.applyTo(snapshot);
+
+            if (updated == snapshot) {
+                return null;
+            }
+
+            return this.snapshot = updated;
+        }
+    }
+
+    /**
+     * Selects matching rules from the current version of this rule base.
+     *
+     * <p>Each call may see a different version. To resolve all calls of the same derivation against the same version,
+     * use a {@link #snapshot() snapshot} instead.</p>
+     */
+    @Nonnull
+    @Override
+    public Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return this.snapshot.matchingRules(call, knowns);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return this.snapshot.findMatchingRules(call, knowns);
+    }
+
+    /**
+     * Returns the current version of this rule base.
+     *
+     * <p>The returned snapshot never changes. It is not affected by subsequent modifications of this rule base. The
+     * rule base does not reference the old snapshots, so they are garbage collected once no query references them.
+     * Only the index buckets not shared with newer versions are reclaimed then.</p>
+     *
+     * @return a snapshot of the current version.
+     */
+    @Nonnull
+    @Override
+    public final Snapshot snapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Selects the rules that may match the given call.
+     *
+     * @param call predicate call.
+     *
+     * @return an array of candidate rules in the order they were added.
+     */
+    @Nonnull
+    final Rule[] candidates(@Nonnull Predicate.Call call) {
+        return this.snapshot.candidates(call);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentRuleBase[version=" + version() + ", size=" + size() + ']';
+    }
+
+    /**
+     * A batch of rule base modifications.
+     *
+     * <p>The modifications are applied in the order they are recorded.</p>
+     */
+    public static final class Batch {
+
+        private final ArrayList<Object> changes = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Records the rule addition.
+         *
+         * @param rule a rule to add.
+         *
+         * @return this batch.
+         */
+        @Nonnull
+        public final Batch add(@Nonnull Rule rule) {
+            this.changes.add(rule);
+            return this;
+        }
+
+        /**
+         * Records the rule removal.
+         *
+         * @param rule a rule to remove.
+         *
+         * @return this batch.
+         */
+        @Nonnull
+        public final Batch remove(@Nonnull Rule rule) {
+            this.changes.add(new Removal(rule));
+            return this;
+        }
+
+        @Nonnull
+        Snapshot applyTo(@Nonnull Snapshot snapshot) {
+
+            Snapshot.Builder builder = null;
+
+            for (final Object change : this.changes) {
+                if (builder == null) {
+                    builder = new Snapshot.Builder(snapshot);
+                }
+                if (change instanceof Removal) {
+                    builder.remove(((Removal) change).rule);
+                } else {
+                    builder.add((Rule) change);
+                }
+            }
+
+            return builder != null ? builder.build() : snapshot;
+        }
+
+    }
+
+    private static final class Removal {
+
+        @Nonnull
+        private final Rule rule;
+
+        Removal(@Nonnull Rule rule) {
+            this.rule = rule;
+        }
+
+    }
+
+    /**
+     * Rule along with the order of its addition.
+     */
+    @Immutable
+    private static final class Entry {
+
+        private final long seq;
+
+        @Nonnull
+        private final Rule rule;
+
+        Entry(long seq, @Nonnull Rule rule) {
+            this.seq = seq;
+            this.rule = rule;
+        }
+
+        /**
+         * The priority of the tree node containing this entry.
+         *
+         * <p>Derived from the entry order, so that the tree built of sequentially added entries is balanced
+         * in expectation.</p>
+         */
+        int priority() {
+            return Long.hashCode(this.seq * 0x9e3779b97f4a7c15L);
+        }
+
+    }
+
+    /**
+     * Persistent bucket of rules.
+     *
+     * <p>The entries are stored in a treap ordered by their {@link Entry#seq addition order}. Modifications copy
+     * only the nodes along the path to the modified entry, so the rest of the nodes are shared between versions.</p>
+     *
+     * <p>The bucket entries are laid out into arrays on the first read.</p>
+     */
+    @Immutable
+    private static final class Bucket {
+
+        /**
+         * Adds the entry to the given bucket.
+         *
+         * @param bucket the bucket to add entry to, or {@code null} if there is no such bucket yet.
+         * @param entry the entry to add.
+         *
+         * @return updated bucket.
+         */
+        @Nonnull
+        static Bucket add(@Nullable Bucket bucket, @Nonnull Entry entry) {
+            if (bucket == null) {
+                return new Bucket(new Node(entry, null, null), 1);
+            }
+            return new Bucket(Node.add(bucket.root, entry), bucket.size + 1);
+        }
+
+        @Nonnull
+        private final Node root;
+
+        private final int size;
+
+        /**
+         * Bucket contents, or {@code null} if not laid out yet.
+         */
+        @Nullable
+        private volatile Contents contents;
+
+        private Bucket(@Nonnull Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * Removes the entry from this bucket.
+         *
+         * @param entry the entry contained in this bucket.
+         *
+         * @return updated bucket, or {@code null} if the bucket becomes empty.
+         */
+        @Nullable
+        Bucket remove(@Nonnull Entry entry) {
+
+            final Node root = Node.remove(this.root, entry);
+
+            return root != null ? new Bucket(root, this.size - 1) : null;
+        }
+
+        @Nonnull
+        Contents contents() {
+
+            final Contents contents = this.contents;
+
+            if (contents != null) {
+                return contents;
+            }
+
+            return this.contents = new Contents(this.root, this.size);
+        }
+
+    }
+
+    /**
+     * Bucket contents laid out into arrays in the order of their addition.
+     */
+    @Immutable
+    private static final class Contents {
+
+        static final Contents NONE = new Contents(null, 0);
+
+        @Nonnull
+        private final long[] seqs;
+
+        @Nonnull
+        private final Rule[] rules;
+
+        Contents(@Nullable Node root, int size) {
+            this.seqs = new long[size];
+            this.rules = new Rule[size];
+            lay(root, 0);
+        }
+
+        private int lay(@Nullable Node node, int index) {
+            if (node == null) {
+                return index;
+            }
+
+            int i = lay(node.left, index);
+
+            this.seqs[i] = node.entry.seq;
+            this.rules[i] = node.entry.rule;
+
+            return lay(node.right, i + 1);
+        }
+
+    }
+
+    /**
+     * A node of bucket treap.
+     *
+     * <p>Ordered by entry {@link Entry#seq sequence number} and heap-ordered by entry {@link Entry#priority()
+     * priority}.</p>
+     */
+    @Immutable
+    private static final class Node {
+
+        @Nonnull
+        static Node add(@Nullable Node node, @Nonnull Entry entry) {
+            if (node == null) {
+                return new Node(entry, null, null);
+            }
+            if (entry.seq < node.entry.seq) {
+
+                final Node left = add(node.left, entry);
+
+                if (left.entry.priority() > node.entry.priority()) {
+                    // Rotate right
+                    return new Node(left.entry, left.left, new Node(node.entry, left.right, node.right));
+                }
+
+                return new Node(node.entry, left, node.right);
+            }
+
+            final Node right = add(node.right, entry);
+
+            if (right.entry.priority() > node.entry.priority()) {
+                // Rotate left
+                return new Node(right.entry, new Node(node.entry, node.left, right.left), right.right);
+            }
+
+            return new Node(node.entry, node.left, right);
+        }
+
+        @Nullable
+        static Node remove(@Nullable Node node, @Nonnull Entry entry) {
+            if (node == null) {
+                return null;
+            }
+            if (entry.seq < node.entry.seq) {
+                return new Node(node.entry, remove(node.left, entry), node.right);
+            }
+            if (entry.seq > node.entry.seq) {
+                return new Node(node.entry, node.left, remove(node.right, entry));
+            }
+
+            return merge(node.left, node.right);
+        }
+
+        /**
+         * Merges two treaps, all entries of the first one preceding the entries of the second one.
+         */
+        @Nullable
+        private static Node merge(@Nullable Node first, @Nullable Node second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            if (first.entry.priority() > second.entry.priority()) {
+                return new Node(first.entry, first.left, merge(first.right, second));
+            }
+
+            return new Node(second.entry, merge(first, second.left), second.right);
+        }
+
+        @Nonnull
+        private final Entry entry;
+
+        @Nullable
+        private final Node left;
+
+        @Nullable
+        private final Node right;
+
+        Node(@Nonnull Entry entry, @Nullable Node left, @Nullable Node right) {
+            this.entry = entry;
+            this.left = left;
+            this.right = right;
+        }
+
+    }
+
+    /**
+     * The key of the bucket of rules.
+     */
+    @Immutable
+    private static final class BucketKey {
+
+        /**
+         * The key of the bucket of prefix patterns.
+         */
+        static final BucketKey PREFIX = new BucketKey(-1, null, false);
+
+        /**
+         * The length of exact patterns in the bucket, or {@code -1} for prefix patterns.
+         */
+        private final int length;
+
+        /**
+         * The index key of the first term of exact patterns, or {@code null} if the bucket is not keyed.
+         */
+        @Nullable
+        private final PlainTerm first;
+
+        /**
+         * Whether the bucket contains all exact patterns of the given length.
+         */
+        private final boolean all;
+
+        BucketKey(int length, @Nullable PlainTerm first, boolean all) {
+            this.length = length;
+            this.first = first;
+            this.all = all;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final BucketKey that = (BucketKey) o;
+
+            if (this.length != that.length || this.all != that.all) {
+                return false;
+            }
+
+            return this.first != null ? this.first.equals(that.first) : that.first == null;
+        }
+
+        @Override
+        public int hashCode() {
+
+            int result = this.length;
+
+            result = 31 * result + (this.first != null ? this.first.hashCode() : 0);
+            result = 31 * result + (this.all ? 1 : 0);
+
+            return result;
+        }
+
+    }
+
+    /**
+     * Immutable snapshot of the rule base version.
+     *
+     * <p>This is a rule selector by itself. A {@link Predicate.Resolver resolver} with snapshot selector resolves all
+     * predicates of the derivation against the same rule base version.</p>
+     */
+    @Immutable
+    public static final class Snapshot implements Rule.Selector {
+
+        static final Snapshot INITIAL = new Snapshot(0L, 0L, HashTrie.empty(), HashTrie.empty());
+
+        private static final Rule[] NO_RULES = new Rule[0];
+
+        private final long number;
+
+        /**
+         * The order of the next added rule.
+         */
+        private final long nextSeq;
+
+        /**
+         * All rules.
+         */
+        @Nonnull
+        private final HashTrie<Rule, Entry> rules;
+
+        /**
+         * Rule buckets.
+         */
+        @Nonnull
+        private final HashTrie<BucketKey, Bucket> buckets;
+
+        private Snapshot(
+                long number,
+                long nextSeq,
+                @Nonnull HashTrie<Rule, Entry> rules,
+                @Nonnull HashTrie<BucketKey, Bucket> buckets) {
+            this.number = number;
+            this.nextSeq = nextSeq;
+            this.rules = rules;
+            this.buckets = buckets;
+        }
+
+        /**
+         * The number of the rule base version this snapshot is taken from.
+         *
+         * @return version number.
+         */
+        @Override
+        public final long version() {
+            return this.number;
+        }
+
+        /**
+         * The number of rules in this snapshot.
+         *
+         * @return rule count.
+         */
+        public final int size() {
+            return this.rules.size();
+        }
+
+        @Nonnull
+        @Override
+        public Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+            return RuleMatches.flux(candidates(call), call, knowns);
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+            return new RuleMatches(candidates(call), call, knowns);
+        }
+
+        @Nonnull
+        @Override
+        public final Snapshot snapshot() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "ConcurrentRuleBase.Snapshot[version=" + this.number + ", size=" + size() + ']';
+        }
+
+        @Nonnull
+        Rule[] candidates(@Nonnull Predicate.Call call) {
+
+            final int length = call.length();
+            final Bucket prefix = bucket(BucketKey.PREFIX);
+
+            if (length < 0) {
+                // Infinite call matches prefix patterns only
+                return select(prefix, null, null);
+            }
+
+            final Bucket all = bucket(new BucketKey(length, null, true));
+
+            if (all == null || length == 0) {
+                return select(all, prefix, null);
+            }
+
+            final PlainTerm first = call.prefix(1).get().getTerms().get(0);
+
+            if (!first.isIndexKey()) {
+                return select(all, prefix, null);
+            }
+
+            return select(
+                    bucket(new BucketKey(length, first, false)),
+                    bucket(new BucketKey(length, null, false)),
+                    prefix);
+        }
+
+        @Nullable
+        private Bucket bucket(@Nonnull BucketKey key) {
+            return this.buckets.get(key);
+        }
+
+        /**
+         * Merges the rules of the given buckets in the order of their addition.
+         *
+         * <p>The buckets are ordered already, so the rules of a single bucket are returned as is.</p>
+         */
+        @Nonnull
+        private static Rule[] select(@Nullable Bucket first, @Nullable Bucket second, @Nullable Bucket third) {
+            if (second == null && third == null) {
+                return first != null ? first.contents().rules : NO_RULES;
+            }
+            if (first == null && third == null) {
+                return second.contents().rules;
+            }
+            if (first == null && second == null) {
+                return third.contents().rules;
+            }
+
+            final Contents a = contents(first);
+            final Contents b = contents(second);
+            final Contents c = contents(third);
+            final Rule[] result = new Rule[a.rules.length + b.rules.length + c.rules.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+
+            for (int r = 0; r < result.length; ++r) {
+
+                final long sa = i < a.seqs.length ? a.seqs[i] : Long.MAX_VALUE;
+                final long sb = j < b.seqs.length ? b.seqs[j] : Long.MAX_VALUE;
+                final long sc = k < c.seqs.length ? c.seqs[k] : Long.MAX_VALUE;
+
+                if (sa < sb) {
+                    result[r] = sa < sc ? a.rules[i++] : c.rules[k++];
+                } else {
+                    result[r] = sb < sc ? b.rules[j++] : c.rules[k++];
+                }
+            }
+
+            return result;
+        }
+
+        @Nonnull
+        private static Contents contents(@Nullable Bucket bucket) {
+            return bucket != null ? bucket.contents() : Contents.NONE;
+        }
+
+        private static final class Builder {
+
+            @Nonnull
+            private final Snapshot snapshot;
+
+            private long nextSeq;
+
+            @Nonnull
+            private HashTrie<Rule, Entry> rules;
+
+            @Nonnull
+            private HashTrie<BucketKey, Bucket> buckets;
+
+            /**
+             * Whether any of the snapshot rules is removed.
+             */
+            private boolean removed;
+
+            Builder(@Nonnull Snapshot snapshot) {
+                this.snapshot = snapshot;
+                this.nextSeq = snapshot.nextSeq;
+                this.rules = snapshot.rules;
+                this.buckets = snapshot.buckets;
+            }
+
+            void add(@Nonnull Rule rule) {
+                if (this.rules.containsKey(rule)) {
+                    return;
+                }
+
+                final Entry entry = new Entry(this.nextSeq++, rule);
+
+                this.rules = this.rules.put(rule, entry);
+                for (final BucketKey key : bucketKeys(rule)) {
+                    this.buckets = this.buckets.put(key, Bucket.add(this.buckets.get(key), entry));
+                }
+            }
+
+            void remove(@Nonnull Rule rule) {
+
+                final Entry entry = this.rules.get(rule);
+
+                if (entry == null) {
+                    return;
+                }
+
+                this.rules = this.rules.remove(rule);
+                if (entry.seq < this.snapshot.nextSeq) {
+                    this.removed = true;
+                }
+                for (final BucketKey key : bucketKeys(rule)) {
+
+                    final Bucket bucket = this.buckets.get(key);
+
+                    if (bucket != null) {
+
+                        final Bucket updated = bucket.remove(entry);
+
+                        this.buckets = updated != null ? this.buckets.put(key, updated) : this.buckets.remove(key);
+                    }
+                }
+            }
+
+            @Nonnull
+            Snapshot build() {
+                if (!this.removed && this.rules.size() == this.snapshot.rules.size()) {
+                    // Only the rules added by this batch are removed
+                    return this.snapshot;
+                }
+
+                return new Snapshot(this.snapshot.number + 1, this.nextSeq, this.rules, this.buckets);
+            }
+
+            @Nonnull
+            private static List<BucketKey> bucketKeys(@Nonnull Rule rule) {
+
+                final Rule.Pattern pattern = rule.getCondition();
+
+                if (pattern.isPrefix()) {
+                    return Arrays.asList(BucketKey.PREFIX);
+                }
+
+                final List<? extends PlainTerm> terms = pattern.getTerms();
+                final int length = terms.size();
+                final BucketKey all = new BucketKey(length, null, true);
+
+                if (length != 0 && terms.get(0).isIndexKey()) {
+                    return Arrays.asList(all, new BucketKey(length, terms.get(0), false));
+                }
+
+                return Arrays.asList(all, new BucketKey(length, null, false));
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,285 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Predicate;
+import org.predicode.predicator.terms.PlainTerm;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.predicode.predicator.RuleBase.NO_RULES;
+import static org.predicode.predicator.RuleBase.ruleList;
+import static org.predicode.predicator.RuleBase.rulesToString;
+
+
+/**
+ * Predicate resolution rules discrimination tree.
+ *
+ * <p>This is a trie built over the terms of rule patterns. Each pattern term that is an
+ * {@link PlainTerm#isIndexKey() index key} leads to the child node corresponding to that term. Any other term, i.e.
+ * a variable, a placeholder, or arbitrary value, leads to the wildcard child node. Exact patterns terminate at the
+ * node corresponding to their last term. Prefix patterns terminate there too, but match any longer call.</p>
+ *
+ * <p>The call terms are walked once. Each index key in the call follows the child node corresponding to it and the
+ * wildcard node. Any other call term follows all child nodes, as it may match any of them. The rules terminated by
+ * the reached nodes are selected as candidates, which are then matched in the order they are declared.</p>
+ */
+@Immutable
+public final class DiscriminationTree implements Rule.Selector {
+
+    /**
+     * Constructs discrimination tree containing the given rules.
+     *
+     * @param rules rules to select from.
+     *
+     * @return new discrimination tree.
+     */
+    @Nonnull
+    public static DiscriminationTree of(@Nonnull Rule... rules) {
+        return of(Arrays.asList(rules));
+    }
+
+    /**
+     * Constructs discrimination tree containing the given rules.
+     *
+     * @param rules rules to select from in the order of their selection.
+     *
+     * @return new discrimination tree.
+     */
+    @Nonnull
+    public static DiscriminationTree of(@Nonnull Iterable<? extends Rule> rules) {
+
+        final ArrayList<Rule> list = new ArrayList<>();
+        final Node root = new Node();
+        final RuleBase.Indices prefix = new RuleBase.Indices();
+        int depth = 0;
+
+        for (final Rule rule : rules) {
+
+            final int index = list.size();
+            final Rule.Pattern pattern = rule.getCondition();
+            final List<? extends PlainTerm> terms = pattern.getTerms();
+            Node node = root;
+
+            list.add(rule);
+            for (final PlainTerm term : terms) {
+                node = node.child(term);
+            }
+            if (pattern.isPrefix()) {
+                node.prefix.add(index);
+                prefix.add(index);
+            } else {
+                node.exact.add(index);
+            }
+            depth = Math.max(depth, terms.size());
+        }
+
+        root.freeze();
+
+        return new DiscriminationTree(list.toArray(new Rule[0]), root, prefix.toArray(), depth);
+    }
+
+    @Nonnull
+    private final Rule[] rules;
+
+    @Nonnull
+    private final Node root;
+
+    /**
+     * Indices of all rules with prefix patterns.
+     */
+    @Nonnull
+    private final int[] prefix;
+
+    /**
+     * The length of the longest pattern.
+     */
+    private final int depth;
+
+    private DiscriminationTree(@Nonnull Rule[] rules, @Nonnull Node root, @Nonnull int[] prefix, int depth) {
+        this.rules = rules;
+        this.root = root;
+        this.prefix = prefix;
+        this.depth = depth;
+    }
+
+    /**
+     * All rules of this tree.
+     *
+     * @return readonly list of rules in the order of their selection.
+     */
+    @Nonnull
+    public final List<Rule> getRules() {
+        return ruleList(this.rules);
+    }
+
+    /**
+     * The number of rules in this tree.
+     *
+     * @return rule count.
+     */
+    public final int size() {
+        return this.rules.length;
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return RuleMatches.flux(candidates(call), call, knowns);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        return new RuleMatches(candidates(call), call, knowns);
+    }
+
+    /**
+     * Selects the rules that may match the given call.
+     *
+     * @param call predicate call.
+     *
+     * @return an array of candidate rules in the order of their declaration.
+     */
+    @Nonnull
+    final Rule[] candidates(@Nonnull Predicate.Call call) {
+
+        final int length = call.length();
+        // Patterns longer than the call can not match. The call terms after the longest pattern are never inspected.
+        final int walk = length < 0 ? this.depth : Math.min(length, this.depth);
+        final Predicate.Prefix prefix = call.prefix(walk).orElse(null);
+
+        if (prefix == null) {
+            return RuleBase.select(this.rules, this.prefix, NO_RULES, NO_RULES);
+        }
+
+        final List<? extends PlainTerm> terms = prefix.getTerms();
+        final RuleBase.Indices selected = new RuleBase.Indices();
+        ArrayList<Node> nodes = new ArrayList<>();
+        ArrayList<Node> next = new ArrayList<>();
+
+        nodes.add(this.root);
+        for (int i = 0; ; ++i) {
+
+            final boolean last = i == walk;
+
+            for (final Node node : nodes) {
+                node.collect(selected, last && i == length);
+                if (!last) {
+                    node.follow(terms.get(i), next);
+                }
+            }
+            if (last || next.isEmpty()) {
+                break;
+            }
+
+            final ArrayList<Node> reached = next;
+
+            next = nodes;
+            next.clear();
+            nodes = reached;
+        }
+
+        final int[] indices = selected.toArray();
+
+        Arrays.sort(indices);
+
+        final Rule[] result = new Rule[indices.length];
+
+        for (int i = 0; i < indices.length; ++i) {
+            result[i] = this.rules[indices[i]];
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return rulesToString(this.rules);
+    }
+
+    private static final class Node {
+
+        private Map<PlainTerm, Node> children = new HashMap<>();
+
+        @Nullable
+        private Node wildcard;
+
+        private RuleBase.Indices exact = new RuleBase.Indices();
+
+        private RuleBase.Indices prefix = new RuleBase.Indices();
+
+        /**
+         * Indices of the exact patterns terminated at this node.
+         */
+        private int[] exactRules;
+
+        /**
+         * Indices of the prefix patterns terminated at this node.
+         */
+        private int[] prefixRules;
+
+        @Nonnull
+        Node child(@Nonnull PlainTerm term) {
+            if (term.isIndexKey()) {
+                return this.children.computeIfAbsent(term, key -> new Node());
+            }
+            if (this.wildcard == null) {
+                this.wildcard = new Node();
+            }
+            return this.wildcard;
+        }
+
+        void freeze() {
+            this.exactRules = this.exact.toArray();
+            this.prefixRules = this.prefix.toArray();
+            this.exact = null;
+            this.prefix = null;
+            if (this.children.isEmpty()) {
+                this.children = Collections.emptyMap();
+            } else {
+                this.children.values().forEach(Node::freeze);
+            }
+            if (this.wildcard != null) {
+                this.wildcard.freeze();
+            }
+        }
+
+        void collect(@Nonnull RuleBase.Indices selected, boolean exact) {
+            for (final int rule : this.prefixRules) {
+                selected.add(rule);
+            }
+            if (exact) {
+                for (final int rule : this.exactRules) {
+                    selected.add(rule);
+                }
+            }
+        }
+
+        void follow(@Nonnull PlainTerm term, @Nonnull List<Node> reached) {
+            if (term.isIndexKey()) {
+
+                final Node child = this.children.get(term);
+
+                if (child != null) {
+                    reached.add(child);
+                }
+            } else {
+                reached.addAll(this.children.values());
+            }
+            if (this.wildcard != null) {
+                reached.add(this.wildcard);
+            }
+        }
+
+    }
+
+}
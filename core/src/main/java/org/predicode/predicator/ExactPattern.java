@@ -5,11 +5,11 @@ import org.predicode.predicator.predicates.Qualifiers;
 import org.predicode.predicator.terms.PlainTerm;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.List;
-import java.util.Optional;
 
-import static org.predicode.predicator.PrefixPattern.matchPrefix;
+import static org.predicode.predicator.PrefixPattern.matchTerms;
 import static org.predicode.predicator.grammar.TermPrinter.printTerms;
 
 
@@ -31,12 +31,15 @@ final class ExactPattern extends Rule.Pattern {
         return false;
     }
 
+    @Nullable
     @Override
-    @Nonnull
-    public Optional<Knowns> match(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
-        return call.prefix(getTerms().size())
-                .filter(prefix -> prefix.getRest().isEmpty()) // Ensure the call length equals to pattern one
-                .flatMap(prefix -> matchPrefix(prefix, this, knowns));
+    public Knowns tryMatch(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        if (call.length() != getTerms().size()) { // Infinite call length is negative, so it never matches
+            return null;
+        }
+
+        return matchTerms(this, call.finiteTerms(), call.getQualifiers(), knowns);
     }
 
     @Override
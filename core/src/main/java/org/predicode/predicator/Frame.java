@@ -0,0 +1,238 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Qualifier;
+import org.predicode.predicator.predicates.Qualifiers;
+import org.predicode.predicator.terms.MappedTerm;
+import org.predicode.predicator.terms.PlainTerm;
+import org.predicode.predicator.terms.Variable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Local variable mappings of the rule being matched.
+ *
+ * <p>The variables of rule pattern are numbered once per pattern by its {@link Layout layout}. Their mappings are
+ * stored in array slots. The mappings of other variables are stored in a hash trie.</p>
+ */
+@Immutable
+final class Frame {
+
+    static final Frame NONE = new Frame(Layout.EMPTY, 0, 0);
+
+    @Nonnull
+    private final Layout layout;
+
+    @Nonnull
+    private final MappedTerm[] slots;
+
+    @Nonnull
+    private final HashTrie<Variable, MappedTerm> others;
+
+    private final int rev;
+
+    private final int depth;
+
+    /**
+     * The number of temporary variables declared within this frame.
+     */
+    private final int temps;
+
+    Frame(@Nonnull Layout layout, int rev, int depth) {
+        this.layout = layout;
+        this.slots = layout.size() == 0 ? Layout.NO_SLOTS : new MappedTerm[layout.size()];
+        this.others = HashTrie.empty();
+        this.rev = rev;
+        this.depth = depth;
+        this.temps = 0;
+    }
+
+    private Frame(
+            @Nonnull Frame proto,
+            @Nonnull MappedTerm[] slots,
+            @Nonnull HashTrie<Variable, MappedTerm> others,
+            int temps) {
+        this.layout = proto.layout;
+        this.slots = slots;
+        this.others = others;
+        this.rev = proto.rev;
+        this.depth = proto.depth;
+        this.temps = temps;
+    }
+
+    /**
+     * The revision of the rule match this frame is created for.
+     *
+     * <p>The locals declared within this frame are distinguished by this revision.</p>
+     */
+    int rev() {
+        return this.rev;
+    }
+
+    /**
+     * The nesting depth of the rule match this frame is created for.
+     *
+     * <p>This is the number of rule matches started, but not finished yet, including this one.</p>
+     */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+     * The number the next temporary variable declared within this frame receives.
+     *
+     * <p>Together with the {@link #rev() revision} it identifies the temporary variable within a query.</p>
+     */
+    long nextTemp() {
+        return ((long) this.rev << 32) | this.temps;
+    }
+
+    @Nullable
+    MappedTerm get(@Nonnull Variable variable) {
+
+        final int slot = this.layout.slotOf(variable);
+
+        if (slot >= 0) {
+            return this.slots[slot];
+        }
+
+        return this.others.get(variable);
+    }
+
+    @Nonnull
+    Frame set(@Nonnull Variable variable, @Nonnull MappedTerm value) {
+
+        final int slot = this.layout.slotOf(variable);
+
+        if (slot < 0) {
+            return new Frame(this, this.slots, this.others.put(variable, value), this.temps);
+        }
+
+        final MappedTerm[] slots = this.slots.clone();
+
+        slots[slot] = value;
+
+        return new Frame(this, slots, this.others, this.temps);
+    }
+
+    /**
+     * Maps the {@link #nextTemp() next} temporary variable.
+     *
+     * @param temp temporary variable.
+     * @param value temporary variable value.
+     *
+     * @return updated frame.
+     */
+    @Nonnull
+    Frame setTemp(@Nonnull Variable temp, @Nonnull MappedTerm value) {
+        return new Frame(this, this.slots, this.others.put(temp, value), this.temps + 1);
+    }
+
+    /**
+     * Rule variables layout.
+     *
+     * <p>Assigns a dense slot number to each variable of rule pattern.</p>
+     */
+    @Immutable
+    static final class Layout {
+
+        static final Layout EMPTY = new Layout(new Variable[0]);
+
+        private static final MappedTerm[] NO_SLOTS = new MappedTerm[0];
+
+        private static final PlainTerm.Visitor<List<Variable>, List<Variable>> COLLECT_VARIABLES =
+                new PlainTerm.Visitor<List<Variable>, List<Variable>>() {
+
+                    @Nonnull
+                    @Override
+                    public List<Variable> visitVariable(
+                            @Nonnull Variable variable,
+                            @Nonnull List<Variable> variables) {
+                        if (!variables.contains(variable)) {
+                            variables.add(variable);
+                        }
+                        return variables;
+                    }
+
+                    @Nonnull
+                    @Override
+                    public List<Variable> visitPlain(@Nonnull PlainTerm term, @Nonnull List<Variable> variables) {
+                        return variables;
+                    }
+
+                };
+
+        /**
+         * Builds the layout of the variables of rule pattern.
+         *
+         * @param terms pattern terms.
+         * @param qualifiers pattern qualifiers.
+         *
+         * @return variables layout.
+         */
+        @Nonnull
+        static Layout of(@Nonnull List<? extends PlainTerm> terms, @Nonnull Qualifiers qualifiers) {
+
+            final ArrayList<Variable> variables = new ArrayList<>();
+
+            for (final PlainTerm term : terms) {
+                term.accept(COLLECT_VARIABLES, variables);
+            }
+            for (final Qualifier qualifier : qualifiers) {
+                for (final PlainTerm term : qualifier.getTerms()) {
+                    term.accept(COLLECT_VARIABLES, variables);
+                }
+            }
+
+            if (variables.isEmpty()) {
+                return EMPTY;
+            }
+
+            return new Layout(variables.toArray(new Variable[variables.size()]));
+        }
+
+        @Nonnull
+        private final Variable[] variables;
+
+        private Layout(@Nonnull Variable[] variables) {
+            this.variables = variables;
+        }
+
+        int size() {
+            return this.variables.length;
+        }
+
+        /**
+         * Finds the slot of the given variable.
+         *
+         * <p>Rules contain just a few variables. So a linear search is faster than hashing here.</p>
+         *
+         * @param variable target variable.
+         *
+         * @return variable slot, or negative value if there is no such variable in the layout.
+         */
+        int slotOf(@Nonnull Variable variable) {
+
+            final Variable[] variables = this.variables;
+
+            for (int i = 0; i < variables.length; ++i) {
+                if (variables[i] == variable) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < variables.length; ++i) {
+                if (variables[i].equals(variable)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+    }
+
+}
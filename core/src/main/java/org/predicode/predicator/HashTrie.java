@@ -0,0 +1,447 @@
+package org.predicode.predicator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Persistent hash array mapped trie.
+ *
+ * <p>An immutable map with {@code O(log32 n)} lookups and updates. The updated trie shares all of its nodes with
+ * the original one, except the ones along the path to the updated entry.</p>
+ *
+ * <p>Keys and values can not be {@code null}.</p>
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+@Immutable
+final class HashTrie<K, V> implements Bindings<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final HashTrie<?, ?> EMPTY = new HashTrie<>(BitmapNode.EMPTY, 0);
+
+    /**
+     * Returns empty trie.
+     *
+     * @param <K> key type.
+     * @param <V> value type.
+     *
+     * @return empty trie instance.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    static <K, V> HashTrie<K, V> empty() {
+        return (HashTrie<K, V>) EMPTY;
+    }
+
+    @Nonnull
+    private final Node root;
+
+    private final int size;
+
+    private HashTrie(@Nonnull Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * The number of entries in this trie.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param key the key to find the value of.
+     *
+     * @return the value, or {@code null} if there is no such key in this trie.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public V get(@Nonnull Object key) {
+        return (V) this.root.find(0, hash(key), key);
+    }
+
+    /**
+     * Associates the given key with the given value.
+     *
+     * @param key the key to update the value of.
+     * @param value new value.
+     *
+     * @return updated trie, or this instance if the key is already associated with the same value instance.
+     */
+    @Nonnull
+    @Override
+    public HashTrie<K, V> put(@Nonnull K key, @Nonnull V value) {
+
+        final int hash = hash(key);
+        final Object prev = this.root.find(0, hash, key);
+
+        if (prev == value) {
+            return this;
+        }
+
+        return new HashTrie<>(
+                this.root.put(0, hash, key, value),
+                prev == null ? this.size + 1 : this.size);
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key the key to remove.
+     *
+     * @return updated trie, or this instance if there is no such key in this trie.
+     */
+    @Nonnull
+    HashTrie<K, V> remove(@Nonnull Object key) {
+
+        final Node root = this.root.remove(0, hash(key), key);
+
+        if (root == this.root) {
+            return this;
+        }
+        if (root == null) {
+            return empty();
+        }
+
+        return new HashTrie<>(root, this.size - 1);
+    }
+
+    /**
+     * Performs the given action for each entry of this trie.
+     *
+     * <p>The order of entries is unspecified.</p>
+     *
+     * @param action an action to perform.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(@Nonnull BiConsumer<? super K, ? super V> action) {
+        this.root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder out = new StringBuilder().append('{');
+
+        forEach((key, value) -> {
+            if (out.length() > 1) {
+                out.append(", ");
+            }
+            out.append(key).append('=').append(value);
+        });
+
+        return out.append('}').toString();
+    }
+
+    private static int hash(@Nonnull Object key) {
+
+        final int h = key.hashCode();
+
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static abstract class Node {
+
+        @Nullable
+        abstract Object find(int shift, int hash, @Nonnull Object key);
+
+        @Nonnull
+        abstract Node put(int shift, int hash, @Nonnull Object key, @Nonnull Object value);
+
+        @Nullable
+        abstract Node remove(int shift, int hash, @Nonnull Object key);
+
+        abstract void forEach(@Nonnull BiConsumer<Object, Object> action);
+
+    }
+
+    /**
+     * A node containing up to 32 entries or sub-nodes, indexed by the next 5 bits of the key hash.
+     *
+     * <p>The array contains a pair of elements per each bit set in the bitmap. This is either a key followed by its
+     * value, or {@code null} followed by the sub-node.</p>
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        @Nonnull
+        private final Object[] array;
+
+        BitmapNode(int bitmap, @Nonnull Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1));
+        }
+
+        @Nullable
+        @Override
+        Object find(int shift, int hash, @Nonnull Object key) {
+
+            final int bit = bit(hash, shift);
+
+            if ((this.bitmap & bit) == 0) {
+                return null;
+            }
+
+            final int idx = index(bit) << 1;
+            final Object k = this.array[idx];
+            final Object v = this.array[idx + 1];
+
+            if (k == null) {
+                return ((Node) v).find(shift + BITS, hash, key);
+            }
+
+            return key.equals(k) ? v : null;
+        }
+
+        @Nonnull
+        @Override
+        Node put(int shift, int hash, @Nonnull Object key, @Nonnull Object value) {
+
+            final int bit = bit(hash, shift);
+            final int idx = index(bit) << 1;
+
+            if ((this.bitmap & bit) == 0) {
+
+                final Object[] array = new Object[this.array.length + 2];
+
+                System.arraycopy(this.array, 0, array, 0, idx);
+                array[idx] = key;
+                array[idx + 1] = value;
+                System.arraycopy(this.array, idx, array, idx + 2, this.array.length - idx);
+
+                return new BitmapNode(this.bitmap | bit, array);
+            }
+
+            final Object k = this.array[idx];
+            final Object v = this.array[idx + 1];
+
+            if (k == null) {
+
+                final Node node = ((Node) v).put(shift + BITS, hash, key, value);
+
+                return node == v ? this : with(idx + 1, node);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(idx + 1, value);
+            }
+
+            final Object[] array = this.array.clone();
+
+            array[idx] = null;
+            array[idx + 1] = pair(shift + BITS, k, v, hash, key, value);
+
+            return new BitmapNode(this.bitmap, array);
+        }
+
+        @Nullable
+        @Override
+        Node remove(int shift, int hash, @Nonnull Object key) {
+
+            final int bit = bit(hash, shift);
+
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+
+            final int idx = index(bit) << 1;
+            final Object k = this.array[idx];
+            final Object v = this.array[idx + 1];
+
+            if (k == null) {
+
+                final Node node = ((Node) v).remove(shift + BITS, hash, key);
+
+                if (node == v) {
+                    return this;
+                }
+                if (node != null) {
+                    return with(idx + 1, node);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (this.bitmap == bit) {
+                return null;
+            }
+
+            final Object[] array = new Object[this.array.length - 2];
+
+            System.arraycopy(this.array, 0, array, 0, idx);
+            System.arraycopy(this.array, idx + 2, array, idx, array.length - idx);
+
+            return new BitmapNode(this.bitmap & ~bit, array);
+        }
+
+        @Override
+        void forEach(@Nonnull BiConsumer<Object, Object> action) {
+            for (int i = 0; i < this.array.length; i += 2) {
+
+                final Object k = this.array[i];
+                final Object v = this.array[i + 1];
+
+                if (k == null) {
+                    ((Node) v).forEach(action);
+                } else {
+                    action.accept(k, v);
+                }
+            }
+        }
+
+        @Nonnull
+        private BitmapNode with(int idx, @Nonnull Object element) {
+
+            final Object[] array = this.array.clone();
+
+            array[idx] = element;
+
+            return new BitmapNode(this.bitmap, array);
+        }
+
+        @Nonnull
+        private static Node pair(
+                int shift,
+                @Nonnull Object key1,
+                @Nonnull Object value1,
+                int hash2,
+                @Nonnull Object key2,
+                @Nonnull Object value2) {
+
+            final int hash1 = hash(key1);
+
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+
+            return EMPTY.put(shift, hash1, key1, value1).put(shift, hash2, key2, value2);
+        }
+
+    }
+
+    /**
+     * A node containing entries with the same key hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        @Nonnull
+        private final Object[] array;
+
+        CollisionNode(int hash, @Nonnull Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(@Nonnull Object key) {
+            for (int i = 0; i < this.array.length; i += 2) {
+                if (key.equals(this.array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Nullable
+        @Override
+        Object find(int shift, int hash, @Nonnull Object key) {
+            if (hash != this.hash) {
+                return null;
+            }
+
+            final int idx = indexOf(key);
+
+            return idx < 0 ? null : this.array[idx + 1];
+        }
+
+        @Nonnull
+        @Override
+        Node put(int shift, int hash, @Nonnull Object key, @Nonnull Object value) {
+            if (hash != this.hash) {
+                return new BitmapNode(bit(this.hash, shift), new Object[] {null, this})
+                        .put(shift, hash, key, value);
+            }
+
+            final int idx = indexOf(key);
+
+            if (idx >= 0) {
+                if (this.array[idx + 1] == value) {
+                    return this;
+                }
+
+                final Object[] array = this.array.clone();
+
+                array[idx + 1] = value;
+
+                return new CollisionNode(hash, array);
+            }
+
+            final Object[] array = new Object[this.array.length + 2];
+
+            System.arraycopy(this.array, 0, array, 0, this.array.length);
+            array[this.array.length] = key;
+            array[this.array.length + 1] = value;
+
+            return new CollisionNode(hash, array);
+        }
+
+        @Nullable
+        @Override
+        Node remove(int shift, int hash, @Nonnull Object key) {
+            if (hash != this.hash) {
+                return this;
+            }
+
+            final int idx = indexOf(key);
+
+            if (idx < 0) {
+                return this;
+            }
+            if (this.array.length == 2) {
+                return null;
+            }
+
+            final Object[] array = new Object[this.array.length - 2];
+
+            System.arraycopy(this.array, 0, array, 0, idx);
+            System.arraycopy(this.array, idx + 2, array, idx, array.length - idx);
+
+            return new CollisionNode(hash, array);
+        }
+
+        @Override
+        void forEach(@Nonnull BiConsumer<Object, Object> action) {
+            for (int i = 0; i < this.array.length; i += 2) {
+                action.accept(this.array[i], this.array[i + 1]);
+            }
+        }
+
+    }
+
+}
@@ -1,23 +1,31 @@
 package org.predicode.predicator;
 
 import org.predicode.predicator.predicates.Predicate;
+import org.predicode.predicator.terms.LazilyNamedVariable;
 import org.predicode.predicator.terms.MappedTerm;
 import org.predicode.predicator.terms.PlainTerm;
 import org.predicode.predicator.terms.ResolvedTerm;
 import org.predicode.predicator.terms.Variable;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
-import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.util.Collections.emptyMap;
 
 
+/**
+ * Known variable mappings and resolutions.
+ *
+ * <p>Knowns are immutable. Each update constructs a new instance sharing the most of its state with the original one.
+ * So the cost of update does not depend on the number of known variables.</p>
+ *
+ * <p>{@link #sequential() Sequential} knowns record query variable resolutions on a trail instead. They are still
+ * immutable from the outside, but they can be used within a single thread only.</p>
+ */
 public class Knowns {
 
     private static final PlainTerm.Visitor<Knowns, Resolution> ENSURE_QUERY_VARIABLE_EXISTS =
@@ -73,7 +81,7 @@ public class Knowns {
      * </p>
      */
     @Nonnull
-    private final Map<Variable, Resolution> resolutions;
+    private final Bindings<Variable, Resolution> resolutions;
 
     /**
      * Resolution rule variable mappings.
@@ -81,57 +89,119 @@ public class Knowns {
      * <p>These are {@link PlainTerm plain terms} passed to resolution rule. I.e. variable values local to the rule.
      * When {@link Variable variable} is used as local variable value, it is the one from {@link #resolutions original
      * query}.</p>
+     *
+     * <p>A new frame is started when {@link #startMatching() new rule match is started}. The caller's frame is
+     * restored when {@link #finishMatching(Knowns) the rule resolution finishes}.</p>
      */
     @Nonnull
-    private final Map<Variable, MappedTerm> mappings;
+    private final Frame frame;
 
     /**
-     * Resolution attributes.
+     * Resolution attributes indexed by {@link Attr#id attribute key identifiers}.
+     *
+     * <p>Attribute keys are numbered densely, so this array is small. It is copied on each update.</p>
      *
      * <p>These attributes are wiped out when {@link #startMatching() new rule match is started}.</p>
      */
     @Nonnull
-    private final Map<Class<?>, Object> attrs;
+    private final Object[] attrs;
+
+    /**
+     * The latest rule match revision.
+     *
+     * <p>Incremented each time {@link #startMatching() new rule match is started}.</p>
+     */
+    private final int rev;
 
-    private int rev;
+    /**
+     * The number of {@link #resolutions} right after the last {@link #compact() compaction}.
+     */
+    private final int compacted;
+
+    /**
+     * The frame depth of the last {@link #compact() compaction}.
+     */
+    private final int compactedDepth;
+
+    /**
+     * Cached {@link #fingerprint() fingerprint}, or zero if not computed yet.
+     *
+     * <p>Volatile, as the fingerprint may be computed concurrently, and non-volatile {@code long} writes are not
+     * atomic.</p>
+     */
+    private volatile long fingerprint;
 
     private Knowns() {
-        this.mappings = emptyMap();
-        this.resolutions = emptyMap();
-        this.attrs = emptyMap();
+        this.frame = Frame.NONE;
+        this.resolutions = HashTrie.empty();
+        this.attrs = Attr.NONE;
+        this.rev = 0;
+        this.compacted = 0;
+        this.compactedDepth = 0;
     }
 
     private Knowns(@Nonnull Variable ...variables) {
-        this.mappings = emptyMap();
-        this.resolutions = Stream.of(variables)
-                .collect(Collectors.toMap(UnaryOperator.identity(), v -> UNRESOLVED));
-        this.attrs = emptyMap();
+
+        HashTrie<Variable, Resolution> resolutions = HashTrie.empty();
+
+        for (final Variable variable : variables) {
+            resolutions = resolutions.put(variable, UNRESOLVED);
+        }
+
+        this.frame = Frame.NONE;
+        this.resolutions = resolutions;
+        this.attrs = Attr.NONE;
+        this.rev = 0;
+        this.compacted = variables.length;
+        this.compactedDepth = 0;
+    }
+
+    private Knowns(
+            @Nonnull Knowns proto,
+            @Nonnull Bindings<Variable, Resolution> resolutions,
+            @Nonnull Frame frame) {
+        this.resolutions = resolutions;
+        this.frame = frame;
+        this.attrs = proto.attrs;
+        this.rev = proto.rev;
+        this.compacted = proto.compacted;
+        this.compactedDepth = proto.compactedDepth;
     }
 
     private Knowns(
             @Nonnull Knowns proto,
-            @Nonnull Map<Variable, Resolution> resolutions,
-            @Nonnull Map<Variable, MappedTerm> mappings) {
+            @Nonnull Bindings<Variable, Resolution> resolutions,
+            int compacted) {
         this.resolutions = resolutions;
-        this.mappings = mappings;
+        this.frame = proto.frame;
         this.attrs = proto.attrs;
         this.rev = proto.rev;
+        this.compacted = compacted;
+        this.compactedDepth = proto.frame.depth();
     }
 
     private Knowns(
             @Nonnull Knowns proto,
-            @Nonnull Map<Class<?>, Object> attrs) {
+            @Nonnull Object[] attrs) {
         this.resolutions = proto.resolutions;
-        this.mappings = proto.mappings;
+        this.frame = proto.frame;
         this.attrs = attrs;
         this.rev = proto.rev;
+        this.compacted = proto.compacted;
+        this.compactedDepth = proto.compactedDepth;
     }
 
-    private Knowns(@Nonnull Knowns proto) {
+    private Knowns(
+            @Nonnull Knowns proto,
+            @Nonnull Frame frame,
+            @Nonnull Object[] attrs,
+            int rev) {
         this.resolutions = proto.resolutions;
-        this.mappings = proto.mappings;
-        this.attrs = emptyMap();
-        this.rev = proto.rev + 1;
+        this.frame = frame;
+        this.attrs = attrs;
+        this.rev = rev;
+        this.compacted = proto.compacted;
+        this.compactedDepth = proto.compactedDepth;
     }
 
     /**
@@ -152,7 +222,7 @@ public class Knowns {
             @Nonnull Variable variable,
             @Nonnull BiFunction<? super PlainTerm, ? super Knowns, ? extends R> handler) {
 
-        final PlainTerm mapping = this.mappings.get(variable);
+        final PlainTerm mapping = this.frame.get(variable);
 
         if (mapping != null) {
             return handler.apply(mapping, this);
@@ -174,29 +244,51 @@ public class Knowns {
             @Nonnull Variable variable,
             @Nonnull BiFunction<? super Variable, ? super Knowns, ? extends R> handler) {
 
-        final LocalVariable local = new LocalVariable(variable, this.rev);
+        final LocalVariable local = new LocalVariable(variable, this.frame.rev());
         final Knowns knowns = declareLocal(local);
 
        return handler.apply(local, knowns);
     }
 
+    /**
+     * Declares a temporary local variable.
+     *
+     * <p>Creates a {@link Variable#temp(String, long) numbered temporary variable}, declares a local variable and maps
+     * the temporary variable to it. The temporary variable, the local one, and the updated knowns are passed to
+     * {@code handler}.</p>
+     *
+     * <p>Temporary variables are numbered within the rule match they are declared in. So the same query always
+     * declares the same temporary variables.</p>
+     *
+     * @param prefix temporary variable name prefix.
+     * @param handler a handler of the declared temporary variable returning arbitrary value.
+     *
+     * @param <R> result type.
+     *
+     * @return the result of {@code handler} call.
+     */
+    public <R> R declareTemp(@Nonnull String prefix, @Nonnull TempHandler<? extends R> handler) {
+
+        final Variable temp = Variable.temp(prefix, this.frame.nextTemp());
+        final LocalVariable local = new LocalVariable(temp, this.frame.rev());
+        final Knowns knowns = new Knowns(
+                this,
+                this.resolutions.put(local, UNRESOLVED),
+                this.frame.setTemp(temp, local));
+
+        return handler.handle(temp, local, knowns);
+    }
+
     @Nonnull
     private Knowns declareLocal(@Nonnull LocalVariable local) {
         if (this.resolutions.containsKey(local)) {
             return this;
         }
 
-        final HashMap<Variable, Resolution> resolutions = new HashMap<>(this.resolutions.size() + 1);
-
-        resolutions.putAll(this.resolutions);
-        resolutions.put(local, UNRESOLVED);
-
-        final HashMap<Variable, MappedTerm> mappings = new HashMap<>(this.mappings.size() + 1);
-
-        mappings.putAll(this.mappings);
-        mappings.put(local.variable, local);
-
-        return new Knowns(this, resolutions, mappings);
+        return new Knowns(
+                this,
+                this.resolutions.put(local, UNRESOLVED),
+                this.frame.set(local.variable, local));
     }
 
     /**
@@ -208,118 +300,220 @@ public class Knowns {
      * @param variable variable local to resolution rule.
      * @param value new variable value.
      *
-     * @return updated resolutions, or `null` if they can not be updated thus making corresponding rule effectively
-     * unmatched.
+     * @return updated resolutions, or empty optional if they can not be updated thus making corresponding rule
+     * effectively unmatched.
      */
     @Nonnull
     public Optional<Knowns> map(@Nonnull Variable variable, @Nonnull MappedTerm value) {
+        return Optional.ofNullable(tryMap(variable, value));
+    }
+
+    /**
+     * Maps local resolution rule variable to the new value without allocating anything on failure.
+     *
+     * <p>This is the same as {@link #map(Variable, MappedTerm)}, except it returns {@code null} when the mapping can
+     * not be updated.</p>
+     *
+     * @param variable variable local to resolution rule.
+     * @param value new variable value.
+     *
+     * @return updated resolutions, or {@code null} if they can not be updated.
+     */
+    @Nullable
+    public Knowns tryMap(@Nonnull Variable variable, @Nonnull MappedTerm value) {
 
-        final MappedTerm prev = this.mappings.get(variable);
+        final MappedTerm prev = this.frame.get(variable);
 
         if (prev == null) {
             // New mapping
             value.accept(ENSURE_QUERY_VARIABLE_EXISTS, this);
 
-            final HashMap<Variable, MappedTerm> mappings = new HashMap<>(this.mappings.size() + 1);
-
-            mappings.putAll(this.mappings);
-            mappings.put(variable, value);
-
-            return Optional.of(new Knowns(
+            return new Knowns(
                     this,
                     this.resolutions,
-                    mappings));
+                    this.frame.set(variable, value));
         }
         if (prev.equals(value)) {
             // Mapping didn't change
-            return Optional.of(this);
+            return this;
+        }
+        if (!(prev instanceof Variable)) {
+            // Mapped to atom or value, which can not change
+            return null;
+        }
+
+        final Variable target = (Variable) prev;
+
+        if (value instanceof Variable) {
+            return unite(target, (Variable) value);
+        }
+        if (value instanceof ResolvedTerm) {
+            return tryResolve(target, (ResolvedTerm) value);
         }
 
-        return updateMapping(value, prev);
+        return null;
     }
 
-    @Nonnull
-    private Optional<Knowns> updateMapping(@Nonnull MappedTerm value, @Nonnull MappedTerm prev) {
-        return prev.accept(
-                new MappedTerm.Visitor<MappedTerm, Optional<Knowns>>() {
+    /**
+     * Unites the alias sets of two query variables.
+     *
+     * <p>The root of the set with lower rank becomes an alias of the root of another one. When the ranks are equal,
+     * the root of the first variable becomes an alias.</p>
+     *
+     * <p>The resolutions are checked for conflict before anything is updated. So nothing is allocated when the
+     * variables can not be united.</p>
+     *
+     * @return updated knowns, or {@code null} if the variables are resolved to different values.
+     */
+    @Nullable
+    private Knowns unite(@Nonnull Variable variable, @Nonnull Variable aliased) {
 
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitVariable(@Nonnull Variable variable, @Nonnull MappedTerm value) {
-                        return resolve(variable, value);
-                    }
+        final Variable root1 = root(variable);
+        final Variable root2 = root(aliased);
 
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitMapped(@Nonnull MappedTerm term, @Nonnull MappedTerm value) {
-                        return Optional.empty();
-                    }
+        if (root1.equals(root2)) {
+            return withResolutions(compress(compress(this.resolutions, variable, root1), aliased, root2));
+        }
+
+        final Resolution resolution1 = resolution(root1);
+        final Resolution resolution2 = resolution(root2);
+        final ResolvedTerm value1 = resolution1.resolved();
+        final ResolvedTerm value2 = resolution2.resolved();
+
+        if (value1 != null && value2 != null && !value1.equals(value2)) {
+            return null;
+        }
+
+        final Variable child;
+        final Variable parent;
+        final int rank;
+
+        if (resolution1.rank() > resolution2.rank()) {
+            child = root2;
+            parent = root1;
+            rank = resolution1.rank();
+        } else {
+            child = root1;
+            parent = root2;
+            rank = resolution1.rank() == resolution2.rank() ? resolution2.rank() + 1 : resolution2.rank();
+        }
+
+        final ResolvedTerm value = value1 != null ? value1 : value2;
 
-                },
-                value);
+        return withResolutions(
+                compress(compress(this.resolutions, variable, root1), aliased, root2)
+                        .put(child, new Alias(parent))
+                        .put(parent, value != null ? new Resolved(value, rank) : unresolved(rank)));
     }
 
+    /**
+     * Finds the root of the alias set the given query variable belongs to.
+     *
+     * <p>The alias sets are united by rank. So the path to the root never exceeds the logarithm of the set size, even
+     * if the path is not compressed yet.</p>
+     *
+     * @throws UnknownVariableException if there is no such variable in original query.
+     */
     @Nonnull
-    private Optional<Knowns> resolve(@Nonnull Variable variable, @Nonnull MappedTerm value) {
+    private Variable root(@Nonnull Variable variable) {
+
+        Variable current = variable;
+
+        for (;;) {
 
-        final Resolution resolution = resolution(variable);
+            final Variable parent = resolution(current).parent();
 
-        return resolution.value()
-                .<Optional<Knowns>>map(oldValue ->
-                        oldValue.equals(value)
-                                ? Optional.of(this)
-                                : Optional.empty())
-                .orElseGet(() -> resolution.aliased()
-                        .map(aliased -> resolve(aliased, value))
-                        .orElseGet(() -> addResolution(variable, value)));
+            if (parent == null) {
+                return current;
+            }
+
+            current = parent;
+        }
     }
 
+    /**
+     * Compresses the path from the given query variable to the root of its alias set.
+     *
+     * <p>Each variable along the path becomes a direct alias of the root.</p>
+     */
     @Nonnull
-    private Optional<Knowns> addResolution(@Nonnull Variable var, @Nonnull MappedTerm value) {
-        return value.accept(
-                new PlainTerm.Visitor<Knowns, Optional<Knowns>>() {
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitResolved(
-                            @Nonnull ResolvedTerm term,
-                            @Nonnull Knowns knowns) {
+    private static Bindings<Variable, Resolution> compress(
+            @Nonnull Bindings<Variable, Resolution> resolutions,
+            @Nonnull Variable variable,
+            @Nonnull Variable root) {
 
-                        final HashMap<Variable, Resolution> resolutions =
-                                new HashMap<>(knowns.resolutions.size() + 1);
+        Variable current = variable;
+        Alias alias = null;
 
-                        resolutions.putAll(knowns.resolutions);
-                        resolutions.put(var, new Resolved(term));
+        for (;;) {
 
-                        return Optional.of(new Knowns(knowns, resolutions, knowns.mappings));
-                    }
+            final Variable parent = resolutions.get(current).parent();
 
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitVariable(
-                            @Nonnull Variable variable,
-                            @Nonnull Knowns knowns) {
-                        knowns.resolution(variable); // Ensure aliased query variable exists
+            if (parent == null || parent.equals(root)) {
+                return resolutions;
+            }
+            if (alias == null) {
+                alias = new Alias(root);
+            }
 
-                        final HashMap<Variable, Resolution> resolutions =
-                                new HashMap<>(knowns.resolutions.size() + 1);
+            resolutions = resolutions.put(current, alias);
+            current = parent;
+        }
+    }
 
-                        resolutions.putAll(knowns.resolutions);
-                        resolutions.put(var, new Alias(variable));
+    @Nonnull
+    private Knowns withResolutions(@Nonnull Bindings<Variable, Resolution> resolutions) {
+        if (resolutions == this.resolutions) {
+            return this;
+        }
+        return new Knowns(this, resolutions, this.frame);
+    }
 
-                        return Optional.of(new Knowns(knowns, resolutions, knowns.mappings));
-                    }
+    /**
+     * Whether these knowns record query variable resolutions on a trail.
+     *
+     * @return {@code true} if these knowns are {@link #sequential() sequential}, or {@code false} if they are
+     * persistent.
+     */
+    public final boolean isSequential() {
+        return this.resolutions instanceof Trail;
+    }
 
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlain(
-                            @Nonnull PlainTerm term,
-                            @Nonnull Knowns knowns) {
-                        return Optional.empty();
-                    }
+    /**
+     * Converts these knowns to sequential ones.
+     *
+     * <p>Sequential knowns update the query variable resolutions in place and record each update on a trail. When
+     * knowns created before the update are accessed again, the updates made after them are undone. So the
+     * resolutions allocate almost nothing when resolved depth-first, i.e. when a choice point alternatives are tried
+     * one after another.</p>
+     *
+     * <p>Sequential knowns are not thread-safe. They are used by {@link Predicate.Resolver#isSequential() sequential}
+     * resolvers and should not leave the thread the predicate is resolved on. Use {@link #persistent()} method to
+     * share them.</p>
+     *
+     * @return sequential knowns with the same mappings and resolutions, or this instance if it is sequential already.
+     */
+    @Nonnull
+    public final Knowns sequential() {
+        if (isSequential()) {
+            return this;
+        }
+        return new Knowns(this, Trail.start(this.resolutions), this.frame);
+    }
 
-                },
-                this);
+    /**
+     * Converts these knowns to persistent ones.
+     *
+     * <p>Persistent knowns can be shared between threads.</p>
+     *
+     * @return persistent knowns with the same mappings and resolutions, or this instance if it is persistent already.
+     */
+    @Nonnull
+    public final Knowns persistent() {
+        if (!isSequential()) {
+            return this;
+        }
+        return new Knowns(this, ((Trail<Variable, Resolution>) this.resolutions).toHashTrie(), this.frame);
     }
 
     /**
@@ -328,13 +522,103 @@ public class Knowns {
      * <p>This is called in the very beginning of {@link Rule#getCondition() rule condition}
      * {@link Rule.Pattern#match(Predicate.Call, Knowns) match}.</p>
      *
-     * <p>This wipes out {@link #attr(Class) resolution attributes}. Also, the
-     * {@link #declareLocal(Variable, BiFunction) locals declared} after this call are unique and does not correspond
-     * to the locals declared earlier.</p>
+     * <p>This wipes out {@link #attr(Class) resolution attributes} and local variable
+     * {@link #mapping(Variable, BiFunction) mappings}. Also, the {@link #declareLocal(Variable, BiFunction) locals
+     * declared} after this call are unique and does not correspond to the locals declared earlier.</p>
      */
     @Nonnull
     public final Knowns startMatching() {
-        return new Knowns(this);
+        return startMatching(Frame.Layout.EMPTY);
+    }
+
+    /**
+     * Creates knowns to update while matching the given rule pattern.
+     *
+     * @param layout the layout of rule pattern variables.
+     */
+    @Nonnull
+    final Knowns startMatching(@Nonnull Frame.Layout layout) {
+
+        final int rev = this.rev + 1;
+
+        return new Knowns(this, new Frame(layout, rev, this.frame.depth() + 1), Attr.NONE, rev);
+    }
+
+    /**
+     * Finishes the matching rule resolution.
+     *
+     * <p>This is called when the predicate of the {@link Rule.Match matching rule} is resolved. Restores the local
+     * variable mappings and resolution attributes of the caller, while preserving the query variable resolutions.</p>
+     *
+     * <p>The locals declared by the finished rules are dead, unless some query variable or caller's local is an alias
+     * of them. Once the number of locals grows enough, the dead ones are {@link #compact() removed}.</p>
+     *
+     * @param caller the knowns the rule match {@link #startMatching() started} with.
+     *
+     * @return knowns to continue the caller's predicate resolution with.
+     */
+    @Nonnull
+    public final Knowns finishMatching(@Nonnull Knowns caller) {
+
+        final Knowns finished;
+
+        if (this.frame == caller.frame && this.attrs == caller.attrs) {
+            finished = this;
+        } else {
+            finished = new Knowns(this, caller.frame, caller.attrs, this.rev);
+        }
+
+        return finished.compact();
+    }
+
+    /**
+     * The number of known query and local variables.
+     */
+    final int size() {
+        return this.resolutions.size();
+    }
+
+    /**
+     * Removes dead locals.
+     *
+     * <p>The locals declared by the rule matches started after the current frame are dead, as those rules are
+     * finished already. Each alias set containing dead locals is rebuilt with all of its live variables directly
+     * aliasing the live root. When the root itself is dead, its resolution is moved to one of the live variables.</p>
+     *
+     * <p>This happens only when the number of variables doubles since the last compaction, or when the resolution
+     * returns to a frame at least twice shallower than the frame of the last compaction, i.e. when the
+     * {@link Frame#depth() nesting depth} of rule matches halves. So the cost of compaction is amortized by the number
+     * of declared locals and finished rule matches.</p>
+     */
+    @Nonnull
+    private Knowns compact() {
+
+        final int size = this.resolutions.size();
+
+        if (size < MIN_COMPACTION_SIZE) {
+            return this;
+        }
+        if (size < this.compacted << 1) {
+
+            final int liveDepth = this.frame.depth();
+
+            if (liveDepth >= this.compactedDepth || liveDepth > this.compactedDepth >> 1) {
+                return this;
+            }
+        }
+
+        final Compaction compaction = new Compaction(this);
+
+        this.resolutions.forEach(compaction);
+
+        if (compaction.removed == 0) {
+            return new Knowns(this, this.resolutions, size);
+        }
+
+        final Bindings<Variable, Resolution> resolutions =
+                isSequential() ? Trail.start(compaction.resolutions) : compaction.resolutions;
+
+        return new Knowns(this, resolutions, resolutions.size());
     }
 
     /**
@@ -356,6 +640,25 @@ public class Knowns {
         throw new UnknownVariableException(variable);
     }
 
+    /**
+     * Returns the term the given query or local variable stands for.
+     *
+     * @param variable query or local variable.
+     *
+     * @return either a value the variable is resolved to, or the root variable of its alias set if it is not resolved
+     * yet.
+     *
+     * @throws UnknownVariableException if there is no such variable.
+     */
+    @Nonnull
+    public final MappedTerm termOf(@Nonnull Variable variable) {
+
+        final Variable root = root(variable);
+        final ResolvedTerm value = resolution(root).resolved();
+
+        return value != null ? value : root;
+    }
+
     /**
      * Resolves original query variable.
      *
@@ -365,27 +668,34 @@ public class Knowns {
      */
     @Nonnull
     public Optional<Knowns> resolve(@Nonnull Variable variable, @Nonnull ResolvedTerm value) {
+        return Optional.ofNullable(tryResolve(variable, value));
+    }
 
-        final Resolution resolution = resolution(variable);
-
-        return resolution.value()
-                .<Optional<Knowns>>map(oldValue ->
-                        oldValue.equals(value) // Resolution can not change
-                                ? Optional.of(this)
-                                : Optional.empty())
-                .orElseGet(() -> resolution.aliased()
-                        .map(aliased -> resolve(aliased, value)) // Resolve aliased variable
-                        .orElseGet(() -> {
-                            // Resolve
+    /**
+     * Resolves original query variable without allocating anything on failure.
+     *
+     * <p>This is the same as {@link #resolve(Variable, ResolvedTerm)}, except it returns {@code null} when the variable
+     * is already resolved to another value.</p>
+     *
+     * @param variable original query variable.
+     * @param value new variable value.
+     *
+     * @return updated knowns, or {@code null} if the variable can not be resolved to the given value.
+     */
+    @Nullable
+    public Knowns tryResolve(@Nonnull Variable variable, @Nonnull ResolvedTerm value) {
 
-                            final HashMap<Variable, Resolution> resolutions =
-                                    new HashMap<>(this.resolutions.size() + 1);
+        final Variable root = root(variable);
+        final Resolution resolution = resolution(root);
+        final ResolvedTerm oldValue = resolution.resolved();
 
-                            resolutions.putAll(this.resolutions);
-                            resolutions.put(variable, new Resolved(value));
+        if (oldValue != null) {
+            // Resolution can not change
+            return oldValue.equals(value) ? this : null;
+        }
 
-                            return Optional.of(new Knowns(this, resolutions, this.mappings));
-                        }));
+        return withResolutions(
+                compress(this.resolutions, variable, root).put(root, new Resolved(value, resolution.rank())));
     }
 
     /**
@@ -400,7 +710,31 @@ public class Knowns {
     public final <T> Optional<T> attr(@Nonnull Class<? extends T> type) {
 
         @SuppressWarnings("unchecked")
-        final T value = (T) this.attrs.get(type);
+        final Attr<? extends T> key = (Attr<? extends T>) Attr.of(type);
+
+        return attr(key);
+    }
+
+    /**
+     * Returns resolution attribute with the given key.
+     *
+     * @param key resolution attribute key.
+     * @param <T> as type of resolution attribute.
+     *
+     * @return optional containing resolution attribute value, or empty optional if there is no such attribute exists.
+     */
+    @Nonnull
+    public final <T> Optional<T> attr(@Nonnull Attr<? extends T> key) {
+
+        final Object[] attrs = this.attrs;
+        final int id = key.id;
+
+        if (id >= attrs.length) {
+            return Optional.empty();
+        }
+
+        @SuppressWarnings("unchecked")
+        final T value = (T) attrs[id];
 
         return Optional.ofNullable(value);
     }
@@ -423,37 +757,134 @@ public class Knowns {
     @Nonnull
     public final <T> Knowns attr(@Nonnull Class<? extends T> type, @Nonnull T value) {
 
-        final HashMap<Class<?>, Object> attrs = new HashMap<>(this.attrs.size() + 1);
+        @SuppressWarnings("unchecked")
+        final Attr<? super T> key = (Attr<? super T>) Attr.of(type);
 
-        attrs.putAll(this.attrs);
-        attrs.put(type, value);
+        return attr(key, value);
+    }
+
+    /**
+     * Assigns resolution attribute value.
+     *
+     * <p>At most one resolution attribute with the given key exists.</p>
+     *
+     * <p>Resolution attributes are typically assigned during rule pattern match and used by predicates. They are wiped
+     * out when {@link #startMatching() new rule match is started}.</p>
+     *
+     * @param key resolution attribute key.
+     * @param value new resolution attribute value.
+     * @param <T> a type of resolution attribute.
+     *
+     * @return a new knowns instance with the given attribute set to the specified value.
+     */
+    @Nonnull
+    public final <T> Knowns attr(@Nonnull Attr<? super T> key, @Nonnull T value) {
+
+        final int id = key.id;
+        final Object[] attrs = Arrays.copyOf(this.attrs, Math.max(this.attrs.length, id + 1));
+
+        attrs[id] = value;
 
         return new Knowns(this, attrs);
     }
 
-    private static final Resolution UNRESOLVED = new Resolution() {
+    /**
+     * A 64-bit fingerprint of query variable resolutions.
+     *
+     * <p>{@link #equals(Object) Equal} knowns have equal fingerprints. So the fingerprint can be used as a key of
+     * memo tables and answer caches. It is computed on the first request and cached.</p>
+     *
+     * @return non-zero fingerprint.
+     */
+    public final long fingerprint() {
+
+        long fingerprint = this.fingerprint;
 
-        @Nonnull
-        @Override
-        public Optional<ResolvedTerm> value() {
-            return Optional.empty();
+        if (fingerprint == 0L) {
+
+            final Fingerprint builder = new Fingerprint(this);
+
+            this.resolutions.forEach(builder);
+            this.fingerprint = fingerprint = builder.fingerprint != 0L ? builder.fingerprint : 1L;
         }
 
-        @Nonnull
-        @Override
-        public Optional<Variable> aliased() {
-            return Optional.empty();
+        return fingerprint;
+    }
+
+    /**
+     * Compares query variable resolutions.
+     *
+     * <p>Knowns are equal when they contain the same query variables resolved to the same values. The unresolved
+     * query variables should form the same alias sets. Local variables, their mappings, and resolution attributes are
+     * ignored.</p>
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
         }
 
-        @Override
-        public String toString() {
-            return "Unresolved";
+        final Knowns that = (Knowns) o;
+
+        if (this.resolutions == that.resolutions) {
+            return true;
+        }
+        if (fingerprint() != that.fingerprint()) {
+            return false;
         }
 
-    };
+        // Sequential knowns may share the trail with these ones, so their resolutions can not be accessed while
+        // iterating over these ones.
+        final Comparison comparison = new Comparison(this, that.persistent());
+
+        this.resolutions.forEach(comparison);
+
+        return comparison.same && comparison.count == that.countQueryVariables();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint());
+    }
+
+    private int countQueryVariables() {
+
+        final int[] count = new int[1];
+
+        this.resolutions.forEach((variable, resolution) -> {
+            if (!(variable instanceof LocalVariable)) {
+                ++count[0];
+            }
+        });
+
+        return count[0];
+    }
+
+    @Nullable
+    private ResolvedTerm resolvedValue(@Nonnull Variable variable) {
+        return resolution(root(variable)).resolved();
+    }
+
+    /**
+     * The minimum number of variables to start the {@link #compact() compaction} at.
+     */
+    private static final int MIN_COMPACTION_SIZE = 64;
+
+    private static final Unresolved UNRESOLVED = new Unresolved(0);
+
+    @Nonnull
+    private static Unresolved unresolved(int rank) {
+        return rank == 0 ? UNRESOLVED : new Unresolved(rank);
+    }
 
     /**
      * Query variable resolution.
+     *
+     * <p>Query variables aliasing each other form a set with one root variable. Only the root variable can be resolved.
+     * Other ones are aliases of their parent in the set.</p>
      */
     public static abstract class Resolution {
 
@@ -464,7 +895,7 @@ public class Knowns {
          * Whether the query variable is resolved.
          */
         public final boolean isResolved() {
-            return this != UNRESOLVED;
+            return !(this instanceof Unresolved);
         }
 
         /**
@@ -479,6 +910,63 @@ public class Knowns {
         @Nonnull
         public abstract Optional<Variable> aliased();
 
+        /**
+         * A term the root query variable is resolved to, or {@code null} if it is not resolved yet or this is an alias.
+         */
+        @Nullable
+        ResolvedTerm resolved() {
+            return null;
+        }
+
+        /**
+         * A parent query variable within alias set, or {@code null} if this is a root variable resolution.
+         */
+        @Nullable
+        Variable parent() {
+            return null;
+        }
+
+        /**
+         * The rank of alias set. Only meaningful for the root variable resolution.
+         *
+         * <p>This is the upper bound of the path length from any variable within alias set to its root.</p>
+         */
+        int rank() {
+            return 0;
+        }
+
+    }
+
+    private static final class Unresolved extends Resolution {
+
+        private final int rank;
+
+        Unresolved(int rank) {
+            this.rank = rank;
+        }
+
+        @Nonnull
+        @Override
+        public Optional<ResolvedTerm> value() {
+            return Optional.empty();
+        }
+
+        @Nonnull
+        @Override
+        public Optional<Variable> aliased() {
+            return Optional.empty();
+        }
+
+        @Override
+        int rank() {
+            return this.rank;
+        }
+
+        @Override
+        public String toString() {
+            return "Unresolved";
+        }
+
     }
 
     private static final class Resolved extends Resolution {
@@ -486,8 +974,11 @@ public class Knowns {
         @Nonnull
         private final ResolvedTerm value;
 
-        Resolved(@Nonnull ResolvedTerm value) {
+        private final int rank;
+
+        Resolved(@Nonnull ResolvedTerm value, int rank) {
             this.value = value;
+            this.rank = rank;
         }
 
         @Nonnull
@@ -502,6 +993,17 @@ public class Knowns {
             return Optional.empty();
         }
 
+        @Nonnull
+        @Override
+        ResolvedTerm resolved() {
+            return this.value;
+        }
+
+        @Override
+        int rank() {
+            return this.rank;
+        }
+
         @Override
         public String toString() {
             return "Resolved(" + this.value + ')';
@@ -530,6 +1032,12 @@ public class Knowns {
             return Optional.of(this.aliased);
         }
 
+        @Nonnull
+        @Override
+        Variable parent() {
+            return this.aliased;
+        }
+
         @Override
         public String toString() {
             return "Alias(" + this.aliased + ')';
@@ -537,7 +1045,258 @@ public class Knowns {
 
     }
 
-    private static final class LocalVariable extends Variable {
+    /**
+     * A handler of {@link #declareTemp(String, TempHandler) declared temporary variable}.
+     *
+     * @param <R> result type.
+     */
+    @FunctionalInterface
+    public interface TempHandler<R> {
+
+        /**
+         * Handles declared temporary variable.
+         *
+         * @param temp temporary variable.
+         * @param local local variable the temporary one is mapped to.
+         * @param knowns updated knowns.
+         *
+         * @return arbitrary value.
+         */
+        R handle(@Nonnull Variable temp, @Nonnull Variable local, @Nonnull Knowns knowns);
+
+    }
+
+    /**
+     * Resolution attribute key.
+     *
+     * <p>Each key receives a small identifier when created. The {@link Knowns#attr(Attr) attribute value} is stored
+     * in array at that index. So keys should be created once, e.g. stored in static fields.</p>
+     *
+     * @param <T> a type of resolution attribute.
+     */
+    public static final class Attr<T> {
+
+        private static final Object[] NONE = new Object[0];
+
+        private static final AtomicInteger lastId = new AtomicInteger();
+
+        private static final ClassValue<Attr<?>> byType = new ClassValue<Attr<?>>() {
+
+            @Override
+            protected Attr<?> computeValue(Class<?> type) {
+                return new Attr<>(type.getName());
+            }
+
+        };
+
+        /**
+         * Creates new resolution attribute key.
+         *
+         * @param name attribute name used for representation only.
+         * @param <T> a type of resolution attribute.
+         *
+         * @return new attribute key distinct from any other one.
+         */
+        @Nonnull
+        public static <T> Attr<T> create(@Nonnull String name) {
+            return new Attr<>(name);
+        }
+
+        /**
+         * Returns resolution attribute key identified by attribute type.
+         *
+         * <p>This key is used by {@link Knowns#attr(Class)} and {@link Knowns#attr(Class, Object)} methods.</p>
+         *
+         * @param type a class of resolution attribute.
+         * @param <T> a type of resolution attribute.
+         *
+         * @return the same attribute key for the same type.
+         */
+        @SuppressWarnings("unchecked")
+        @Nonnull
+        public static <T> Attr<T> of(@Nonnull Class<T> type) {
+            return (Attr<T>) byType.get(type);
+        }
+
+        @Nonnull
+        private final String name;
+
+        private final int id;
+
+        private Attr(@Nonnull String name) {
+            this.name = name;
+            this.id = lastId.getAndIncrement();
+        }
+
+        @Override
+        public String toString() {
+            return "Attr(" + this.name + ')';
+        }
+
+    }
+
+    private static final class Compaction implements BiConsumer<Variable, Resolution> {
+
+        @Nonnull
+        private final Knowns knowns;
+
+        /**
+         * The latest live revision. The locals with greater revisions are dead.
+         */
+        private final int liveRev;
+
+        /**
+         * Maps dead roots of alias sets to live ones.
+         */
+        private final HashMap<Variable, Variable> roots = new HashMap<>();
+
+        @Nonnull
+        HashTrie<Variable, Resolution> resolutions = HashTrie.empty();
+
+        int removed;
+
+        Compaction(@Nonnull Knowns knowns) {
+            this.knowns = knowns;
+            this.liveRev = knowns.frame.rev();
+        }
+
+        @Override
+        public void accept(@Nonnull Variable variable, @Nonnull Resolution resolution) {
+            if (isDead(variable)) {
+                ++this.removed;
+                return;
+            }
+
+            final Variable root = this.knowns.root(variable);
+
+            if (root == variable) {
+                this.resolutions = this.resolutions.put(variable, resolution);
+                return;
+            }
+            if (!isDead(root)) {
+                this.resolutions = this.resolutions.put(
+                        variable,
+                        resolution.parent() == root ? resolution : new Alias(root));
+                return;
+            }
+
+            final Variable liveRoot = this.roots.computeIfAbsent(root, r -> variable);
+
+            if (liveRoot != variable) {
+                this.resolutions = this.resolutions.put(variable, new Alias(liveRoot));
+                return;
+            }
+
+            final Resolution rootResolution = this.knowns.resolution(root);
+            final ResolvedTerm value = rootResolution.resolved();
+
+            this.resolutions = this.resolutions.put(
+                    variable,
+                    value != null
+                            ? new Resolved(value, rootResolution.rank())
+                            : unresolved(rootResolution.rank()));
+        }
+
+        private boolean isDead(@Nonnull Variable variable) {
+            return variable instanceof LocalVariable && ((LocalVariable) variable).rev > this.liveRev;
+        }
+
+    }
+
+    private static final class Fingerprint implements BiConsumer<Variable, Resolution> {
+
+        @Nonnull
+        private final Knowns knowns;
+
+        long fingerprint;
+
+        Fingerprint(@Nonnull Knowns knowns) {
+            this.knowns = knowns;
+        }
+
+        @Override
+        public void accept(@Nonnull Variable variable, @Nonnull Resolution resolution) {
+            if (variable instanceof LocalVariable) {
+                return;
+            }
+
+            final ResolvedTerm value = this.knowns.resolvedValue(variable);
+            final long hash = 31L * variable.hashCode() + (value != null ? value.hashCode() : -1);
+
+            // The order of variables is unspecified, so the fingerprint is a sum of mixed hashes.
+            this.fingerprint += mix(hash);
+        }
+
+        /**
+         * SplitMix64 finalizer.
+         */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+    }
+
+    private static final class Comparison implements BiConsumer<Variable, Resolution> {
+
+        @Nonnull
+        private final Knowns knowns;
+
+        @Nonnull
+        private final Knowns other;
+
+        /**
+         * Maps the roots of unresolved alias sets of {@link #knowns} to the ones of {@link #other} knowns.
+         */
+        private final HashMap<Variable, Variable> roots = new HashMap<>();
+
+        /**
+         * Maps the roots of unresolved alias sets of {@link #other} knowns to the ones of {@link #knowns}.
+         */
+        private final HashMap<Variable, Variable> otherRoots = new HashMap<>();
+
+        boolean same = true;
+
+        int count;
+
+        Comparison(@Nonnull Knowns knowns, @Nonnull Knowns other) {
+            this.knowns = knowns;
+            this.other = other;
+        }
+
+        @Override
+        public void accept(@Nonnull Variable variable, @Nonnull Resolution resolution) {
+            if (!this.same || variable instanceof LocalVariable) {
+                return;
+            }
+
+            ++this.count;
+
+            if (!this.other.resolutions.containsKey(variable)) {
+                this.same = false;
+                return;
+            }
+
+            final Variable root = this.knowns.root(variable);
+            final Variable otherRoot = this.other.root(variable);
+            final ResolvedTerm value = this.knowns.resolution(root).resolved();
+            final ResolvedTerm otherValue = this.other.resolution(otherRoot).resolved();
+
+            if (value != null || otherValue != null) {
+                this.same = value != null && value.equals(otherValue);
+                return;
+            }
+
+            final Variable mapped = this.roots.putIfAbsent(root, otherRoot);
+            final Variable reverse = this.otherRoots.putIfAbsent(otherRoot, root);
+
+            this.same = (mapped == null || mapped.equals(otherRoot)) && (reverse == null || reverse.equals(root));
+        }
+
+    }
+
+    private static final class LocalVariable extends LazilyNamedVariable {
 
         @Nonnull
         private final Variable variable;
@@ -545,11 +1304,16 @@ public class Knowns {
         private final int rev;
 
         LocalVariable(@Nonnull Variable variable, int rev) {
-            super(variable.getName() + " #" + rev);
             this.variable = variable;
             this.rev = rev;
         }
 
+        @Nonnull
+        @Override
+        protected String buildName() {
+            return this.variable.getName() + " #" + this.rev;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
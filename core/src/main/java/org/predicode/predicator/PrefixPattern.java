@@ -5,24 +5,27 @@ import org.predicode.predicator.predicates.Qualifiers;
 import org.predicode.predicator.terms.PlainTerm;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.List;
-import java.util.Optional;
 
 import static org.predicode.predicator.grammar.TermPrinter.printTerms;
-import static org.predicode.predicator.terms.PlainTerm.matchTerms;
+import static org.predicode.predicator.terms.PlainTerm.tryMatchLeadingTerms;
 
 
 @Immutable
 final class PrefixPattern extends Rule.Pattern {
 
-    @Nonnull
-    static Optional<Knowns> matchPrefix(
-            @Nonnull Predicate.Prefix prefix,
+    @Nullable
+    static Knowns matchTerms(
             @Nonnull Rule.Pattern pattern,
+            @Nonnull List<? extends PlainTerm> terms,
+            @Nonnull Qualifiers qualifiers,
             @Nonnull Knowns knowns) {
-        return matchTerms(pattern.getTerms(), prefix.getTerms(), knowns.startMatching())
-                .flatMap(updated -> pattern.getQualifiers().match(prefix.getQualifiers(), updated));
+
+        final Knowns updated = tryMatchLeadingTerms(pattern.getTerms(), terms, knowns.startMatching(pattern.layout()));
+
+        return updated != null ? pattern.getQualifiers().tryMatch(qualifiers, updated) : null;
     }
 
     PrefixPattern(@Nonnull List<? extends PlainTerm> terms) {
@@ -40,11 +43,23 @@ final class PrefixPattern extends Rule.Pattern {
         return true;
     }
 
-    @Nonnull
+    @Nullable
     @Override
-    public Optional<Knowns> match(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
-        return call.prefix(getTerms().size())
-                .flatMap(prefix -> matchPrefix(prefix, this, knowns));
+    public Knowns tryMatch(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final int length = call.length();
+
+        if (length >= 0) {
+            if (length < getTerms().size()) {
+                return null; // The call is too short
+            }
+            // Match the finite call terms in place
+            return matchTerms(this, call.finiteTerms(), call.getQualifiers(), knowns);
+        }
+
+        final Predicate.Prefix prefix = call.prefix(getTerms().size()).orElse(null);
+
+        return prefix != null ? matchTerms(this, prefix.getTerms(), prefix.getQualifiers(), knowns) : null;
     }
 
     @Override
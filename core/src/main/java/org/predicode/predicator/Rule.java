@@ -7,8 +7,10 @@ import org.predicode.predicator.terms.PlainTerm;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.UnaryOperator;
@@ -86,9 +88,24 @@ public final class Rule {
      * @return rule match, or empty optional if the rule condition does not match.
      */
     public final Optional<Match> match(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
-        return getCondition()
-                .match(call, knowns)
-                .map(updatedKnowns -> new Rule.Match(this, updatedKnowns));
+        return Optional.ofNullable(tryMatch(call, knowns));
+    }
+
+    /**
+     * Attempts to match this given predicate {@code call} against this rule {@link #getCondition() condition} without
+     * allocating anything on mismatch.
+     *
+     * @param call predicate call to match.
+     * @param knowns known resolutions.
+     *
+     * @return rule match, or {@code null} if the rule condition does not match.
+     */
+    @Nullable
+    public final Match tryMatch(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final Knowns updated = getCondition().tryMatch(call, knowns);
+
+        return updated != null ? new Rule.Match(this, updated) : null;
     }
 
     @Override
@@ -106,13 +123,56 @@ public final class Rule {
          * Selects resolution rules the given predicate call matches.
          *
          * @param call predicate call.
-         * @param knowns known resolutions.
+         * @param knowns known resolutions to {@link Rule#match(Predicate.Call, Knowns) match} the rules against.
          *
          * @return a {@link Flux} of {@link Match rule matches}.
          */
         @Nonnull
         Flux<Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns);
 
+        /**
+         * Finds resolution rules the given predicate call matches synchronously.
+         *
+         * <p>This is used by {@link org.predicode.predicator.predicates.Solver pull-based solver}. The rules are
+         * matched lazily, when the next match is requested.</p>
+         *
+         * @param call predicate call.
+         * @param knowns known resolutions to {@link Rule#match(Predicate.Call, Knowns) match} the rules against.
+         *
+         * @return an iterator over {@link Match rule matches}. By default it pulls the matches from
+         * {@link #matchingRules(Predicate.Call, Knowns) flux}.
+         */
+        @Nonnull
+        default Iterator<Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+            return matchingRules(call, knowns).toIterable(1).iterator();
+        }
+
+        /**
+         * The version of the rules this selector selects from.
+         *
+         * <p>Mutable selector changes its version each time the rules change. This is used to invalidate the
+         * {@link org.predicode.predicator.predicates.AnswerCache cached answers}.</p>
+         *
+         * @return {@code 0} by default, as the selector considered immutable.
+         */
+        default long version() {
+            return 0L;
+        }
+
+        /**
+         * Returns a snapshot of this selector.
+         *
+         * <p>The snapshot selects the same rules regardless of subsequent modifications of this selector. It is
+         * used by {@link Predicate.Resolver#withSelector(Selector) resolver} to resolve the whole derivation against
+         * the same rules.</p>
+         *
+         * @return this instance by default, as the selector considered immutable.
+         */
+        @Nonnull
+        default Selector snapshot() {
+            return this;
+        }
+
     }
 
     /**
@@ -178,9 +238,13 @@ public final class Rule {
         @Nonnull
         private final Qualifiers qualifiers;
 
+        @Nonnull
+        private final Frame.Layout layout;
+
         Pattern(@Nonnull List<? extends PlainTerm> terms) {
             this.terms = terms;
             this.qualifiers = Qualifiers.none();
+            this.layout = Frame.Layout.of(terms, this.qualifiers);
         }
 
         /**
@@ -194,6 +258,7 @@ public final class Rule {
                 @Nonnull Qualifiers qualifiers) {
             this.terms = Collections.unmodifiableList(terms);
             this.qualifiers = qualifiers;
+            this.layout = Frame.Layout.of(terms, qualifiers);
         }
 
         /**
@@ -249,7 +314,20 @@ public final class Rule {
          * @return updated knowns if the call matches this pattern, or empty optional otherwise.
          */
         @Nonnull
-        public abstract Optional<Knowns> match(@Nonnull Predicate.Call call, @Nonnull Knowns knowns);
+        public final Optional<Knowns> match(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+            return Optional.ofNullable(tryMatch(call, knowns));
+        }
+
+        /**
+         * Attempts to match the given predicate call against this pattern without allocating anything on mismatch.
+         *
+         * @param call a predicate call to match.
+         * @param knowns known resolutions.
+         *
+         * @return updated knowns if the call matches this pattern, or {@code null} otherwise.
+         */
+        @Nullable
+        public abstract Knowns tryMatch(@Nonnull Predicate.Call call, @Nonnull Knowns knowns);
 
         /**
          * Creates predicate resolution rule with this pattern as its {@link Rule#getCondition() condition}.
@@ -301,6 +379,17 @@ public final class Rule {
             return result;
         }
 
+        /**
+         * The layout of this pattern variables.
+         *
+         * <p>The variables are numbered once per pattern, so that their mappings can be stored in
+         * {@link Knowns#startMatching(Frame.Layout) rule match frame} slots.</p>
+         */
+        @Nonnull
+        final Frame.Layout layout() {
+            return this.layout;
+        }
+
         @Nonnull
         abstract Pattern updateQualifiers(@Nonnull Qualifiers qualifiers);
 
@@ -0,0 +1,434 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Predicate;
+import org.predicode.predicator.terms.PlainTerm;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Indexed predicate resolution rule base.
+ *
+ * <p>Selects the rules by the first term of predicate call rather than matching them all.</p>
+ *
+ * <p>The exact rule patterns are grouped by their length. Within each group the patterns starting with
+ * {@link PlainTerm#isIndexKey() index key} are bucketed by that term. The rest of the exact patterns, e.g. starting
+ * with variable or placeholder, are kept in a separate bucket. Prefix patterns are kept in their own bucket too.</p>
+ *
+ * <p>When the first call term is an index key, only the rules from the matching bucket, the non-indexed bucket of the
+ * same length, and the prefix patterns bucket are matched. Otherwise all the rules of the same length are matched
+ * along with prefix ones. Either way the matching rules are selected in the order they are declared.</p>
+ *
+ * <p>Before the rule selection, the call is checked against the {@link #getFilter() call filter}. The calls that
+ * can not match any rule are rejected by it without touching any bucket.</p>
+ */
+@ThreadSafe
+public final class RuleBase implements Rule.Selector {
+
+    static final int[] NO_RULES = new int[0];
+
+    private static final Rule[] NO_CANDIDATES = new Rule[0];
+
+    /**
+     * Constructs rule base containing the given rules.
+     *
+     * @param rules rules to select from.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static RuleBase of(@Nonnull Rule... rules) {
+        return of(Arrays.asList(rules));
+    }
+
+    /**
+     * Constructs rule base containing the given rules.
+     *
+     * @param rules rules to select from in the order of their selection.
+     *
+     * @return new rule base.
+     */
+    @Nonnull
+    public static RuleBase of(@Nonnull Iterable<? extends Rule> rules) {
+
+        final Builder builder = new Builder();
+
+        rules.forEach(builder::add);
+
+        return builder.build();
+    }
+
+    @Nonnull
+    private final Rule[] rules;
+
+    @Nonnull
+    private final Map<Integer, Group> exact;
+
+    @Nonnull
+    private final int[] prefix;
+
+    @Nonnull
+    private final CallFilter filter;
+
+    private RuleBase(@Nonnull Rule[] rules, @Nonnull Map<Integer, Group> exact, @Nonnull int[] prefix) {
+        this.rules = rules;
+        this.exact = exact;
+        this.prefix = prefix;
+        this.filter = CallFilter.build(rules);
+    }
+
+    /**
+     * All rules of this rule base.
+     *
+     * @return readonly list of rules in the order of their selection.
+     */
+    @Nonnull
+    public final List<Rule> getRules() {
+        return ruleList(this.rules);
+    }
+
+    /**
+     * The number of rules in this rule base.
+     *
+     * @return rule count.
+     */
+    public final int size() {
+        return this.rules.length;
+    }
+
+    /**
+     * The filter of calls not matching any rule of this rule base.
+     *
+     * <p>Calls are checked against this filter prior to rule selection. Its statistics can be used to monitor the
+     * filter efficiency.</p>
+     *
+     * @return call filter.
+     */
+    @Nonnull
+    public final CallFilter getFilter() {
+        return this.filter;
+    }
+
+    @Nonnull
+    @Override
+    public Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final int length = call.length();
+        final List<? extends PlainTerm> leading = leading(call, length);
+        final int check = check(length, leading);
+
+        if (check == CallFilter.NO_MATCH) {
+            return Flux.empty();
+        }
+
+        final Flux<Rule.Match> matches = RuleMatches.flux(select(length, leading), call, knowns);
+
+        if (check != CallFilter.MAY_MATCH) {
+            return matches;
+        }
+
+        return matches.switchIfEmpty(Flux.defer(() -> {
+            // The call passed the filter, but matched no rule
+            this.filter.falsePositive();
+            return Flux.empty();
+        }));
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final int length = call.length();
+        final List<? extends PlainTerm> leading = leading(call, length);
+        final int check = check(length, leading);
+
+        if (check == CallFilter.NO_MATCH) {
+            return Collections.emptyIterator();
+        }
+
+        return new RuleMatches(
+                select(length, leading),
+                call,
+                knowns,
+                check == CallFilter.MAY_MATCH ? this.filter::falsePositive : null);
+    }
+
+    /**
+     * Selects the rules that may match the given call.
+     *
+     * @param call predicate call.
+     *
+     * @return an array of candidate rules in the order of their declaration, or {@link #NO_CANDIDATES} if the call
+     * is rejected without consulting the rules.
+     */
+    @Nonnull
+    final Rule[] candidates(@Nonnull Predicate.Call call) {
+
+        final int length = call.length();
+        final List<? extends PlainTerm> leading = leading(call, length);
+
+        if (check(length, leading) == CallFilter.NO_MATCH) {
+            return NO_CANDIDATES;
+        }
+
+        return select(length, leading);
+    }
+
+    /**
+     * The leading call terms to check against the filter, or {@code null} if they are unknown.
+     */
+    @Nullable
+    private static List<? extends PlainTerm> leading(@Nonnull Predicate.Call call, int length) {
+
+        final int depth = length < 0 ? CallFilter.DEPTH : Math.min(length, CallFilter.DEPTH);
+
+        return call.prefix(depth).map(Predicate.Prefix::getTerms).orElse(null);
+    }
+
+    /**
+     * Checks the call against the {@link #getFilter() filter}.
+     *
+     * @return {@link CallFilter#check(int, List) check} result.
+     */
+    private int check(int length, @Nullable List<? extends PlainTerm> leading) {
+        if ((length < 0 || !this.exact.containsKey(length)) && this.prefix.length == 0) {
+            // No rules of that length
+            return CallFilter.NO_MATCH;
+        }
+        if (leading == null) {
+            return CallFilter.UNTESTED;
+        }
+
+        return this.filter.check(length, leading);
+    }
+
+    @Nonnull
+    private Rule[] select(int length, @Nullable List<? extends PlainTerm> leading) {
+        return select(length < 0 ? null : this.exact.get(length), leading);
+    }
+
+    @Nonnull
+    private Rule[] select(@Nullable Group group, @Nullable List<? extends PlainTerm> leading) {
+        if (group == null) {
+            // Only prefix patterns may match
+            return select(this.rules, this.prefix, NO_RULES, NO_RULES);
+        }
+        if (leading == null || leading.isEmpty()) {
+            return select(this.rules, group.all, this.prefix, NO_RULES);
+        }
+
+        final PlainTerm first = leading.get(0);
+
+        if (!first.isIndexKey()) {
+            return select(this.rules, group.all, this.prefix, NO_RULES);
+        }
+
+        return select(this.rules, group.indexed.getOrDefault(first, NO_RULES), group.unindexed, this.prefix);
+    }
+
+    /**
+     * Selects the rules with the given indices.
+     *
+     * @param rules all rules.
+     * @param first first array of rule indices in ascending order.
+     * @param second second array of rule indices in ascending order.
+     * @param third third array of rule indices in ascending order.
+     *
+     * @return an array of rules with indices from all arrays, in ascending order of their indices.
+     */
+    @Nonnull
+    static Rule[] select(@Nonnull Rule[] rules, @Nonnull int[] first, @Nonnull int[] second, @Nonnull int[] third) {
+
+        final Rule[] result = new Rule[first.length + second.length + third.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+
+        for (int r = 0; r < result.length; ++r) {
+
+            final int a = i < first.length ? first[i] : Integer.MAX_VALUE;
+            final int b = j < second.length ? second[j] : Integer.MAX_VALUE;
+            final int c = k < third.length ? third[k] : Integer.MAX_VALUE;
+            final int index;
+
+            if (a < b) {
+                if (a < c) {
+                    index = a;
+                    ++i;
+                } else {
+                    index = c;
+                    ++k;
+                }
+            } else if (b < c) {
+                index = b;
+                ++j;
+            } else {
+                index = c;
+                ++k;
+            }
+
+            result[r] = rules[index];
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return rulesToString(this.rules);
+    }
+
+    /**
+     * Returns a readonly list view of the given rules.
+     */
+    @Nonnull
+    static List<Rule> ruleList(@Nonnull Rule[] rules) {
+        return Collections.unmodifiableList(Arrays.asList(rules));
+    }
+
+    /**
+     * Builds a string representation of rule selector containing the given rules.
+     */
+    @Nonnull
+    static String rulesToString(@Nonnull Rule[] rules) {
+
+        final StringBuilder out = new StringBuilder().append('{');
+
+        for (final Rule rule : rules) {
+            out.append("\n  ").append(rule);
+        }
+
+        return out.append("\n}").toString();
+    }
+
+    /**
+     * A group of exact patterns of the same length.
+     */
+    private static final class Group {
+
+        /**
+         * Indices of all rules in this group.
+         */
+        @Nonnull
+        private final int[] all;
+
+        /**
+         * Indices of the rules which patterns start with index key, bucketed by that key.
+         */
+        @Nonnull
+        private final Map<PlainTerm, int[]> indexed;
+
+        /**
+         * Indices of the rules which patterns start with non-key term.
+         */
+        @Nonnull
+        private final int[] unindexed;
+
+        Group(@Nonnull int[] all, @Nonnull Map<PlainTerm, int[]> indexed, @Nonnull int[] unindexed) {
+            this.all = all;
+            this.indexed = indexed;
+            this.unindexed = unindexed;
+        }
+
+    }
+
+    private static final class Builder {
+
+        private final ArrayList<Rule> rules = new ArrayList<>();
+
+        private final HashMap<Integer, GroupBuilder> exact = new HashMap<>();
+
+        private final Indices prefix = new Indices();
+
+        void add(@Nonnull Rule rule) {
+
+            final int index = this.rules.size();
+            final Rule.Pattern pattern = rule.getCondition();
+
+            this.rules.add(rule);
+            if (pattern.isPrefix()) {
+                this.prefix.add(index);
+                return;
+            }
+
+            final List<? extends PlainTerm> terms = pattern.getTerms();
+
+            this.exact.computeIfAbsent(terms.size(), size -> new GroupBuilder())
+                    .add(index, terms.isEmpty() ? null : terms.get(0));
+        }
+
+        @Nonnull
+        RuleBase build() {
+
+            final HashMap<Integer, Group> exact = new HashMap<>(this.exact.size() * 4 / 3 + 1);
+
+            this.exact.forEach((length, group) -> exact.put(length, group.build()));
+
+            return new RuleBase(this.rules.toArray(new Rule[0]), exact, this.prefix.toArray());
+        }
+
+    }
+
+    private static final class GroupBuilder {
+
+        private final Indices all = new Indices();
+
+        private final HashMap<PlainTerm, Indices> indexed = new HashMap<>();
+
+        private final Indices unindexed = new Indices();
+
+        void add(int index, @Nullable PlainTerm first) {
+            this.all.add(index);
+            if (first != null && first.isIndexKey()) {
+                this.indexed.computeIfAbsent(first, key -> new Indices()).add(index);
+            } else {
+                this.unindexed.add(index);
+            }
+        }
+
+        @Nonnull
+        Group build() {
+
+            final HashMap<PlainTerm, int[]> indexed = new HashMap<>(this.indexed.size() * 4 / 3 + 1);
+
+            this.indexed.forEach((key, indices) -> indexed.put(key, indices.toArray()));
+
+            return new Group(this.all.toArray(), indexed, this.unindexed.toArray());
+        }
+
+    }
+
+    /**
+     * Growing array of rule indices.
+     */
+    static final class Indices {
+
+        private int[] indices = new int[2];
+
+        private int size;
+
+        void add(int index) {
+            if (this.size == this.indices.length) {
+                this.indices = Arrays.copyOf(this.indices, this.size << 1);
+            }
+            this.indices[this.size++] = index;
+        }
+
+        @Nonnull
+        int[] toArray() {
+            return this.size == 0 ? NO_RULES : Arrays.copyOf(this.indices, this.size);
+        }
+
+    }
+
+}
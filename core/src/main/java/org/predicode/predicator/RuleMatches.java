@@ -0,0 +1,119 @@
+package org.predicode.predicator;
+
+import org.predicode.predicator.predicates.Predicate;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An iterator over the matches of candidate rules.
+ *
+ * <p>Matches the candidates lazily, one after another, in the order they are given. This is a synchronous
+ * counterpart of {@link Rule.Selector#matchingRules(Predicate.Call, Knowns)} used by rule selectors to implement
+ * {@link Rule.Selector#findMatchingRules(Predicate.Call, Knowns)}.</p>
+ */
+final class RuleMatches implements Iterator<Rule.Match> {
+
+    /**
+     * Matches the candidate rules reactively.
+     *
+     * <p>This is an asynchronous counterpart of this iterator, used by rule selectors to implement
+     * {@link Rule.Selector#matchingRules(Predicate.Call, Knowns)}.</p>
+     *
+     * @param candidates candidate rules in the order of their selection.
+     * @param call predicate call to match.
+     * @param knowns known resolutions to match against.
+     *
+     * @return a {@link Flux} of matches of candidate rules in the order of their selection.
+     */
+    @Nonnull
+    static Flux<Rule.Match> flux(
+            @Nonnull Rule[] candidates,
+            @Nonnull Predicate.Call call,
+            @Nonnull Knowns knowns) {
+        return Flux.fromArray(candidates).handle((rule, sink) -> {
+
+            final Rule.Match match = rule.tryMatch(call, knowns);
+
+            if (match != null) {
+                sink.next(match);
+            }
+        });
+    }
+
+    @Nonnull
+    private final Rule[] candidates;
+
+    @Nonnull
+    private final Predicate.Call call;
+
+    @Nonnull
+    private final Knowns knowns;
+
+    /**
+     * Reports none of the candidates matched, or {@code null} if there is nothing to report.
+     */
+    @Nullable
+    private Runnable noMatch;
+
+    private int index;
+
+    @Nullable
+    private Rule.Match next;
+
+    RuleMatches(@Nonnull Rule[] candidates, @Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        this(candidates, call, knowns, null);
+    }
+
+    RuleMatches(
+            @Nonnull Rule[] candidates,
+            @Nonnull Predicate.Call call,
+            @Nonnull Knowns knowns,
+            @Nullable Runnable noMatch) {
+        this.candidates = candidates;
+        this.call = call;
+        this.knowns = knowns;
+        this.noMatch = noMatch;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.next == null) {
+            if (this.index == this.candidates.length) {
+
+                final Runnable noMatch = this.noMatch;
+
+                if (noMatch != null) {
+                    this.noMatch = null;
+                    noMatch.run();
+                }
+
+                return false;
+            }
+            this.next = this.candidates[this.index++].tryMatch(this.call, this.knowns);
+        }
+
+        this.noMatch = null;
+
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public Rule.Match next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final Rule.Match next = this.next;
+
+        this.next = null;
+
+        return next;
+    }
+
+}
@@ -0,0 +1,224 @@
+package org.predicode.predicator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Trail-based mutable bindings store.
+ *
+ * <p>The bindings are updated in place within a mutable map shared by all stores of the same trail. Each update is
+ * recorded as a new trail entry, that is a store instance containing the new binding along with the previous one.
+ * Any trail entry serves as a mark.</p>
+ *
+ * <p>Before accessing the bindings, the shared map is rolled back to this mark by undoing the entries recorded after
+ * it. So, when a choice point is exhausted and the next alternative is resolved, the bindings made by the previous
+ * one are undone. The entries undone this way are kept though. So the bindings of another branch can be restored by
+ * redoing them, e.g. when a resolved answer is accessed after backtracking.</p>
+ *
+ * <p>Each update allocates a single trail entry only. The rollback is cheap as long as the stores are accessed in
+ * depth-first order.</p>
+ *
+ * <p>The trail is not thread-safe. It should be confined to a single thread.</p>
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+final class Trail<K, V> implements Bindings<K, V> {
+
+    /**
+     * Starts a new trail.
+     *
+     * @param initial initial bindings.
+     * @param <K> key type.
+     * @param <V> value type.
+     *
+     * @return the first mark of the new trail.
+     */
+    @Nonnull
+    static <K, V> Trail<K, V> start(@Nonnull Bindings<K, V> initial) {
+
+        final Trail<K, V> trail = new Trail<>(new Store<>());
+
+        initial.forEach(trail.store.values::put);
+
+        return trail;
+    }
+
+    @Nonnull
+    private final Store<K, V> store;
+
+    /**
+     * Previous trail entry, or {@code null} if this is the start of the trail.
+     */
+    @Nullable
+    private final Trail<K, V> prev;
+
+    @Nullable
+    private final K key;
+
+    @Nullable
+    private final V value;
+
+    /**
+     * The value bound to the {@link #key} before this entry, or {@code null} if there were no such binding.
+     */
+    @Nullable
+    private final V old;
+
+    /**
+     * The number of entries preceding this one.
+     */
+    private final int depth;
+
+    private Trail(@Nonnull Store<K, V> store) {
+        this.store = store;
+        this.prev = null;
+        this.key = null;
+        this.value = null;
+        this.old = null;
+        this.depth = 0;
+        store.top = this;
+    }
+
+    private Trail(@Nonnull Trail<K, V> prev, @Nonnull K key, @Nonnull V value, @Nullable V old) {
+        this.store = prev.store;
+        this.prev = prev;
+        this.key = key;
+        this.value = value;
+        this.old = old;
+        this.depth = prev.depth + 1;
+    }
+
+    @Override
+    public int size() {
+        return this.store.checkout(this).size();
+    }
+
+    @Nullable
+    @Override
+    public V get(@Nonnull Object key) {
+        return this.store.checkout(this).get(key);
+    }
+
+    @Nonnull
+    @Override
+    public Trail<K, V> put(@Nonnull K key, @Nonnull V value) {
+
+        final HashMap<K, V> values = this.store.checkout(this);
+        final V old = values.put(key, value);
+
+        if (old == value) {
+            return this;
+        }
+
+        final Trail<K, V> entry = new Trail<>(this, key, value, old);
+
+        this.store.top = entry;
+
+        return entry;
+    }
+
+    @Override
+    public void forEach(@Nonnull BiConsumer<? super K, ? super V> action) {
+        this.store.checkout(this).forEach(action);
+    }
+
+    /**
+     * Converts the bindings of this trail entry to a persistent hash trie.
+     *
+     * @return new hash trie containing the same bindings.
+     */
+    @Nonnull
+    HashTrie<K, V> toHashTrie() {
+
+        HashTrie<K, V> trie = HashTrie.empty();
+
+        for (final Map.Entry<K, V> entry : this.store.checkout(this).entrySet()) {
+            trie = trie.put(entry.getKey(), entry.getValue());
+        }
+
+        return trie;
+    }
+
+    @Override
+    public String toString() {
+        return "Trail" + this.store.checkout(this);
+    }
+
+    private void undo(@Nonnull HashMap<K, V> values) {
+        if (this.old == null) {
+            values.remove(this.key);
+        } else {
+            values.put(this.key, this.old);
+        }
+    }
+
+    private void redo(@Nonnull HashMap<K, V> values) {
+        values.put(this.key, this.value);
+    }
+
+    private static final class Store<K, V> {
+
+        private final HashMap<K, V> values = new HashMap<>();
+
+        /**
+         * The trail entry the {@link #values} correspond to.
+         */
+        private Trail<K, V> top;
+
+        /**
+         * Rolls the bindings back (or forth) to the given mark.
+         *
+         * <p>Undoes the entries from the top of the trail up to the common ancestor of the top and the mark, then
+         * redoes the entries from that ancestor to the mark.</p>
+         *
+         * @param mark target trail entry.
+         *
+         * @return the bindings corresponding to the mark.
+         */
+        @Nonnull
+        HashMap<K, V> checkout(@Nonnull Trail<K, V> mark) {
+
+            Trail<K, V> top = this.top;
+
+            if (top == mark) {
+                return this.values;
+            }
+
+            Trail<K, V> target = mark;
+            ArrayList<Trail<K, V>> redo = null;
+
+            while (top.depth > target.depth) {
+                top.undo(this.values);
+                top = top.prev;
+            }
+            while (top != target) {
+                if (redo == null) {
+                    redo = new ArrayList<>();
+                }
+                redo.add(target);
+                target = target.prev;
+                if (top.depth > target.depth) {
+                    top.undo(this.values);
+                    top = top.prev;
+                }
+            }
+            if (redo != null) {
+                for (int i = redo.size() - 1; i >= 0; --i) {
+                    redo.get(i).redo(this.values);
+                }
+            }
+
+            this.top = mark;
+
+            return this.values;
+        }
+
+    }
+
+}
@@ -19,11 +19,27 @@ final class And implements Predicate {
         this.second = second;
     }
 
+    @Nonnull
+    Predicate getFirst() {
+        return this.first;
+    }
+
+    @Nonnull
+    Predicate getSecond() {
+        return this.second;
+    }
+
     @Nonnull
     @Override
     public Flux<Knowns> resolve(@Nonnull Resolver resolver) {
-        return this.first.resolve(resolver)
-                .flatMap(resolved -> this.second.resolve(resolver.withKnowns(resolved)));
+
+        final Flux<Knowns> first = this.first.resolve(resolver);
+
+        if (resolver.isSequential()) {
+            return first.concatMap(resolved -> this.second.resolve(resolver.withKnowns(resolved)));
+        }
+
+        return first.flatMap(resolved -> this.second.resolve(resolver.withKnowns(resolved)));
     }
 
     @Override
@@ -0,0 +1,673 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.Knowns;
+import org.predicode.predicator.Rule;
+import org.predicode.predicator.terms.MappedTerm;
+import org.predicode.predicator.terms.PlainTerm;
+import org.predicode.predicator.terms.Variable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+
+/**
+ * Bounded cache of the answers to ground predicate calls.
+ *
+ * <p>Ground call contains no unresolved variables, neither in its terms, nor in its qualifiers. So, each solution of
+ * ground call is the same as the caller's knowns. The cache remembers the number of solutions only. The call is
+ * {@link Predicate.Call#resolve(Predicate.Resolver) resolved} once, while the subsequent calls with the same terms and
+ * qualifiers just emit the caller's knowns the remembered number of times. The rules are expected not to resolve any
+ * variables absent from the call then.</p>
+ *
+ * <p>The cache is bound to the rules. A {@link Predicate.Resolver#withAnswerCache(AnswerCache) resolver with answer
+ * cache} resolves the calls against a {@link Rule.Selector#snapshot() snapshot} of these rules. The answers found with
+ * one {@link Rule.Selector#version() version} of the rules are invalidated as soon as the call resolved against a newer
+ * version is made. The calls resolved against older versions bypass the cache.</p>
+ *
+ * <p>The cache is bounded both by the number of entries, and by their total weight. The weight of each entry is the
+ * number of terms in the call. The entries are evicted according to W-TinyLFU policy. The new entries are admitted to a
+ * small LRU window. The entry evicted from the window competes with the LRU victim of the main segmented LRU space,
+ * and the one requested less frequently is evicted. The frequencies of recent requests are estimated by a count-min
+ * sketch, which counters are halved periodically.</p>
+ */
+@ThreadSafe
+public final class AnswerCache {
+
+    /**
+     * Creates new answer cache.
+     *
+     * @param rules the rules to resolve the calls against.
+     * @param maximumSize the maximum number of cached answers.
+     * @param maximumWeight the maximum total weight of cached answers.
+     *
+     * @return new answer cache.
+     */
+    @Nonnull
+    public static AnswerCache create(@Nonnull Rule.Selector rules, int maximumSize, long maximumWeight) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size should be positive: " + maximumSize);
+        }
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight should be positive: " + maximumWeight);
+        }
+        return new AnswerCache(rules, maximumSize, maximumWeight);
+    }
+
+    /**
+     * The {@link #get(Key, long) lookup} result indicating the answer is not cached.
+     */
+    private static final int MISS = -1;
+
+    /**
+     * The {@link #get(Key, long) lookup} result indicating the call is resolved against outdated rules.
+     */
+    private static final int OUTDATED = -2;
+
+    @Nonnull
+    private final Rule.Selector rules;
+
+    private final int maximumSize;
+
+    private final long maximumWeight;
+
+    private final int maximumWindowSize;
+
+    private final long maximumWindowWeight;
+
+    private final int maximumProtectedSize;
+
+    private final long maximumProtectedWeight;
+
+    private final HashMap<Key, Node> entries = new HashMap<>();
+
+    /**
+     * Recently admitted entries.
+     */
+    private final Queue window = new Queue();
+
+    /**
+     * Main space entries requested once since they left the window.
+     */
+    private final Queue probation = new Queue();
+
+    /**
+     * Main space entries requested at least twice.
+     */
+    private final Queue protectedQueue = new Queue();
+
+    @Nonnull
+    private final FrequencySketch sketch;
+
+    /**
+     * The version of the rules the cached answers found with.
+     */
+    private long version;
+
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private AnswerCache(@Nonnull Rule.Selector rules, int maximumSize, long maximumWeight) {
+        this.rules = rules;
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        // The window takes 1% of the cache, and the protected queue takes 80% of the rest
+        this.maximumWindowSize = Math.max(1, maximumSize / 100);
+        this.maximumWindowWeight = Math.max(1L, maximumWeight / 100);
+        this.maximumProtectedSize = (int) ((maximumSize - this.maximumWindowSize) * 4L / 5);
+        this.maximumProtectedWeight = (maximumWeight - this.maximumWindowWeight) * 4 / 5;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * The rules to resolve the calls against.
+     *
+     * @return rule selector.
+     */
+    @Nonnull
+    public final Rule.Selector getRules() {
+        return this.rules;
+    }
+
+    /**
+     * The number of calls with cached answers.
+     *
+     * @return the number of cache hits.
+     */
+    public final long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * The number of ground calls without cached answers.
+     *
+     * @return the number of cache misses.
+     */
+    public final long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * The number of evicted answers.
+     *
+     * <p>The answers invalidated due to rules change are not counted.</p>
+     *
+     * @return the number of evictions.
+     */
+    public final long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * The ratio of cache hits to all cache lookups.
+     *
+     * @return the hit rate, or {@code 0} if there were no lookups yet.
+     */
+    public final double getHitRate() {
+
+        final long hits = getHits();
+        final long lookups = hits + getMisses();
+
+        return lookups == 0L ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * The number of cached answers.
+     *
+     * @return cache size.
+     */
+    public final synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * The total weight of cached answers.
+     *
+     * @return cache weight.
+     */
+    public final synchronized long weight() {
+        return this.weight;
+    }
+
+    /**
+     * Removes all cached answers.
+     */
+    public final synchronized void invalidateAll() {
+        this.entries.clear();
+        this.window.clear();
+        this.probation.clear();
+        this.protectedQueue.clear();
+        this.weight = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "AnswerCache[size=" + size() + ", weight=" + weight() + ", hitRate=" + getHitRate() + ']';
+    }
+
+    /**
+     * Resolves the given call using cached answers if possible.
+     *
+     * @param call qualified predicate call.
+     * @param resolver predicate resolver to resolve the call against.
+     * @param resolve resolves the call if its answers are not cached.
+     *
+     * @return a {@link Flux} of call solutions.
+     */
+    @Nonnull
+    final Flux<Knowns> resolve(
+            @Nonnull Predicate.Call call,
+            @Nonnull Predicate.Resolver resolver,
+            @Nonnull Supplier<Flux<Knowns>> resolve) {
+
+        final Knowns knowns = resolver.getKnowns();
+        final Key key = key(call, knowns);
+
+        if (key == null) {
+            return resolve.get();
+        }
+
+        final long version = resolver.getRulesVersion();
+
+        return Flux.defer(() -> {
+
+            final int cached = get(key, version);
+
+            if (cached == 0) {
+                return Flux.empty();
+            }
+            if (cached > 0) {
+                return Flux.just(knowns).repeat(cached - 1);
+            }
+
+            final Flux<Knowns> solutions = resolve.get();
+
+            if (cached == OUTDATED) {
+                return solutions;
+            }
+
+            final int[] count = new int[1];
+
+            return solutions.doOnNext(solution -> ++count[0])
+                    .doOnComplete(() -> put(key, version, count[0]));
+        });
+    }
+
+    /**
+     * Builds the key of the given call.
+     *
+     * @return the key, or {@code null} if the call is not ground.
+     */
+    @Nullable
+    private static Key key(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final List<? extends PlainTerm> terms = call.finiteTerms();
+
+        if (terms == null) {
+            return null;
+        }
+
+        final Qualifiers qualifiers = call.getQualifiers();
+
+        for (final Qualifier qualifier : qualifiers) {
+            for (final PlainTerm term : qualifier.getTerms()) {
+                if (term instanceof Variable) {
+                    return null;
+                }
+            }
+        }
+
+        final PlainTerm[] ground = new PlainTerm[terms.size()];
+
+        for (int i = 0; i < ground.length; ++i) {
+
+            final PlainTerm term = terms.get(i);
+
+            if (!(term instanceof Variable)) {
+                ground[i] = term;
+                continue;
+            }
+
+            final MappedTerm value = knowns.termOf((Variable) term);
+
+            if (value instanceof Variable) {
+                return null;
+            }
+
+            ground[i] = value;
+        }
+
+        return new Key(Arrays.asList(ground), qualifiers);
+    }
+
+    /**
+     * Looks up the answer.
+     *
+     * @return the number of solutions, or {@link #MISS} if the answer is not cached, or {@link #OUTDATED} if the call
+     * is resolved against outdated rules.
+     */
+    private synchronized int get(@Nonnull Key key, long version) {
+        if (version != this.version) {
+            if (version < this.version) {
+                return OUTDATED;
+            }
+            // Rules changed
+            invalidateAll();
+            this.version = version;
+        }
+
+        this.sketch.increment(key.hash);
+
+        final Node node = this.entries.get(key);
+
+        if (node == null) {
+            this.misses.increment();
+            return MISS;
+        }
+
+        this.hits.increment();
+        onHit(node);
+
+        return node.count;
+    }
+
+    private synchronized void put(@Nonnull Key key, long version, int count) {
+        if (version != this.version || key.weight() > this.maximumWeight) {
+            return;
+        }
+
+        final Node existing = this.entries.get(key);
+
+        if (existing != null) {
+            existing.count = count;
+            return;
+        }
+
+        final Node node = new Node(key, count);
+
+        this.entries.put(key, node);
+        this.window.add(node);
+        this.weight += node.weight;
+        evict();
+    }
+
+    private void onHit(@Nonnull Node node) {
+        if (node.queue != this.probation) {
+            node.queue.moveToLast(node);
+            return;
+        }
+
+        this.probation.remove(node);
+        this.protectedQueue.add(node);
+
+        while (this.protectedQueue.weight > this.maximumProtectedWeight
+                || this.protectedQueue.size > this.maximumProtectedSize) {
+
+            final Node demoted = this.protectedQueue.first;
+
+            assert demoted != null;
+
+            this.protectedQueue.remove(demoted);
+            this.probation.add(demoted);
+        }
+    }
+
+    private void evict() {
+
+        // The entries leaving the window become admission candidates at the end of probation queue
+        Node candidate = null;
+
+        while (this.window.weight > this.maximumWindowWeight || this.window.size > this.maximumWindowSize) {
+
+            final Node node = this.window.first;
+
+            assert node != null;
+
+            this.window.remove(node);
+            this.probation.add(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (this.weight > this.maximumWeight || this.entries.size() > this.maximumSize) {
+
+            final Node victim = this.probation.first;
+
+            if (victim == null || victim == candidate) {
+
+                // Nothing to compete with. Evict in LRU order.
+                final Node evicted = victim != null ? victim
+                        : this.protectedQueue.first != null ? this.protectedQueue.first
+                        : this.window.first;
+
+                assert evicted != null;
+
+                if (evicted == candidate) {
+                    candidate = candidate.next;
+                }
+                remove(evicted);
+                continue;
+            }
+            if (candidate == null) {
+                remove(victim);
+                continue;
+            }
+
+            final Node next = candidate.next;
+
+            if (this.sketch.frequency(candidate.key.hash) > this.sketch.frequency(victim.key.hash)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+
+            candidate = next;
+        }
+    }
+
+    private void remove(@Nonnull Node node) {
+        node.queue.remove(node);
+        this.entries.remove(node.key);
+        this.weight -= node.weight;
+        this.evictions.increment();
+    }
+
+    private static final class Key {
+
+        @Nonnull
+        private final List<PlainTerm> terms;
+
+        @Nonnull
+        private final Qualifiers qualifiers;
+
+        private final int hash;
+
+        Key(@Nonnull List<PlainTerm> terms, @Nonnull Qualifiers qualifiers) {
+            this.terms = terms;
+            this.qualifiers = qualifiers;
+
+            final int hash = 31 * terms.hashCode() + qualifiers.hashCode();
+
+            this.hash = hash ^ (hash >>> 16);
+        }
+
+        int weight() {
+            return Math.max(1, this.terms.size());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final Key that = (Key) o;
+
+            return this.hash == that.hash
+                    && this.terms.equals(that.terms)
+                    && this.qualifiers.equals(that.qualifiers);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    private static final class Node {
+
+        @Nonnull
+        private final Key key;
+
+        private final int weight;
+
+        private int count;
+
+        private Queue queue;
+
+        @Nullable
+        private Node prev;
+
+        @Nullable
+        private Node next;
+
+        Node(@Nonnull Key key, int count) {
+            this.key = key;
+            this.weight = key.weight();
+            this.count = count;
+        }
+
+    }
+
+    /**
+     * LRU queue of entries.
+     */
+    private static final class Queue {
+
+        @Nullable
+        private Node first;
+
+        @Nullable
+        private Node last;
+
+        private int size;
+
+        private long weight;
+
+        void add(@Nonnull Node node) {
+            node.queue = this;
+            node.prev = this.last;
+            node.next = null;
+            if (this.last != null) {
+                this.last.next = node;
+            } else {
+                this.first = node;
+            }
+            this.last = node;
+            ++this.size;
+            this.weight += node.weight;
+        }
+
+        void remove(@Nonnull Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                this.first = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                this.last = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            --this.size;
+            this.weight -= node.weight;
+        }
+
+        void moveToLast(@Nonnull Node node) {
+            if (node != this.last) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        void clear() {
+            this.first = null;
+            this.last = null;
+            this.size = 0;
+            this.weight = 0L;
+        }
+
+    }
+
+    /**
+     * Count-min sketch of 4-bit request frequency counters.
+     *
+     * <p>Each key is counted in four counters, one per table row. The row is selected by the hash seeded differently
+     * for each counter. Once the number of increments reaches the sample size, all counters are halved. So the
+     * frequencies of the old requests decay.</p>
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L,
+                0xb492b66fbe98f273L,
+                0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L,
+        };
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private static final int MAX_ROWS = 1 << 20;
+
+        @Nonnull
+        private final long[] rows;
+
+        private final int sampleSize;
+
+        private int increments;
+
+        FrequencySketch(int maximumSize) {
+
+            final int size = Math.min(Math.max(maximumSize, 16), MAX_ROWS);
+            final int numRows = Integer.highestOneBit(size);
+
+            this.rows = new long[numRows < size ? numRows << 1 : numRows];
+            this.sampleSize = 10 * size;
+        }
+
+        int frequency(int hash) {
+
+            int frequency = 15;
+
+            for (int i = 0; i < SEEDS.length; ++i) {
+                frequency = Math.min(frequency, (int) ((this.rows[row(hash, i)] >>> shift(hash, i)) & 0xfL));
+            }
+
+            return frequency;
+        }
+
+        void increment(int hash) {
+
+            boolean incremented = false;
+
+            for (int i = 0; i < SEEDS.length; ++i) {
+
+                final int row = row(hash, i);
+                final int shift = shift(hash, i);
+                final long mask = 0xfL << shift;
+
+                if ((this.rows[row] & mask) != mask) {
+                    this.rows[row] += 1L << shift;
+                    incremented = true;
+                }
+            }
+
+            if (incremented && ++this.increments == this.sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < this.rows.length; ++i) {
+                this.rows[i] = (this.rows[i] >>> 1) & RESET_MASK;
+            }
+            this.increments >>>= 1;
+        }
+
+        private int row(int hash, int i) {
+
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+
+            h += h >>> 32;
+
+            return (int) h & (this.rows.length - 1);
+        }
+
+        /**
+         * The shift of the counter within a row. Each row contains 16 counters.
+         */
+        private static int shift(int hash, int i) {
+            return ((hash >>> (i << 3)) & 0xf) << 2;
+        }
+
+    }
+
+}
@@ -0,0 +1,340 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.Knowns;
+import org.predicode.predicator.Rule;
+import org.predicode.predicator.terms.MappedTerm;
+import org.predicode.predicator.terms.PlainTerm;
+import org.predicode.predicator.terms.Variable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+
+/**
+ * Answer tables of {@link Tabling tabled} predicate calls.
+ *
+ * <p>Owned by the {@link Solver solver}.</p>
+ *
+ * <p>The table is evaluated when its call variant is encountered for the first time. The evaluation finds all
+ * answers with the rules the call matches, while the recursive calls of the same variant consume the answers found
+ * so far. The solver schedules the evaluation on its own stack of choice points, so the evaluations of tables
+ * depending on each other are not nested on the thread stack. When the evaluation depends on the tables being
+ * evaluated, it is repeated until no new answers found by any of them. The tables depending on each other form
+ * a strongly connected component, which leader is the table evaluated first. The whole component is completed at
+ * once when the leader evaluation reaches the fixpoint. The other tables of the component remain incomplete until
+ * then, and are re-evaluated on each iteration of the leader evaluation.</p>
+ */
+final class CallTables {
+
+    @Nonnull
+    private final Tabling tabling;
+
+    private final HashMap<Variant, Table> tables = new HashMap<>();
+
+    /**
+     * The tables being evaluated, in the order of evaluation start.
+     */
+    private final ArrayList<Table> evaluating = new ArrayList<>();
+
+    /**
+     * Incomplete tables, in the order of their first evaluation.
+     */
+    private final ArrayList<Table> incomplete = new ArrayList<>();
+
+    /**
+     * The number of leader evaluation iterations. The incomplete tables evaluated during previous iterations should be
+     * re-evaluated.
+     */
+    private int epoch;
+
+    /**
+     * The number of answers found so far.
+     */
+    private long answerCount;
+
+    CallTables(@Nonnull Tabling tabling) {
+        this.tabling = tabling;
+    }
+
+    /**
+     * Finds the answer table of the given predicate call.
+     *
+     * @param call predicate call.
+     * @param knowns known resolutions to build the call variant with.
+     *
+     * @return the table of the call variant, or {@code null} if the call is not tabled.
+     */
+    @Nullable
+    Table table(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+
+        final List<? extends PlainTerm> terms = call.finiteTerms();
+
+        if (terms == null || !this.tabling.isTabled(call, knowns)) {
+            return null;
+        }
+
+        return this.tables.computeIfAbsent(
+                new Variant(variant(terms, knowns), call.getQualifiers()),
+                v -> new Table());
+    }
+
+    /**
+     * Starts the table evaluation if necessary.
+     *
+     * <p>The caller should then {@link #startRound(Table) start} the evaluation round, find all answers with the rules
+     * the call matches, {@link #add(Table, List, Knowns) add} them to the table, and {@link #finishRound(Table, int,
+     * long) finish} the round.</p>
+     *
+     * @param table the table to evaluate.
+     *
+     * @return evaluation depth, or negative value if the table answers should be consumed without evaluation.
+     */
+    int startEvaluation(@Nonnull Table table) {
+        if (table.complete) {
+            return -1;
+        }
+        if (table.evaluating || table.epoch == this.epoch) {
+            dependOn(table.link);
+            return -1;
+        }
+
+        final int depth = this.evaluating.size();
+
+        table.evaluating = true;
+        table.link = depth;
+        this.evaluating.add(table);
+        if (table.index < 0) {
+            table.index = this.incomplete.size();
+            this.incomplete.add(table);
+        }
+
+        return depth;
+    }
+
+    /**
+     * Starts the table evaluation round.
+     *
+     * @param table the table being evaluated.
+     *
+     * @return the number of answers found so far, to pass to {@link #finishRound(Table, int, long)}.
+     */
+    long startRound(@Nonnull Table table) {
+        table.epoch = this.epoch;
+        return this.answerCount;
+    }
+
+    /**
+     * Finishes the table evaluation round.
+     *
+     * @param table the table being evaluated.
+     * @param depth evaluation depth returned from {@link #startEvaluation(Table)}.
+     * @param answerCount the number of answers returned from {@link #startRound(Table)}.
+     *
+     * @return {@code true} if another round should be started, or {@code false} if the evaluation is finished.
+     */
+    boolean finishRound(@Nonnull Table table, int depth, long answerCount) {
+        if (table.link >= depth) {
+            // Leader
+            if (this.answerCount != answerCount) {
+                ++this.epoch;
+                return true;
+            }
+            complete(table);
+        }
+
+        this.evaluating.remove(depth);
+        table.evaluating = false;
+        if (!table.complete) {
+            dependOn(table.link);
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds an answer to the table being evaluated.
+     *
+     * @param table the table being evaluated.
+     * @param terms the terms of the call.
+     * @param knowns known resolutions of the call terms.
+     */
+    void add(@Nonnull Table table, @Nonnull List<? extends PlainTerm> terms, @Nonnull Knowns knowns) {
+
+        final List<PlainTerm> answer = variant(terms, knowns);
+        final HashSet<List<PlainTerm>> answers = table.answerSet;
+
+        assert answers != null;
+
+        if (answers.add(answer)) {
+            table.answers.add(Rule.pattern(answer));
+            ++this.answerCount;
+        }
+    }
+
+    /**
+     * Makes the table being evaluated depend on the table with the given link.
+     */
+    private void dependOn(int link) {
+
+        final int size = this.evaluating.size();
+
+        if (size == 0) {
+            return;
+        }
+
+        final Table dependent = this.evaluating.get(size - 1);
+
+        if (link < dependent.link) {
+            dependent.link = link;
+        }
+    }
+
+    /**
+     * Completes the strongly connected component with the given leader.
+     */
+    private void complete(@Nonnull Table leader) {
+
+        final List<Table> component = this.incomplete.subList(leader.index, this.incomplete.size());
+
+        for (final Table table : component) {
+            table.complete = true;
+            table.answerSet = null; // Not needed any more
+        }
+
+        component.clear();
+    }
+
+    /**
+     * Builds a variant of the given terms.
+     *
+     * <p>Replaces each variable with the term it {@link Knowns#termOf(Variable) stands for}. The unresolved variables
+     * are numbered in the order of their appearance. So the variants of terms differing only in variable names are
+     * equal.</p>
+     */
+    @Nonnull
+    private static List<PlainTerm> variant(@Nonnull List<? extends PlainTerm> terms, @Nonnull Knowns knowns) {
+
+        final PlainTerm[] variant = new PlainTerm[terms.size()];
+        HashMap<Variable, Variable> variables = null;
+
+        for (int i = 0; i < variant.length; ++i) {
+
+            final PlainTerm term = terms.get(i);
+
+            if (!(term instanceof Variable)) {
+                variant[i] = term;
+                continue;
+            }
+
+            final MappedTerm known = knowns.termOf((Variable) term);
+
+            if (!(known instanceof Variable)) {
+                variant[i] = known;
+                continue;
+            }
+            if (variables == null) {
+                variables = new HashMap<>();
+            }
+
+            final int index = variables.size();
+
+            variant[i] = variables.computeIfAbsent((Variable) known, v -> Variable.named("V" + index));
+        }
+
+        return Arrays.asList(variant);
+    }
+
+    /**
+     * Answer table of predicate call variant.
+     */
+    static final class Table {
+
+        /**
+         * Found answers. Each one is a fact pattern to match the call against.
+         */
+        private final ArrayList<Rule.Pattern> answers = new ArrayList<>();
+
+        /**
+         * Found answer terms, or {@code null} if the table is complete.
+         */
+        @Nullable
+        private HashSet<List<PlainTerm>> answerSet = new HashSet<>();
+
+        private boolean complete;
+
+        private boolean evaluating;
+
+        /**
+         * The lowest evaluation depth of the tables this one depends on.
+         */
+        private int link;
+
+        /**
+         * The epoch of the last evaluation.
+         */
+        private int epoch = -1;
+
+        /**
+         * The index within incomplete tables, or negative value if the table is not evaluated yet.
+         */
+        private int index = -1;
+
+        /**
+         * Found answers.
+         *
+         * <p>New answers may be added to incomplete table, while the answers already found never change.</p>
+         */
+        @Nonnull
+        List<Rule.Pattern> answers() {
+            return this.answers;
+        }
+
+        /**
+         * Whether all answers found.
+         */
+        boolean isComplete() {
+            return this.complete;
+        }
+
+    }
+
+    private static final class Variant {
+
+        @Nonnull
+        private final List<PlainTerm> terms;
+
+        @Nonnull
+        private final Qualifiers qualifiers;
+
+        Variant(@Nonnull List<PlainTerm> terms, @Nonnull Qualifiers qualifiers) {
+            this.terms = terms;
+            this.qualifiers = qualifiers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final Variant that = (Variant) o;
+
+            return this.terms.equals(that.terms) && this.qualifiers.equals(that.qualifiers);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.terms.hashCode() + this.qualifiers.hashCode();
+        }
+
+    }
+
+}
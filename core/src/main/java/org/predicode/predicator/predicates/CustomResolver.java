@@ -5,6 +5,8 @@ import org.predicode.predicator.Rule;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
 
 
 final class CustomResolver implements Predicate.Resolver {
@@ -15,9 +17,17 @@ final class CustomResolver implements Predicate.Resolver {
     @Nonnull
     private final Rule.Selector selector;
 
+    @Nullable
+    private final AnswerCache answerCache;
+
     CustomResolver(@Nonnull Knowns knowns, @Nonnull Rule.Selector selector) {
+        this(knowns, selector, null);
+    }
+
+    CustomResolver(@Nonnull Knowns knowns, @Nonnull Rule.Selector selector, @Nullable AnswerCache answerCache) {
         this.knowns = knowns;
         this.selector = selector;
+        this.answerCache = answerCache;
     }
 
     @Nonnull
@@ -32,4 +42,29 @@ final class CustomResolver implements Predicate.Resolver {
         return this.selector.matchingRules(call, getKnowns());
     }
 
+    @Nonnull
+    @Override
+    public Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call) {
+        return this.selector.findMatchingRules(call, getKnowns());
+    }
+
+    @Override
+    public long getRulesVersion() {
+        return this.selector.version();
+    }
+
+    @Nullable
+    @Override
+    public AnswerCache getAnswerCache() {
+        return this.answerCache;
+    }
+
+    @Override
+    public Predicate.Resolver withKnowns(@Nonnull Knowns knowns) {
+        if (knowns == this.knowns) {
+            return this;
+        }
+        return new CustomResolver(knowns, this.selector, this.answerCache);
+    }
+
 }
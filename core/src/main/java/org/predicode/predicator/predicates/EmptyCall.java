@@ -1,12 +1,8 @@
 package org.predicode.predicator.predicates;
 
-import org.predicode.predicator.terms.PlainTerm;
-
 import javax.annotation.Nonnull;
-import java.util.List;
 import java.util.Optional;
 
-import static java.util.Collections.emptyList;
 import static org.predicode.predicator.predicates.Qualifiers.none;
 
 
@@ -36,8 +32,8 @@ final class EmptyCall extends Predicate.Call implements FiniteCall {
 
     @Nonnull
     @Override
-    public List<? extends PlainTerm> allTerms() {
-        return emptyList();
+    public TermSlice allTerms() {
+        return TermSlice.EMPTY;
     }
 
     @Override
@@ -65,7 +61,7 @@ final class EmptyCall extends Predicate.Call implements FiniteCall {
     @Override
     Optional<Predicate.Prefix> buildPrefix(int length) {
         if (length == 0) {
-            return Optional.of(Predicate.prefix(emptyList(), this));
+            return Optional.of(Predicate.prefix(TermSlice.EMPTY, this));
         }
         return Optional.empty();
     }
@@ -73,7 +69,7 @@ final class EmptyCall extends Predicate.Call implements FiniteCall {
     @Nonnull
     @Override
     public FinitePrefix updateQualifiers(@Nonnull Qualifiers qualifiers) {
-        return new FinitePrefix(emptyList(), new QualifiedEmptyCall(qualifiers));
+        return new FinitePrefix(TermSlice.EMPTY, new QualifiedEmptyCall(qualifiers));
     }
 
 }
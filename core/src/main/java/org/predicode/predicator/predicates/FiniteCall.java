@@ -1,9 +1,6 @@
 package org.predicode.predicator.predicates;
 
-import org.predicode.predicator.terms.PlainTerm;
-
 import javax.annotation.Nonnull;
-import java.util.List;
 
 
 interface FiniteCall {
@@ -12,7 +9,7 @@ interface FiniteCall {
     Predicate.Call call();
 
     @Nonnull
-    List<? extends PlainTerm> allTerms();
+    TermSlice allTerms();
 
     @Nonnull
     FiniteCall updateQualifiers(@Nonnull Qualifiers qualifiers);
@@ -3,7 +3,6 @@ package org.predicode.predicator.predicates;
 import org.predicode.predicator.terms.PlainTerm;
 
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,19 +11,29 @@ import static org.predicode.predicator.grammar.TermPrinter.printTerms;
 
 final class FinitePrefix extends Predicate.Prefix implements FiniteCall {
 
+    /**
+     * All call terms, i.e. the prefix terms followed by the suffix ones.
+     */
     @Nonnull
-    private final FiniteCall suffix;
+    private final TermSlice allTerms;
+
+    /**
+     * Empty call terminating this one. It holds the call qualifiers.
+     */
+    @Nonnull
+    private final FiniteCall end;
 
     FinitePrefix(
             @Nonnull List<? extends PlainTerm> terms,
             @Nonnull FiniteCall suffix) {
-        super(terms, suffix.call());
-        this.suffix = suffix;
+        super(TermSlice.of(terms), suffix.call());
+        this.allTerms = prefixTerms().join(suffix.allTerms());
+        this.end = suffix instanceof FinitePrefix ? ((FinitePrefix) suffix).end : suffix;
     }
 
     @Override
     public int length() {
-        return getTerms().size() + suffixTerms().size();
+        return this.allTerms.size();
     }
 
     @Nonnull
@@ -35,20 +44,8 @@ final class FinitePrefix extends Predicate.Prefix implements FiniteCall {
 
     @Nonnull
     @Override
-    public List<? extends PlainTerm> allTerms() {
-        if (getRest().isEmpty()) {
-            return getTerms();
-        }
-        if (getTerms().isEmpty()) {
-            return this.suffix.allTerms();
-        }
-
-        final ArrayList<PlainTerm> terms = new ArrayList<>();
-
-        terms.addAll(getTerms());
-        terms.addAll(this.suffix.allTerms());
-
-        return terms;
+    public TermSlice allTerms() {
+        return this.allTerms;
     }
 
     @Override
@@ -61,7 +58,7 @@ final class FinitePrefix extends Predicate.Prefix implements FiniteCall {
 
         printTerms(getTerms(), out);
         printTerms(suffixTerms(), out);
-        if (getQualifiers().isEmpty()) {
+        if (!getQualifiers().isEmpty()) {
             out.append(' ');
             getQualifiers().printQualifiers(out);
         }
@@ -78,51 +75,59 @@ final class FinitePrefix extends Predicate.Prefix implements FiniteCall {
     @Nonnull
     @Override
     Optional<Predicate.Prefix> buildPrefix(int length) {
-
-        final List<? extends PlainTerm> oldPrefix = getTerms();
-        final int oldPrefixLen = oldPrefix.size();
-
-        if (length == oldPrefixLen) {
+        if (length == getTerms().size()) {
             return Optional.of(this);
         }
 
-        final List<? extends PlainTerm> oldSuffix = suffixTerms();
-        final int oldSuffixLen = oldSuffix.size();
-        final int oldLength = oldPrefixLen + oldSuffixLen;
+        final int size = this.allTerms.size();
 
-        if (length > oldLength) {
+        if (length > size) {
             return Optional.empty(); // Too many terms requested.
         }
-        if (length == oldLength) {
-            return Optional.of(new FinitePrefix(allTerms(), EmptyCall.INSTANCE));
-        }
 
-        final ArrayList<PlainTerm> newPrefix = new ArrayList<>(length);
-        final ArrayList<PlainTerm> newSuffix = new ArrayList<>(oldLength - length);
-        final int suffixToPrefix = length - oldPrefixLen;
-
-        if (suffixToPrefix < 0) {
-            newPrefix.addAll(oldPrefix.subList(0, length));
-            newSuffix.addAll(oldPrefix.subList(length, oldPrefixLen));
-            newSuffix.addAll(oldSuffix);
-        } else {
-            newPrefix.addAll(oldPrefix);
-            newPrefix.addAll(oldSuffix.subList(0, suffixToPrefix));
-            newSuffix.addAll(oldSuffix.subList(suffixToPrefix, oldSuffixLen));
-        }
+        return Optional.of(split(this.allTerms, length, this.end));
+    }
 
-        return Optional.of(new FinitePrefix(newPrefix, new FinitePrefix(newSuffix, EmptyCall.INSTANCE)));
+    @Nonnull
+    private TermSlice prefixTerms() {
+        return (TermSlice) getTerms();
     }
 
     @Nonnull
-    private List<? extends PlainTerm> suffixTerms() {
-        return this.suffix.allTerms();
+    private TermSlice suffixTerms() {
+        return this.allTerms.subList(getTerms().size(), this.allTerms.size());
     }
 
     @Nonnull
     @Override
     public FinitePrefix updateQualifiers(@Nonnull Qualifiers qualifiers) {
-        return new FinitePrefix(getTerms(), this.suffix.updateQualifiers(qualifiers));
+
+        final FiniteCall end = qualifiers.isEmpty() ? EmptyCall.INSTANCE : new QualifiedEmptyCall(qualifiers);
+
+        return split(this.allTerms, getTerms().size(), end);
+    }
+
+    /**
+     * Splits the call terms in two.
+     *
+     * <p>Both the prefix and the suffix share the terms of the original call.</p>
+     *
+     * @param terms all call terms.
+     * @param length the length of the prefix.
+     * @param end empty call terminating the new one.
+     *
+     * @return new prefix.
+     */
+    @Nonnull
+    private static FinitePrefix split(@Nonnull TermSlice terms, int length, @Nonnull FiniteCall end) {
+
+        final int size = terms.size();
+
+        if (length == size) {
+            return new FinitePrefix(terms, end);
+        }
+
+        return new FinitePrefix(terms.subList(0, length), new FinitePrefix(terms.subList(length, size), end));
     }
 
 }
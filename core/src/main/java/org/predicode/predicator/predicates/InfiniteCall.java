@@ -3,6 +3,7 @@ package org.predicode.predicator.predicates;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.IntFunction;
 
 import static org.predicode.predicator.predicates.Qualifiers.none;
@@ -16,6 +17,14 @@ final class InfiniteCall extends Predicate.Call {
     @Nonnull
     private final Qualifiers qualifiers;
 
+    /**
+     * The longest prefix built so far.
+     *
+     * <p>Shared between the calls differing by qualifiers only, as they build the same prefixes.</p>
+     */
+    @Nonnull
+    private final AtomicReference<Prefix> longest;
+
     InfiniteCall(@Nonnull IntFunction<Optional<Predicate.Prefix>> buildPrefix) {
         this(buildPrefix, none());
     }
@@ -23,8 +32,16 @@ final class InfiniteCall extends Predicate.Call {
     InfiniteCall(
             @Nonnull IntFunction<Optional<Prefix>> buildPrefix,
             @Nonnull Qualifiers qualifiers) {
+        this(buildPrefix, qualifiers, new AtomicReference<>());
+    }
+
+    private InfiniteCall(
+            @Nonnull IntFunction<Optional<Prefix>> buildPrefix,
+            @Nonnull Qualifiers qualifiers,
+            @Nonnull AtomicReference<Prefix> longest) {
         this.buildPrefix = buildPrefix;
         this.qualifiers = qualifiers;
+        this.longest = longest;
     }
 
     @Override
@@ -88,13 +105,42 @@ final class InfiniteCall extends Predicate.Call {
     @Nonnull
     @Override
     Optional<Predicate.Prefix> buildPrefix(int length) {
-        return this.buildPrefix.apply(length);
+
+        final Prefix longest = this.longest.get();
+
+        if (longest == null) {
+            return remember(this.buildPrefix.apply(length));
+        }
+        if (length <= longest.getTerms().size()) {
+            // Split the terms built already
+            return longest.prefix(length);
+        }
+
+        // Reuse the terms built already and request the rest of them only
+        return remember(longest.prefix(length));
     }
 
     @Nonnull
     @Override
     InfiniteCall updateQualifiers(@Nonnull Qualifiers qualifiers) {
-        return new InfiniteCall(this.buildPrefix, qualifiers);
+        return new InfiniteCall(this.buildPrefix, qualifiers, this.longest);
+    }
+
+    @Nonnull
+    private Optional<Prefix> remember(@Nonnull Optional<Prefix> built) {
+        built.ifPresent(prefix -> {
+            if (prefix.isFinite()) {
+                return; // Finite prefix can not be extended
+            }
+
+            final int length = prefix.getTerms().size();
+
+            this.longest.accumulateAndGet(
+                    prefix,
+                    (current, update) -> current != null && current.getTerms().size() >= length ? current : update);
+        });
+
+        return built;
     }
 
 }
@@ -4,7 +4,6 @@ import org.predicode.predicator.terms.PlainTerm;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +15,7 @@ final class InfinitePrefix extends Predicate.Prefix {
     InfinitePrefix(
             @Nonnull List<? extends PlainTerm> terms,
             @Nonnull Predicate.Call suffix) {
-        super(terms, suffix);
+        super(TermSlice.of(terms), suffix);
     }
 
     @Override
@@ -39,7 +38,7 @@ final class InfinitePrefix extends Predicate.Prefix {
     @Override
     Optional<Predicate.Prefix> buildPrefix(int length) {
 
-        final List<? extends PlainTerm> oldPrefix = getTerms();
+        final TermSlice oldPrefix = (TermSlice) getTerms();
         final int oldPrefixLen = oldPrefix.size();
 
         if (length == oldPrefixLen) {
@@ -53,15 +52,9 @@ final class InfinitePrefix extends Predicate.Prefix {
 
         return getRest()
                 .prefix(length - oldPrefixLen)
-                .map(suffixPrefix -> {
-
-                    final ArrayList<PlainTerm> newTerms = new ArrayList<>(length);
-
-                    newTerms.addAll(oldPrefix);
-                    newTerms.addAll(suffixPrefix.getTerms());
-
-                    return Predicate.prefix(newTerms, suffixPrefix.getRest());
-                });
+                .map(suffixPrefix -> Predicate.prefix(
+                        oldPrefix.join(TermSlice.of(suffixPrefix.getTerms())),
+                        suffixPrefix.getRest()));
     }
 
     @Nonnull
@@ -15,6 +15,11 @@ final class Not implements Predicate {
         this.negated = negated;
     }
 
+    @Nonnull
+    Predicate getNegated() {
+        return this.negated;
+    }
+
     @Nonnull
     @Override
     public Flux<Knowns> resolve(@Nonnull Resolver resolver) {
@@ -19,9 +19,22 @@ final class Or implements Predicate {
         this.second = second;
     }
 
+    @Nonnull
+    Predicate getFirst() {
+        return this.first;
+    }
+
+    @Nonnull
+    Predicate getSecond() {
+        return this.second;
+    }
+
     @Nonnull
     @Override
     public Flux<Knowns> resolve(@Nonnull Resolver resolver) {
+        if (resolver.isSequential()) {
+            return Flux.concat(this.first.resolve(resolver), this.second.resolve(resolver));
+        }
         return Flux.merge(this.first.resolve(resolver), this.second.resolve(resolver));
     }
 
@@ -9,8 +9,12 @@ import reactor.core.publisher.Flux;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.UnaryOperator;
 
@@ -76,6 +80,36 @@ public interface Predicate {
         return new InfiniteCall(buildPrefix);
     }
 
+    /**
+     * Creates a predicate call pulling its terms lazily from the given iterator.
+     *
+     * <p>The terms are pulled only as deep as the longest requested prefix. The number of terms is unknown, so the
+     * constructed call is considered {@link Call#isFinite() infinite} and matches prefix patterns only.</p>
+     *
+     * @param terms an iterator over call terms.
+     *
+     * @return lazy predicate call.
+     */
+    @Nonnull
+    static Call lazyCall(@Nonnull Iterator<? extends PlainTerm> terms) {
+        return lazyCall(Spliterators.spliteratorUnknownSize(terms, Spliterator.ORDERED));
+    }
+
+    /**
+     * Creates a predicate call pulling its terms lazily from the given spliterator.
+     *
+     * <p>The terms are pulled only as deep as the longest requested prefix. The number of terms is unknown, so the
+     * constructed call is considered {@link Call#isFinite() infinite} and matches prefix patterns only.</p>
+     *
+     * @param terms a spliterator over call terms.
+     *
+     * @return lazy predicate call.
+     */
+    @Nonnull
+    static Call lazyCall(@Nonnull Spliterator<? extends PlainTerm> terms) {
+        return new StreamCall(terms);
+    }
+
     /**
      * Creates a predicate prefix with empty suffix.
      *
@@ -220,6 +254,21 @@ public interface Predicate {
          */
         public abstract int length();
 
+        /**
+         * All terms of this call.
+         *
+         * <p>Unlike {@link #prefix(int)}, this does not split the call.</p>
+         *
+         * @return a list of terms if this call is finite, or {@code null} otherwise.
+         */
+        @Nullable
+        public final List<? extends PlainTerm> finiteTerms() {
+
+            final FiniteCall finite = toFinite();
+
+            return finite != null ? finite.allTerms() : null;
+        }
+
         /**
          * Whether this call is empty.
          *
@@ -238,18 +287,53 @@ public interface Predicate {
             return toFinite() != null;
         }
 
+        /**
+         * Resolves this predicate call.
+         *
+         * <p>Applies each of the {@link Resolver#matchingRules(Call) matching rules}. The call is fulfilled with
+         * the extra qualifiers of the rule match this call is made from.</p>
+         *
+         * <p>The caller's local variable mappings are {@link Knowns#finishMatching(Knowns) restored} after each rule
+         * resolution.</p>
+         *
+         * <p>The matching rules are applied one after another by {@link Resolver#isSequential() sequential}
+         * resolver.</p>
+         *
+         * <p>The answers to ground calls are taken from the {@link Resolver#getAnswerCache() answer cache} if the
+         * resolver has one.</p>
+         */
         @Nonnull
         @Override
         public final Flux<Knowns> resolve(@Nonnull Resolver resolver) {
-            return resolver.matchingRules(this)
-                    .flatMap(match -> match.getRule()
-                            .getPredicate()
-                            .resolve(new CustomResolver(
-                                    match.getKnowns(),
-                                    (call, knowns) -> resolver.matchingRules(
-                                            knowns.attr(Qualifiers.class)
-                                                    .map(qualifiers -> call.qualify(old -> old.fulfill(qualifiers)))
-                                                    .orElse(call)))));
+
+            final Call call = resolver.getKnowns()
+                    .attr(Qualifiers.EXTRA_QUALIFIERS)
+                    .map(qualifiers -> qualify(old -> old.fulfill(qualifiers)))
+                    .orElse(this);
+            final AnswerCache answerCache = resolver.getAnswerCache();
+
+            if (answerCache != null) {
+                return answerCache.resolve(call, resolver, () -> applyRules(call, resolver));
+            }
+
+            return applyRules(call, resolver);
+        }
+
+        @Nonnull
+        private static Flux<Knowns> applyRules(@Nonnull Call call, @Nonnull Resolver resolver) {
+
+            final Knowns knowns = resolver.getKnowns();
+            final Function<Rule.Match, Flux<Knowns>> applyRule = match -> match.getRule()
+                    .getPredicate()
+                    .resolve(resolver.withKnowns(match.getKnowns()))
+                    .map(resolved -> resolved.finishMatching(knowns));
+            final Flux<Rule.Match> matches = resolver.matchingRules(call);
+
+            if (resolver.isSequential()) {
+                return matches.concatMap(applyRule);
+            }
+
+            return matches.flatMap(applyRule);
         }
 
         @Nullable
@@ -287,7 +371,7 @@ public interface Predicate {
         Prefix(
                 @Nonnull List<? extends PlainTerm> terms,
                 @Nonnull Call rest) {
-            this.terms = unmodifiableList(terms);
+            this.terms = terms instanceof TermSlice ? terms : unmodifiableList(terms);
             this.rest = rest;
         }
 
@@ -387,6 +471,44 @@ public interface Predicate {
         @Nonnull
         Flux<Rule.Match> matchingRules(@Nonnull Predicate.Call call);
 
+        /**
+         * Finds resolution rules the given predicate call matches synchronously.
+         *
+         * <p>This is used by {@link Solver pull-based solver}.</p>
+         *
+         * @param call predicate call.
+         *
+         * @return an iterator over {@link Rule.Match rule matches}. By default it pulls the matches from
+         * {@link #matchingRules(Call) flux}.
+         */
+        @Nonnull
+        default Iterator<Rule.Match> findMatchingRules(@Nonnull Predicate.Call call) {
+            return matchingRules(call).toIterable(1).iterator();
+        }
+
+        /**
+         * Whether predicates are resolved sequentially.
+         *
+         * <p>Sequential resolver resolves predicates depth-first, one alternative after another, on the calling
+         * thread. The variable resolutions are recorded on a trail then, and undone on backtracking.</p>
+         *
+         * @return {@code true} if {@link #getKnowns() knowns} are {@link Knowns#sequential() sequential}, or
+         * {@code false} otherwise.
+         */
+        default boolean isSequential() {
+            return getKnowns().isSequential();
+        }
+
+        /**
+         * Constructs new predicate resolver based on this one resolving predicates sequentially.
+         *
+         * @return new resolver with {@link Knowns#sequential() sequential knowns}, or this instance if it is sequential
+         * already.
+         */
+        default Resolver sequential() {
+            return withKnowns(getKnowns().sequential());
+        }
+
         /**
          * Constructs new predicate resolver based on this one with the given variable mappings and resolutions.
          *
@@ -399,10 +521,44 @@ public interface Predicate {
         /**
          * Constructs new predicate resolver based on this one with the given predicate resolution rule selector.
          *
+         * <p>The resolver uses a {@link Rule.Selector#snapshot() snapshot} of the selector. So all predicates of the
+         * derivation are resolved against the same rules, even if the selector is modified meanwhile.</p>
+         *
          * @param selector new predicate resolution rule selector.
          */
         default Resolver withSelector(@Nonnull Rule.Selector selector) {
-            return new CustomResolver(getKnowns(), selector);
+            return new CustomResolver(getKnowns(), selector.snapshot());
+        }
+
+        /**
+         * The version of the rules this resolver selects from.
+         *
+         * @return the {@link Rule.Selector#version() version} of rule selector, or {@code 0} by default.
+         */
+        default long getRulesVersion() {
+            return 0L;
+        }
+
+        /**
+         * The cache of the answers to ground predicate calls.
+         *
+         * @return answer cache, or {@code null} if answers are not cached, which is the default.
+         */
+        @Nullable
+        default AnswerCache getAnswerCache() {
+            return null;
+        }
+
+        /**
+         * Constructs new predicate resolver based on this one caching the answers to ground predicate calls.
+         *
+         * <p>The resolver uses a {@link Rule.Selector#snapshot() snapshot} of the {@link AnswerCache#getRules() cached
+         * rules}. The answer cache is dropped by {@link #withSelector(Rule.Selector)}.</p>
+         *
+         * @param answerCache answer cache to use.
+         */
+        default Resolver withAnswerCache(@Nonnull AnswerCache answerCache) {
+            return new CustomResolver(getKnowns(), answerCache.getRules().snapshot(), answerCache);
         }
 
     }
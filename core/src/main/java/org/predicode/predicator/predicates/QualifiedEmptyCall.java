@@ -1,13 +1,8 @@
 package org.predicode.predicator.predicates;
 
-import org.predicode.predicator.terms.PlainTerm;
-
 import javax.annotation.Nonnull;
-import java.util.List;
 import java.util.Optional;
 
-import static java.util.Collections.emptyList;
-
 
 final class QualifiedEmptyCall extends Predicate.Call implements FiniteCall {
 
@@ -32,8 +27,8 @@ final class QualifiedEmptyCall extends Predicate.Call implements FiniteCall {
 
     @Nonnull
     @Override
-    public List<? extends PlainTerm> allTerms() {
-        return emptyList();
+    public TermSlice allTerms() {
+        return TermSlice.EMPTY;
     }
 
     @Override
@@ -75,7 +70,7 @@ final class QualifiedEmptyCall extends Predicate.Call implements FiniteCall {
     @Override
     Optional<Prefix> buildPrefix(int length) {
         if (length == 0) {
-            return Optional.of(Predicate.prefix(emptyList(), this));
+            return Optional.of(Predicate.prefix(TermSlice.EMPTY, this));
         }
         return Optional.empty();
     }
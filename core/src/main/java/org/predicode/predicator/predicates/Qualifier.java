@@ -6,6 +6,7 @@ import org.predicode.predicator.terms.PlainTerm;
 import org.predicode.predicator.terms.SignatureTerm;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -13,7 +14,7 @@ import java.util.stream.Collectors;
 
 import static java.util.Collections.unmodifiableList;
 import static org.predicode.predicator.grammar.TermPrinter.printTerms;
-import static org.predicode.predicator.terms.PlainTerm.matchTerms;
+import static org.predicode.predicator.terms.PlainTerm.tryMatchTerms;
 
 
 /**
@@ -110,7 +111,20 @@ public final class Qualifier {
      */
     @Nonnull
     public final Optional<Knowns> match(@Nonnull Qualifier qualifier, @Nonnull Knowns knowns) {
-        return matchTerms(getTerms(), qualifier.getTerms(), knowns);
+        return Optional.ofNullable(tryMatch(qualifier, knowns));
+    }
+
+    /**
+     * Attempts to match the given predicate qualifier against this one without allocating anything on mismatch.
+     *
+     * @param qualifier a predicate qualifier to match.
+     * @param knowns known resolutions.
+     *
+     * @return updated knowns if the qualifier matches this pattern, or {@code null} otherwise.
+     */
+    @Nullable
+    public final Knowns tryMatch(@Nonnull Qualifier qualifier, @Nonnull Knowns knowns) {
+        return tryMatchTerms(getTerms(), qualifier.getTerms(), knowns);
     }
 
     @Override
@@ -9,6 +9,7 @@ import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.*;
 import java.util.function.*;
@@ -19,7 +20,6 @@ import java.util.stream.StreamSupport;
 
 import static java.util.Collections.*;
 import static org.predicode.predicator.grammar.TermPrinter.printTerms;
-import static org.predicode.predicator.terms.Variable.temp;
 
 
 /**
@@ -41,6 +41,14 @@ public final class Qualifiers extends AbstractCollection<Qualifier> {
     private static final ExtraQualifierBuilder EXTRA_QUALIFIER_TERM_REPLACER =
             new ExtraQualifierBuilder();
 
+    /**
+     * Extra qualifiers resolution attribute key.
+     *
+     * <p>Extra qualifiers are the ones of the predicate call not present in matching rule pattern. They are added to
+     * the calls made by rule predicate.</p>
+     */
+    static final Knowns.Attr<Qualifiers> EXTRA_QUALIFIERS = Knowns.Attr.of(Qualifiers.class);
+
     /**
      * Empty qualifiers collection.
      *
@@ -298,20 +306,35 @@ public final class Qualifiers extends AbstractCollection<Qualifier> {
      */
     @Nonnull
     public final Optional<Knowns> match(@Nonnull Qualifiers qualifiers, @Nonnull Knowns knowns) {
+        return Optional.ofNullable(tryMatch(qualifiers, knowns));
+    }
+
+    /**
+     * Attempts to match the given predicate qualifiers collection against this one without allocating anything on
+     * mismatch.
+     *
+     * @param qualifiers a predicate qualifiers to match.
+     * @param knowns known resolutions.
+     *
+     * @return updated knowns if the qualifiers matches this pattern, or {@code null} otherwise.
+     */
+    @Nullable
+    public final Knowns tryMatch(@Nonnull Qualifiers qualifiers, @Nonnull Knowns knowns) {
         for (final Qualifier qualifier : this) {
 
-            final Knowns $knowns = knowns;
-            final Optional<Knowns> match = qualifiers.get(qualifier.getSignature())
-                    .flatMap(found -> qualifier.match(found, $knowns));
+            final Qualifier found = qualifiers.map.get(qualifier.getSignature());
 
-            if (!match.isPresent()) {
-                return Optional.empty();
+            if (found == null) {
+                return null;
             }
 
-            knowns = match.get();
+            knowns = qualifier.tryMatch(found, knowns);
+            if (knowns == null) {
+                return null;
+            }
         }
 
-        return Optional.of(qualifiers.exclude(this).addAsExtraQualifiersTo(knowns));
+        return qualifiers.exclude(this).addAsExtraQualifiersTo(knowns);
     }
 
     @Nonnull
@@ -326,7 +349,7 @@ public final class Qualifiers extends AbstractCollection<Qualifier> {
             knowns = addExtraQualifierTo(qualifier, knowns, qualifiers);
         }
 
-        return knowns.attr(Qualifiers.class, of(qualifiers));
+        return knowns.attr(EXTRA_QUALIFIERS, of(qualifiers));
     }
 
     @Nonnull
@@ -476,7 +499,7 @@ public final class Qualifiers extends AbstractCollection<Qualifier> {
         public Tuple2<PlainTerm, Knowns> visitPlain(
                 @Nonnull PlainTerm term,
                 @Nonnull Knowns knowns) {
-            return knowns.declareLocal(temp("extra qualifier"), Tuples::of);
+            return knowns.declareTemp("extra qualifier", (temp, local, kns) -> Tuples.of(local, kns));
         }
 
     }
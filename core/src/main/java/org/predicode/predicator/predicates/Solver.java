@@ -0,0 +1,1179 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.Knowns;
+import org.predicode.predicator.Rule;
+import org.predicode.predicator.terms.Phrase;
+import org.predicode.predicator.terms.PlainTerm;
+import org.predicode.predicator.terms.Term;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Pull-based synchronous predicate solver.
+ *
+ * <p>This is an alternative to {@link Predicate#resolve(Predicate.Resolver) reactive resolution}. Instead of
+ * assembling a chain of reactive operators for each goal, it solves the predicate depth-first over a list of pending
+ * goals and an explicit stack of choice points. The solutions are found lazily, one at a time, on the calling
+ * thread.</p>
+ *
+ * <p>Conjunctions, disjunctions, negations, predicate calls, and phrases are solved natively. Predicate calls find
+ * matching rules with {@link Predicate.Resolver#findMatchingRules(Predicate.Call)}, and phrase terms are expanded with
+ * {@link Term#expansions(Predicate.Resolver)}. Any other predicate is {@link Predicate#resolve(Predicate.Resolver)
+ * resolved} reactively, and its solutions are pulled from the resulting flux.</p>
+ *
+ * <p>The solutions are the same as the ones of {@link Predicate.Resolver#isSequential() sequential} reactive
+ * resolution, and are found in the same order.</p>
+ *
+ * <p>Unlike reactive resolution, the solver never nests the resolution of called rules, negated goals, or answer
+ * table evaluations on the thread stack. So the recursion depth is limited by the heap only, except for the predicates
+ * resolved reactively. Moreover, a call that is the last goal of the rule does not keep the
+ * caller's goals pending. So the tail-recursive rules are solved in constant space, unless they leave choice points
+ * behind.</p>
+ *
+ * <p>The calls can be {@link Tabling tabled}. The solver memoizes the answers to tabled calls then. The negation of
+ * the call depending on the tabled call which answers are not complete yet may produce wrong results.</p>
+ *
+ * <p>The solver is not thread-safe. However, the search can be split between threads by
+ * {@link #resolveParallel(Predicate, Predicate.Resolver, ForkJoinPool, int) OR-parallel resolution}.</p>
+ *
+ * <p>The solver subscribes to the fluxes of reactively resolved predicates. It should be {@link #close() closed}
+ * when abandoned before exhausting the solutions, so that these subscriptions are cancelled.</p>
+ */
+public final class Solver implements Iterator<Knowns>, AutoCloseable {
+
+    /**
+     * Starts solving the given predicate.
+     *
+     * @param predicate predicate to solve.
+     * @param resolver predicate resolver to solve against.
+     *
+     * @return an iterator over predicate solutions.
+     */
+    @Nonnull
+    public static Solver solve(@Nonnull Predicate predicate, @Nonnull Predicate.Resolver resolver) {
+        return solve(predicate, resolver, Tabling.none());
+    }
+
+    /**
+     * Starts solving the given predicate with tabling.
+     *
+     * @param predicate predicate to solve.
+     * @param resolver predicate resolver to solve against.
+     * @param tabling tabled calls declaration.
+     *
+     * @return an iterator over predicate solutions.
+     */
+    @Nonnull
+    public static Solver solve(
+            @Nonnull Predicate predicate,
+            @Nonnull Predicate.Resolver resolver,
+            @Nonnull Tabling tabling) {
+        return new Solver(
+                new Solve(predicate, null),
+                resolver,
+                tabling.isEmpty() ? null : new CallTables(tabling));
+    }
+
+    /**
+     * Resolves the given predicate OR-parallel.
+     *
+     * <p>The search starts sequentially in one task. Once the task solves the given number of goals, its oldest choice
+     * point is forked as a new task. The forked task tries the remaining alternatives of that choice point, while the
+     * original one continues with the alternatives chosen already. So, the large subtrees of the search are split
+     * between pool threads, while the small ones are searched sequentially. The idle pool threads steal the forked
+     * tasks.</p>
+     *
+     * <p>The solutions are emitted in no particular order, from the pool threads. The search respects the downstream
+     * demand. Each task searches for the next solution only when requested. Otherwise it is parked without occupying
+     * a pool thread until more solutions requested. So, the number of solutions found ahead of demand never exceeds
+     * it, and the buffer of the resulting flux stays bounded by the demand. The search stops when the subscription is
+     * cancelled. The calls are not {@link Tabling tabled}.</p>
+     *
+     * @param predicate predicate to resolve.
+     * @param resolver predicate resolver to resolve against. The {@link Knowns#persistent() persistent} knowns are
+     * used even if they are {@link Knowns#sequential() sequential}, as they are shared between threads.
+     * @param pool fork/join pool to search in.
+     * @param granularity the minimum number of goals the task solves before forking. Must be positive.
+     *
+     * @return a {@link Flux} of predicate solutions.
+     */
+    @Nonnull
+    public static Flux<Knowns> resolveParallel(
+            @Nonnull Predicate predicate,
+            @Nonnull Predicate.Resolver resolver,
+            @Nonnull ForkJoinPool pool,
+            int granularity) {
+        if (granularity <= 0) {
+            throw new IllegalArgumentException("Granularity should be positive: " + granularity);
+        }
+        return Flux.create(sink -> SolverTask.start(
+                new Solver(
+                        new Solve(predicate, null),
+                        resolver.withKnowns(resolver.getKnowns().persistent()),
+                        null),
+                sink,
+                pool,
+                granularity));
+    }
+
+    /**
+     * Resolves the given predicate with solver.
+     *
+     * <p>This is a stack-safe alternative to {@link Predicate#resolve(Predicate.Resolver)}. Each subscription starts
+     * a new solver, and each requested solution is found on the requesting thread. The solver is closed when the
+     * subscription terminates or is cancelled.</p>
+     *
+     * @param predicate predicate to resolve.
+     * @param resolver predicate resolver to resolve against.
+     *
+     * @return a {@link Flux} of predicate solutions.
+     */
+    @Nonnull
+    public static Flux<Knowns> resolve(@Nonnull Predicate predicate, @Nonnull Predicate.Resolver resolver) {
+        return resolve(predicate, resolver, Tabling.none());
+    }
+
+    /**
+     * Resolves the given predicate with solver and tabling.
+     *
+     * @param predicate predicate to resolve.
+     * @param resolver predicate resolver to resolve against.
+     * @param tabling tabled calls declaration.
+     *
+     * @return a {@link Flux} of predicate solutions.
+     */
+    @Nonnull
+    public static Flux<Knowns> resolve(
+            @Nonnull Predicate predicate,
+            @Nonnull Predicate.Resolver resolver,
+            @Nonnull Tabling tabling) {
+        return Flux.using(
+                () -> solve(predicate, resolver, tabling),
+                solver -> Flux.fromIterable(() -> solver),
+                Solver::close);
+    }
+
+    /**
+     * Starts solving the given predicate.
+     *
+     * @param predicate predicate to solve.
+     * @param resolver predicate resolver to solve against.
+     *
+     * @return sequential stream of predicate solutions.
+     */
+    @Nonnull
+    public static Stream<Knowns> stream(@Nonnull Predicate predicate, @Nonnull Predicate.Resolver resolver) {
+        return stream(predicate, resolver, Tabling.none());
+    }
+
+    /**
+     * Starts solving the given predicate with tabling.
+     *
+     * @param predicate predicate to solve.
+     * @param resolver predicate resolver to solve against.
+     * @param tabling tabled calls declaration.
+     *
+     * @return sequential stream of predicate solutions. Closing it {@link #close() closes} the solver.
+     */
+    @Nonnull
+    public static Stream<Knowns> stream(
+            @Nonnull Predicate predicate,
+            @Nonnull Predicate.Resolver resolver,
+            @Nonnull Tabling tabling) {
+
+        final Solver solver = solve(predicate, resolver, tabling);
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(solver, Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+                .onClose(solver::close);
+    }
+
+    private final ArrayDeque<ChoicePoint> choicePoints = new ArrayDeque<>();
+
+    /**
+     * Answer tables, or {@code null} if there are no tabled calls.
+     */
+    @Nullable
+    private final CallTables tables;
+
+    /**
+     * Accepts the solvers forked from this one, or {@code null} if this solver never forks.
+     */
+    @Nullable
+    private Consumer<? super Solver> forks;
+
+    /**
+     * The minimum number of goals to solve before forking.
+     */
+    private int granularity;
+
+    /**
+     * The number of goals solved since the last fork.
+     */
+    private int steps;
+
+    /**
+     * The resolver containing the knowns to solve the next goal against.
+     */
+    @Nonnull
+    private Predicate.Resolver resolver;
+
+    /**
+     * Pending goals, or {@code null} if all goals are solved.
+     */
+    @Nullable
+    private Goal goals;
+
+    /**
+     * Whether the next solution should be searched by backtracking.
+     */
+    private boolean backtrack;
+
+    /**
+     * The solution found but not returned yet.
+     */
+    @Nullable
+    private Knowns next;
+
+    private boolean exhausted;
+
+    private Solver(@Nullable Goal goals, @Nonnull Predicate.Resolver resolver, @Nullable CallTables tables) {
+        this.resolver = resolver;
+        this.goals = goals;
+        this.tables = tables;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next != null) {
+            return true;
+        }
+        if (this.exhausted) {
+            return false;
+        }
+
+        this.next = solveNext();
+        this.exhausted = this.next == null;
+
+        return !this.exhausted;
+    }
+
+    @Nonnull
+    @Override
+    public Knowns next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final Knowns next = this.next;
+
+        this.next = null;
+
+        return next;
+    }
+
+    /**
+     * Stops solving.
+     *
+     * <p>Drops all choice points and cancels the subscriptions to reactively resolved predicates. The solver has no
+     * more solutions after that.</p>
+     */
+    @Override
+    public void close() {
+        this.goals = null;
+        this.next = null;
+        this.exhausted = true;
+
+        ChoicePoint choicePoint;
+
+        while ((choicePoint = this.choicePoints.poll()) != null) {
+            choicePoint.close();
+        }
+    }
+
+    @Nullable
+    private Knowns solveNext() {
+        if (this.backtrack && !backtrack()) {
+            return null;
+        }
+        for (;;) {
+
+            final Goal goal = this.goals;
+
+            if (goal == null) {
+                this.backtrack = true;
+                return this.resolver.getKnowns();
+            }
+
+            this.goals = goal.next;
+            if (!goal.solve(this) && !backtrack()) {
+                return null;
+            }
+            if (this.forks != null && ++this.steps >= this.granularity) {
+                fork(this.forks);
+            }
+        }
+    }
+
+    /**
+     * Makes this solver fork.
+     *
+     * @param granularity the minimum number of goals to solve before forking.
+     * @param forks accepts forked solvers.
+     */
+    final void forkWith(int granularity, @Nonnull Consumer<? super Solver> forks) {
+        this.granularity = granularity;
+        this.forks = forks;
+    }
+
+    /**
+     * Forks the oldest choice point.
+     *
+     * <p>The oldest choice point is the closest one to the search tree root. So its alternatives likely contain the
+     * largest part of the remaining search.</p>
+     */
+    private void fork(@Nonnull Consumer<? super Solver> forks) {
+
+        final ChoicePoint oldest = this.choicePoints.peekLast();
+
+        if (oldest == null || oldest instanceof Negation) {
+            // The negated goal should be solved by the same solver
+            return;
+        }
+
+        this.choicePoints.pollLast();
+
+        final Solver forked = new Solver(null, this.resolver, this.tables);
+
+        forked.choicePoints.push(oldest);
+        forked.backtrack = true;
+        this.steps = 0;
+        forks.accept(forked);
+    }
+
+    /**
+     * Retries the most recent choice point with remaining alternatives.
+     *
+     * @return {@code true} if the next alternative is chosen, or {@code false} if there are no more alternatives.
+     */
+    private boolean backtrack() {
+        for (;;) {
+
+            final ChoicePoint choicePoint = this.choicePoints.peek();
+
+            if (choicePoint == null) {
+                return false;
+            }
+            if (!choicePoint.retry(this)) {
+                this.choicePoints.pop();
+                continue;
+            }
+            if (!choicePoint.hasAlternatives()) {
+                this.choicePoints.pop();
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Chooses the first alternative of the given choice point.
+     *
+     * <p>The choice point is only remembered if it has other alternatives.</p>
+     *
+     * @return {@code true} if the first alternative is chosen, or {@code false} if there are no alternatives.
+     */
+    private boolean choose(@Nonnull ChoicePoint choicePoint) {
+        if (!choicePoint.retry(this)) {
+            return false;
+        }
+        if (choicePoint.hasAlternatives()) {
+            this.choicePoints.push(choicePoint);
+        }
+        return true;
+    }
+
+    private boolean solvePredicate(@Nonnull Predicate predicate, @Nullable Goal next) {
+        if (predicate instanceof Predicate.Call) {
+            return solveCall((Predicate.Call) predicate, next);
+        }
+        if (predicate instanceof And) {
+
+            final And and = (And) predicate;
+
+            this.goals = new Solve(and.getFirst(), new Solve(and.getSecond(), next));
+
+            return true;
+        }
+        if (predicate instanceof Or) {
+
+            final Or or = (Or) predicate;
+
+            this.choicePoints.push(new Alternative(or.getSecond(), this.resolver, next));
+            this.goals = new Solve(or.getFirst(), next);
+
+            return true;
+        }
+        if (predicate == Predicate.TRUE) {
+            this.goals = next;
+            return true;
+        }
+        if (predicate == Predicate.FALSE) {
+            return false;
+        }
+        if (predicate instanceof Not) {
+
+            final Negation negation = new Negation(this.resolver, next);
+
+            this.choicePoints.push(negation);
+            this.goals = new Solve(((Not) predicate).getNegated(), new Cut(negation));
+
+            return true;
+        }
+        if (predicate.getClass() == Phrase.class) {
+
+            final List<? extends Term> terms = ((Phrase) predicate).getTerms();
+
+            this.goals = new Expand(terms, 0, new PlainTerm[terms.size()], Predicate.TRUE, next);
+
+            return true;
+        }
+
+        return choose(new Solutions(predicate.resolve(this.resolver), this.resolver, next));
+    }
+
+    private boolean solveCall(@Nonnull Predicate.Call call, @Nullable Goal next) {
+
+        final Knowns knowns = this.resolver.getKnowns();
+        final Predicate.Call qualified = knowns.attr(Qualifiers.EXTRA_QUALIFIERS)
+                .map(qualifiers -> call.qualify(old -> old.fulfill(qualifiers)))
+                .orElse(call);
+
+        if (this.tables != null) {
+
+            final CallTables.Table table = this.tables.table(qualified, knowns);
+
+            if (table != null) {
+                return solveTabled(this.tables, table, qualified, next);
+            }
+        }
+
+        return solveRules(qualified, next);
+    }
+
+    private boolean solveTabled(
+            @Nonnull CallTables tables,
+            @Nonnull CallTables.Table table,
+            @Nonnull Predicate.Call call,
+            @Nullable Goal next) {
+
+        final int depth = tables.startEvaluation(table);
+
+        if (depth < 0) {
+            return choose(new Answers(table, call, this.resolver, next));
+        }
+
+        final TableEvaluation evaluation = new TableEvaluation(tables, table, depth, call, this.resolver, next);
+
+        this.choicePoints.push(evaluation);
+        evaluation.startRound(this);
+
+        return true;
+    }
+
+    /**
+     * Drops the choice points created after the given one, along with that one.
+     */
+    private void cut(@Nonnull ChoicePoint choicePoint) {
+
+        ChoicePoint dropped;
+
+        do {
+            dropped = this.choicePoints.pop();
+            dropped.close();
+        } while (dropped != choicePoint);
+    }
+
+    private boolean solveRules(@Nonnull Predicate.Call call, @Nullable Goal next) {
+        return choose(new RuleAlternatives(
+                this.resolver.findMatchingRules(call),
+                this.resolver,
+                this.resolver.getKnowns(),
+                next));
+    }
+
+    /**
+     * Pending goal.
+     */
+    private static abstract class Goal {
+
+        @Nullable
+        final Goal next;
+
+        Goal(@Nullable Goal next) {
+            this.next = next;
+        }
+
+        /**
+         * Solves this goal.
+         *
+         * <p>Updates the solver resolver and pending goals on success.</p>
+         *
+         * @return {@code true} on success, or {@code false} if the solver should backtrack.
+         */
+        abstract boolean solve(@Nonnull Solver solver);
+
+    }
+
+    private static final class Solve extends Goal {
+
+        @Nonnull
+        private final Predicate predicate;
+
+        Solve(@Nonnull Predicate predicate, @Nullable Goal next) {
+            super(next);
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            return solver.solvePredicate(this.predicate, this.next);
+        }
+
+    }
+
+    /**
+     * Solves predicate call with its matching rules.
+     */
+    private static final class SolveRules extends Goal {
+
+        @Nonnull
+        private final Predicate.Call call;
+
+        SolveRules(@Nonnull Predicate.Call call, @Nullable Goal next) {
+            super(next);
+            this.call = call;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            return solver.solveRules(this.call, this.next);
+        }
+
+    }
+
+    /**
+     * Adds the solution to the answer table being evaluated, then backtracks to find the next one.
+     */
+    private static final class AddAnswer extends Goal {
+
+        @Nonnull
+        private final CallTables tables;
+
+        @Nonnull
+        private final CallTables.Table table;
+
+        @Nonnull
+        private final List<? extends PlainTerm> terms;
+
+        AddAnswer(
+                @Nonnull CallTables tables,
+                @Nonnull CallTables.Table table,
+                @Nonnull List<? extends PlainTerm> terms) {
+            super(null);
+            this.tables = tables;
+            this.table = table;
+            this.terms = terms;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            this.tables.add(this.table, this.terms, solver.resolver.getKnowns());
+            return false;
+        }
+
+    }
+
+    /**
+     * Succeeded negated goal. Makes the negation fail.
+     */
+    private static final class Cut extends Goal {
+
+        @Nonnull
+        private final Negation negation;
+
+        Cut(@Nonnull Negation negation) {
+            super(null);
+            this.negation = negation;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            solver.cut(this.negation);
+            return false;
+        }
+
+    }
+
+    /**
+     * Restores the caller's local variable mappings after the rule resolution.
+     *
+     * <p>When the rule resolution finishes right before the caller's one, only the outermost caller's mappings are
+     * restored.</p>
+     */
+    private static final class FinishMatching extends Goal {
+
+        @Nonnull
+        private final Knowns caller;
+
+        FinishMatching(@Nonnull Knowns caller, @Nullable Goal next) {
+            super(next);
+            this.caller = caller;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            solver.resolver = solver.resolver.withKnowns(solver.resolver.getKnowns().finishMatching(this.caller));
+            return true;
+        }
+
+    }
+
+    /**
+     * Expands the next phrase term.
+     *
+     * <p>Once all terms expanded, resolves the phrase the same way as {@link Phrase#resolve(Predicate.Resolver)}
+     * does.</p>
+     */
+    private static final class Expand extends Goal {
+
+        @Nonnull
+        private final List<? extends Term> terms;
+
+        private final int index;
+
+        @Nonnull
+        private final PlainTerm[] expanded;
+
+        @Nonnull
+        private final Predicate predicate;
+
+        Expand(
+                @Nonnull List<? extends Term> terms,
+                int index,
+                @Nonnull PlainTerm[] expanded,
+                @Nonnull Predicate predicate,
+                @Nullable Goal next) {
+            super(next);
+            this.terms = terms;
+            this.index = index;
+            this.expanded = expanded;
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean solve(@Nonnull Solver solver) {
+            if (this.index == this.expanded.length) {
+                solver.goals = new Solve(this.predicate.and(Predicate.call(Arrays.asList(this.expanded))), this.next);
+                return true;
+            }
+            return solver.choose(new Expansions(
+                    this.terms.get(this.index).expansions(solver.resolver),
+                    solver.resolver,
+                    this));
+        }
+
+    }
+
+    /**
+     * Choice point.
+     */
+    private static abstract class ChoicePoint {
+
+        /**
+         * Chooses the next alternative.
+         *
+         * <p>Updates the solver resolver and pending goals on success.</p>
+         *
+         * @return {@code true} if the next alternative is chosen, or {@code false} if there are no more
+         * alternatives.
+         */
+        abstract boolean retry(@Nonnull Solver solver);
+
+        /**
+         * Whether this choice point may have more alternatives.
+         *
+         * @return {@code false} if this choice point is known to be exhausted, or {@code true} otherwise.
+         */
+        abstract boolean hasAlternatives();
+
+        /**
+         * Releases the resources held by this choice point when it is dropped before exhausting its alternatives.
+         */
+        void close() {
+        }
+
+    }
+
+    /**
+     * The second alternative of disjunction.
+     */
+    private static final class Alternative extends ChoicePoint {
+
+        @Nonnull
+        private final Predicate predicate;
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nullable
+        private final Goal next;
+
+        private boolean tried;
+
+        Alternative(@Nonnull Predicate predicate, @Nonnull Predicate.Resolver resolver, @Nullable Goal next) {
+            this.predicate = predicate;
+            this.resolver = resolver;
+            this.next = next;
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (this.tried) {
+                return false;
+            }
+            this.tried = true;
+            solver.resolver = this.resolver;
+            solver.goals = new Solve(this.predicate, this.next);
+            return true;
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            return !this.tried;
+        }
+
+    }
+
+    /**
+     * Negation.
+     *
+     * <p>This choice point is retried when the negated goal fails, so the negation succeeds. When the negated goal
+     * succeeds, this choice point is {@link Cut cut} along with the ones created by the negated goal.</p>
+     */
+    private static final class Negation extends ChoicePoint {
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nullable
+        private final Goal next;
+
+        private boolean tried;
+
+        Negation(@Nonnull Predicate.Resolver resolver, @Nullable Goal next) {
+            this.resolver = resolver;
+            this.next = next;
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (this.tried) {
+                return false;
+            }
+            this.tried = true;
+            solver.resolver = this.resolver;
+            solver.goals = this.next;
+            return true;
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            return !this.tried;
+        }
+
+    }
+
+    /**
+     * The rules matching predicate call.
+     */
+    private static final class RuleAlternatives extends ChoicePoint {
+
+        @Nonnull
+        private final Iterator<Rule.Match> matches;
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nonnull
+        private final Knowns caller;
+
+        @Nullable
+        private final Goal next;
+
+        RuleAlternatives(
+                @Nonnull Iterator<Rule.Match> matches,
+                @Nonnull Predicate.Resolver resolver,
+                @Nonnull Knowns caller,
+                @Nullable Goal next) {
+            this.matches = matches;
+            this.resolver = resolver;
+            this.caller = caller;
+            this.next = next;
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (!this.matches.hasNext()) {
+                return false;
+            }
+
+            final Rule.Match match = this.matches.next();
+            final Goal next = this.next;
+
+            solver.resolver = this.resolver.withKnowns(match.getKnowns());
+            solver.goals = new Solve(
+                    match.getRule().getPredicate(),
+                    // The last call of the rule: the caller's frame is going to be finished right after this one
+                    next instanceof FinishMatching ? next : new FinishMatching(this.caller, next));
+
+            return true;
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            // The last matching rule leaves no choice point behind
+            return this.matches.hasNext();
+        }
+
+    }
+
+    /**
+     * The answers to tabled call.
+     */
+    private static final class Answers extends ChoicePoint {
+
+        @Nonnull
+        private final CallTables.Table table;
+
+        /**
+         * The call to match the answers against. Contains call terms only, as qualifiers are part of the table key.
+         */
+        @Nonnull
+        private final Predicate.Call call;
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nullable
+        private final Goal next;
+
+        private int index;
+
+        Answers(
+                @Nonnull CallTables.Table table,
+                @Nonnull Predicate.Call call,
+                @Nonnull Predicate.Resolver resolver,
+                @Nullable Goal next) {
+            this.table = table;
+            this.call = Predicate.call(call.finiteTerms());
+            this.resolver = resolver;
+            this.next = next;
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+
+            final List<Rule.Pattern> answers = this.table.answers();
+            final Knowns knowns = this.resolver.getKnowns();
+
+            // The answers found after this choice point creation are consumed too
+            while (this.index < answers.size()) {
+
+                final Knowns matched = answers.get(this.index++).tryMatch(this.call, knowns);
+
+                if (matched != null) {
+                    solver.resolver = this.resolver.withKnowns(matched.finishMatching(knowns));
+                    solver.goals = this.next;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            return !this.table.isComplete() || this.index < this.table.answers().size();
+        }
+
+    }
+
+    /**
+     * Tabled call evaluating its answer table.
+     *
+     * <p>Each evaluation round finds all answers with the rules the call matches, and {@link AddAnswer adds} them to
+     * the table. This choice point is retried when the round is over. It either starts another round, or consumes the
+     * table answers once the evaluation is finished.</p>
+     */
+    private static final class TableEvaluation extends ChoicePoint {
+
+        @Nonnull
+        private final CallTables tables;
+
+        @Nonnull
+        private final CallTables.Table table;
+
+        private final int depth;
+
+        @Nonnull
+        private final Predicate.Call call;
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nullable
+        private final Goal next;
+
+        /**
+         * The number of answers found before the current round.
+         */
+        private long answerCount;
+
+        /**
+         * Table answers, or {@code null} while the table is being evaluated.
+         */
+        @Nullable
+        private Answers answers;
+
+        TableEvaluation(
+                @Nonnull CallTables tables,
+                @Nonnull CallTables.Table table,
+                int depth,
+                @Nonnull Predicate.Call call,
+                @Nonnull Predicate.Resolver resolver,
+                @Nullable Goal next) {
+            this.tables = tables;
+            this.table = table;
+            this.depth = depth;
+            this.call = call;
+            this.resolver = resolver;
+            this.next = next;
+        }
+
+        void startRound(@Nonnull Solver solver) {
+
+            final List<? extends PlainTerm> terms = this.call.finiteTerms();
+
+            assert terms != null;
+
+            this.answerCount = this.tables.startRound(this.table);
+            solver.resolver = this.resolver;
+            solver.goals = new SolveRules(this.call, new AddAnswer(this.tables, this.table, terms));
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (this.answers == null) {
+                if (this.tables.finishRound(this.table, this.depth, this.answerCount)) {
+                    startRound(solver);
+                    return true;
+                }
+                this.answers = new Answers(this.table, this.call, this.resolver, this.next);
+            }
+            return this.answers.retry(solver);
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            return this.answers == null || this.answers.hasAlternatives();
+        }
+
+    }
+
+    /**
+     * Phrase term expansions.
+     */
+    private static final class Expansions extends ChoicePoint {
+
+        @Nonnull
+        private final Iterator<Term.Expansion> expansions;
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nonnull
+        private final Expand goal;
+
+        Expansions(
+                @Nonnull Iterator<Term.Expansion> expansions,
+                @Nonnull Predicate.Resolver resolver,
+                @Nonnull Expand goal) {
+            this.expansions = expansions;
+            this.resolver = resolver;
+            this.goal = goal;
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (!this.expansions.hasNext()) {
+                return false;
+            }
+
+            final Term.Expansion expansion = this.expansions.next();
+            final Expand goal = this.goal;
+            final PlainTerm[] expanded = goal.expanded.clone();
+
+            expanded[goal.index] = expansion.getExpanded();
+            solver.resolver = this.resolver.withKnowns(expansion.getKnowns());
+            solver.goals = new Expand(
+                    goal.terms,
+                    goal.index + 1,
+                    expanded,
+                    expansion.getUpdatePredicate().apply(goal.predicate),
+                    goal.next);
+
+            return true;
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            return this.expansions.hasNext();
+        }
+
+    }
+
+    /**
+     * Solutions of the predicate resolved reactively.
+     *
+     * <p>Requests the solutions one at a time, when the next alternative is tried. Cancels the subscription when
+     * closed.</p>
+     */
+    private static final class Solutions extends ChoicePoint {
+
+        /**
+         * Signals the flux completed.
+         */
+        private static final Object COMPLETE = new Object();
+
+        @Nonnull
+        private final Predicate.Resolver resolver;
+
+        @Nullable
+        private final Goal next;
+
+        @Nonnull
+        private final Subscriber subscriber = new Subscriber();
+
+        /**
+         * Received signals: solutions, error, or {@link #COMPLETE}.
+         */
+        private final LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+        private boolean terminated;
+
+        Solutions(
+                @Nonnull Flux<Knowns> solutions,
+                @Nonnull Predicate.Resolver resolver,
+                @Nullable Goal next) {
+            this.resolver = resolver;
+            this.next = next;
+            solutions.subscribe(this.subscriber);
+        }
+
+        @Override
+        boolean retry(@Nonnull Solver solver) {
+            if (this.terminated) {
+                return false;
+            }
+
+            final Object signal = nextSignal();
+
+            if (signal == COMPLETE) {
+                this.terminated = true;
+                return false;
+            }
+            if (signal instanceof Throwable) {
+                this.terminated = true;
+                throw Exceptions.propagate((Throwable) signal);
+            }
+
+            solver.resolver = this.resolver.withKnowns((Knowns) signal);
+            solver.goals = this.next;
+
+            return true;
+        }
+
+        @Nonnull
+        private Object nextSignal() {
+            this.subscriber.request(1);
+            try {
+                return this.signals.take();
+            } catch (InterruptedException e) {
+                this.subscriber.cancel();
+                this.terminated = true;
+                Thread.currentThread().interrupt();
+                throw Exceptions.propagate(e);
+            }
+        }
+
+        @Override
+        boolean hasAlternatives() {
+            // Do not request the next solution before it is needed.
+            // But the flux may complete right after emitting the last one.
+            return !this.terminated && this.signals.peek() != COMPLETE;
+        }
+
+        @Override
+        void close() {
+            this.terminated = true;
+            this.subscriber.cancel();
+        }
+
+        private final class Subscriber extends Operators.DeferredSubscription implements CoreSubscriber<Knowns> {
+
+            @Override
+            public void onSubscribe(@Nonnull Subscription s) {
+                set(s);
+            }
+
+            @Override
+            public void onNext(@Nonnull Knowns knowns) {
+                Solutions.this.signals.add(knowns);
+            }
+
+            @Override
+            public void onError(@Nonnull Throwable error) {
+                Solutions.this.signals.add(error);
+            }
+
+            @Override
+            public void onComplete() {
+                Solutions.this.signals.add(COMPLETE);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.Knowns;
+import reactor.core.publisher.FluxSink;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Fork/join task of {@link Solver#resolveParallel(Predicate, Predicate.Resolver, ForkJoinPool, int) OR-parallel
+ * resolution}.
+ *
+ * <p>Emits the solutions found by its solver, and forks a new task for each solver forked from it. The root task
+ * completes the sink once all forked tasks complete.</p>
+ *
+ * <p>The task searches for the next solution only when there is an outstanding downstream demand for it. Otherwise,
+ * the task is parked until more solutions requested. A parked task occupies no pool thread. It is resumed by a new
+ * continuation task searching with the same solver.</p>
+ */
+final class SolverTask extends CountedCompleter<Void> {
+
+    /**
+     * Starts OR-parallel search.
+     *
+     * @param solver root solver.
+     * @param sink the sink to emit solutions to.
+     * @param pool fork/join pool to search in.
+     * @param granularity the minimum number of goals the task solves before forking.
+     */
+    static void start(
+            @Nonnull Solver solver,
+            @Nonnull FluxSink<Knowns> sink,
+            @Nonnull ForkJoinPool pool,
+            int granularity) {
+
+        final Search search = new Search(sink, pool, granularity);
+
+        sink.onRequest(search::request).onCancel(search::cancel);
+        pool.execute(new SolverTask(null, solver, search));
+    }
+
+    @Nonnull
+    private final Solver solver;
+
+    @Nonnull
+    private final Search search;
+
+    private SolverTask(@Nullable SolverTask parent, @Nonnull Solver solver, @Nonnull Search search) {
+        super(parent);
+        this.solver = solver;
+        this.search = search;
+    }
+
+    @Override
+    public void compute() {
+
+        final Search search = this.search;
+
+        this.solver.forkWith(search.granularity, this::fork);
+        while (!search.sink.isCancelled()) {
+            if (!search.acquire()) {
+                if (search.park(this)) {
+                    return; // Will be completed after resumption
+                }
+                continue;
+            }
+            if (!this.solver.hasNext()) {
+                search.release();
+                break;
+            }
+            search.sink.next(this.solver.next());
+        }
+        this.solver.close();
+        tryComplete();
+    }
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+        if (getCompleter() == null) {
+            this.search.sink.complete();
+        }
+    }
+
+    @Override
+    public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+        if (getCompleter() == null) {
+            this.search.sink.error(ex);
+        }
+        return true;
+    }
+
+    private void fork(@Nonnull Solver forked) {
+        if (this.search.sink.isCancelled()) {
+            forked.close();
+            return;
+        }
+        addToPendingCount(1);
+        new SolverTask(this, forked, this.search).fork();
+    }
+
+    /**
+     * Resumes the parked task.
+     *
+     * <p>Executes a continuation task searching with the same solver, and completes this task once the continuation
+     * completes.</p>
+     */
+    private void resume() {
+        addToPendingCount(1);
+        this.search.pool.execute(new SolverTask(this, this.solver, this.search));
+        tryComplete();
+    }
+
+    /**
+     * The state of OR-parallel search shared by all of its tasks.
+     */
+    private static final class Search {
+
+        @Nonnull
+        private final FluxSink<Knowns> sink;
+
+        @Nonnull
+        private final ForkJoinPool pool;
+
+        private final int granularity;
+
+        /**
+         * The number of solutions requested, but not searched for yet. {@link Long#MAX_VALUE} means unbounded demand.
+         */
+        private final AtomicLong permits = new AtomicLong();
+
+        private final ConcurrentLinkedQueue<SolverTask> parked = new ConcurrentLinkedQueue<>();
+
+        Search(@Nonnull FluxSink<Knowns> sink, @Nonnull ForkJoinPool pool, int granularity) {
+            this.sink = sink;
+            this.pool = pool;
+            this.granularity = granularity;
+        }
+
+        /**
+         * Acquires the permit to search for the next solution.
+         *
+         * @return {@code true} if permit acquired, or {@code false} if there is no demand.
+         */
+        boolean acquire() {
+            for (;;) {
+
+                final long permits = this.permits.get();
+
+                if (permits == 0L) {
+                    return false;
+                }
+                if (permits == Long.MAX_VALUE || this.permits.compareAndSet(permits, permits - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns the permit acquired for the search that found nothing.
+         */
+        void release() {
+            add(1L);
+        }
+
+        /**
+         * Parks the task until more solutions requested.
+         *
+         * @return {@code true} if the task is parked, or {@code false} if the demand appeared meanwhile, so the task
+         * should continue.
+         */
+        boolean park(@Nonnull SolverTask task) {
+            this.parked.add(task);
+            if (this.permits.get() == 0L && !this.sink.isCancelled()) {
+                return true;
+            }
+            // Resumed by another thread, unless removed from the queue by this one
+            return !this.parked.remove(task);
+        }
+
+        void request(long n) {
+            add(n);
+        }
+
+        /**
+         * Resumes all parked tasks, so that they close their solvers.
+         */
+        void cancel() {
+
+            SolverTask task;
+
+            while ((task = this.parked.poll()) != null) {
+                task.resume();
+            }
+        }
+
+        /**
+         * Adds permits and resumes as many parked tasks.
+         */
+        private void add(long n) {
+
+            this.permits.accumulateAndGet(
+                    n,
+                    (prev, add) -> prev == Long.MAX_VALUE || prev + add < 0 ? Long.MAX_VALUE : prev + add);
+
+            long resume = n;
+            SolverTask task;
+
+            while (resume-- > 0 && (task = this.parked.poll()) != null) {
+                task.resume();
+            }
+        }
+
+    }
+
+}
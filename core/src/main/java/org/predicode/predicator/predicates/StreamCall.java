@@ -0,0 +1,265 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.terms.PlainTerm;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.Spliterator;
+
+import static org.predicode.predicator.predicates.Qualifiers.none;
+
+
+/**
+ * Predicate call pulling its terms lazily from the given source.
+ *
+ * <p>The terms are pulled only when the prefix containing them is requested. Pulled terms are buffered in a chain
+ * of fixed-size chunks shared by all calls over the same source. Each call refers the chunk containing its first
+ * term, so the chunks preceding the first terms of all reachable calls are garbage collected. This keeps the memory
+ * bounded by the length of the longest requested prefix rather than by the source length.</p>
+ *
+ * <p>The number of terms is not known in advance. So, just like infinite call, this one matches prefix patterns
+ * only. The prefix can not be built when the source has not enough terms.</p>
+ */
+final class StreamCall extends Predicate.Call {
+
+    static final int CHUNK_SIZE = 64;
+
+    @Nonnull
+    private final Source source;
+
+    /**
+     * The chunk containing the first term of this call.
+     */
+    @Nonnull
+    private final Chunk chunk;
+
+    /**
+     * The index of the first term of this call within the {@link #chunk}. May be equal to {@link #CHUNK_SIZE}, in
+     * which case the first term is in the next chunk.
+     */
+    private final int index;
+
+    @Nonnull
+    private final Qualifiers qualifiers;
+
+    StreamCall(@Nonnull Spliterator<? extends PlainTerm> terms) {
+
+        final Source source = new Source(terms);
+
+        this.source = source;
+        this.chunk = source.tail;
+        this.index = 0;
+        this.qualifiers = none();
+    }
+
+    private StreamCall(
+            @Nonnull Source source,
+            @Nonnull Chunk chunk,
+            int index,
+            @Nonnull Qualifiers qualifiers) {
+        this.source = source;
+        this.chunk = chunk;
+        this.index = index;
+        this.qualifiers = qualifiers;
+    }
+
+    @Nonnull
+    @Override
+    public Qualifiers getQualifiers() {
+        return this.qualifiers;
+    }
+
+    @Override
+    public int length() {
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final StreamCall that = (StreamCall) o;
+
+        return this.chunk == that.chunk
+                && this.index == that.index
+                && this.qualifiers.equals(that.qualifiers);
+    }
+
+    @Override
+    public int hashCode() {
+
+        int result = System.identityHashCode(this.chunk);
+
+        result = 31 * result + this.index;
+        result = 31 * result + this.qualifiers.hashCode();
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder out = new StringBuilder().append("...");
+
+        if (!this.qualifiers.isEmpty()) {
+            out.append(' ');
+            this.qualifiers.printQualifiers(out);
+        }
+
+        return out.toString();
+    }
+
+    @Nullable
+    @Override
+    FiniteCall toFinite() {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    Optional<Predicate.Prefix> buildPrefix(int length) {
+        if (length == 0) {
+            return Optional.of(new InfinitePrefix(TermSlice.EMPTY, this));
+        }
+        synchronized (this.source) {
+
+            Chunk chunk = this.chunk;
+            int index = this.index;
+            final TermSlice terms;
+
+            if (index + length <= CHUNK_SIZE) {
+                // All terms are in the same chunk
+                if (!this.source.fill(chunk, index + length)) {
+                    return Optional.empty();
+                }
+                terms = TermSlice.of(chunk.terms, index, index + length);
+                index += length;
+            } else {
+
+                final PlainTerm[] array = new PlainTerm[length];
+
+                for (int i = 0; i < length; ++i) {
+                    if (index == CHUNK_SIZE) {
+                        chunk = this.source.next(chunk);
+                        if (chunk == null) {
+                            return Optional.empty();
+                        }
+                        index = 0;
+                    }
+                    if (!this.source.fill(chunk, index + 1)) {
+                        return Optional.empty();
+                    }
+                    array[i] = chunk.terms[index++];
+                }
+                terms = TermSlice.of(array, 0, length);
+            }
+
+            return Optional.of(new InfinitePrefix(terms, new StreamCall(this.source, chunk, index, this.qualifiers)));
+        }
+    }
+
+    @Nonnull
+    @Override
+    StreamCall updateQualifiers(@Nonnull Qualifiers qualifiers) {
+        return new StreamCall(this.source, this.chunk, this.index, qualifiers);
+    }
+
+    /**
+     * A chunk of pulled terms.
+     *
+     * <p>The terms are only appended to the last chunk, and never modified after that.</p>
+     */
+    private static final class Chunk {
+
+        @Nonnull
+        private final PlainTerm[] terms = new PlainTerm[CHUNK_SIZE];
+
+        /**
+         * The number of pulled terms in this chunk. Guarded by the {@link Source source}.
+         */
+        private int size;
+
+        /**
+         * The next chunk, or {@code null} if this one is the last. Guarded by the {@link Source source}.
+         */
+        @Nullable
+        private Chunk next;
+
+    }
+
+    /**
+     * The source of terms shared by all calls pulling them.
+     *
+     * <p>Refers the last chunk only.</p>
+     */
+    private static final class Source {
+
+        @Nullable
+        private Spliterator<? extends PlainTerm> terms;
+
+        @Nonnull
+        private Chunk tail = new Chunk();
+
+        Source(@Nonnull Spliterator<? extends PlainTerm> terms) {
+            this.terms = terms;
+        }
+
+        /**
+         * Pulls the terms until the given chunk contains the given number of them.
+         *
+         * @return {@code true} if the chunk contains enough terms, or {@code false} if the source is exhausted.
+         */
+        boolean fill(@Nonnull Chunk chunk, int size) {
+            while (chunk.size < size) {
+                if (!pull()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the chunk following the given one, pulling the term to put to it if necessary.
+         *
+         * @return the next chunk, or {@code null} if the source is exhausted.
+         */
+        @Nullable
+        Chunk next(@Nonnull Chunk chunk) {
+            if (chunk.next == null && !pull()) {
+                return null;
+            }
+            return chunk.next;
+        }
+
+        private boolean pull() {
+            if (this.terms == null) {
+                return false;
+            }
+            if (this.terms.tryAdvance(this::append)) {
+                return true;
+            }
+            this.terms = null; // Release the exhausted source
+            return false;
+        }
+
+        private void append(@Nonnull PlainTerm term) {
+
+            Chunk tail = this.tail;
+
+            if (tail.size == CHUNK_SIZE) {
+                tail = tail.next = new Chunk();
+                this.tail = tail;
+            }
+
+            tail.terms[tail.size++] = term;
+        }
+
+    }
+
+}
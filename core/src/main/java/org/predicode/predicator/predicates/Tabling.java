@@ -0,0 +1,107 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.Knowns;
+import org.predicode.predicator.Rule;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Tabled predicate calls declaration.
+ *
+ * <p>{@link Solver Solver} memoizes the answers to tabled calls. The answers to each call variant, i.e. to the calls
+ * with the same terms up to variable renaming, are found once and stored in the table. The other calls of the same
+ * variant, including recursive ones, consume the answers from that table instead of applying the rules again. This
+ * makes left-recursive rules terminate, and prevents right-recursive ones from solving the same subgoals over and
+ * over again.</p>
+ *
+ * <p>Tabling is opt-in. Only the calls matching one of the declared rule patterns are tabled.</p>
+ */
+@Immutable
+public final class Tabling {
+
+    private static final Tabling NONE = new Tabling(new Rule.Pattern[0]);
+
+    /**
+     * Returns tabling declaration without tabled calls.
+     *
+     * @return tabling declaration constant.
+     */
+    @Nonnull
+    public static Tabling none() {
+        return NONE;
+    }
+
+    /**
+     * Declares the calls matching the given patterns tabled.
+     *
+     * @param patterns patterns of tabled calls.
+     *
+     * @return new tabling declaration.
+     */
+    @Nonnull
+    public static Tabling of(@Nonnull Rule.Pattern... patterns) {
+        return of(Arrays.asList(patterns));
+    }
+
+    /**
+     * Declares the calls matching the given patterns tabled.
+     *
+     * @param patterns patterns of tabled calls.
+     *
+     * @return new tabling declaration.
+     */
+    @Nonnull
+    public static Tabling of(@Nonnull Iterable<? extends Rule.Pattern> patterns) {
+
+        final ArrayList<Rule.Pattern> list = new ArrayList<>();
+
+        patterns.forEach(list::add);
+
+        if (list.isEmpty()) {
+            return NONE;
+        }
+
+        return new Tabling(list.toArray(new Rule.Pattern[0]));
+    }
+
+    @Nonnull
+    private final Rule.Pattern[] patterns;
+
+    private Tabling(@Nonnull Rule.Pattern[] patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * Whether there are no tabled calls.
+     */
+    public final boolean isEmpty() {
+        return this.patterns.length == 0;
+    }
+
+    /**
+     * Whether the given predicate call is tabled.
+     *
+     * @param call predicate call.
+     * @param knowns known resolutions to match the call against.
+     *
+     * @return {@code true} if the call matches any of the declared patterns, or {@code false} otherwise.
+     */
+    public final boolean isTabled(@Nonnull Predicate.Call call, @Nonnull Knowns knowns) {
+        for (final Rule.Pattern pattern : this.patterns) {
+            if (pattern.tryMatch(call, knowns) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Tabling" + Arrays.toString(this.patterns);
+    }
+
+}
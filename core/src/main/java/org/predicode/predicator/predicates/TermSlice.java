@@ -0,0 +1,131 @@
+package org.predicode.predicator.predicates;
+
+import org.predicode.predicator.terms.PlainTerm;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * Immutable view of the range of predicate call terms.
+ *
+ * <p>All slices of the same call share one term array. Slicing, as well as joining of adjacent slices, is
+ * {@code O(1)} and does not copy the terms.</p>
+ */
+@Immutable
+final class TermSlice extends AbstractList<PlainTerm> implements RandomAccess {
+
+    static final TermSlice EMPTY = new TermSlice(new PlainTerm[0], 0, 0);
+
+    /**
+     * Converts the given terms to slice.
+     *
+     * @param terms terms to convert.
+     *
+     * @return either the given list if it is a slice already, or a slice containing a copy of the given terms.
+     */
+    @Nonnull
+    static TermSlice of(@Nonnull List<? extends PlainTerm> terms) {
+        if (terms instanceof TermSlice) {
+            return (TermSlice) terms;
+        }
+        if (terms.isEmpty()) {
+            return EMPTY;
+        }
+
+        final PlainTerm[] array = terms.toArray(new PlainTerm[0]);
+
+        return new TermSlice(array, 0, array.length);
+    }
+
+    /**
+     * Creates a slice of the given term array.
+     *
+     * <p>The array elements within the slice range should never be modified.</p>
+     *
+     * @param terms term array.
+     * @param from the index of the first term in the slice.
+     * @param to the index after the last term in the slice.
+     *
+     * @return new slice.
+     */
+    @Nonnull
+    static TermSlice of(@Nonnull PlainTerm[] terms, int from, int to) {
+        return from == to ? EMPTY : new TermSlice(terms, from, to);
+    }
+
+    @Nonnull
+    private final PlainTerm[] terms;
+
+    private final int from;
+
+    private final int to;
+
+    private TermSlice(@Nonnull PlainTerm[] terms, int from, int to) {
+        this.terms = terms;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public final PlainTerm get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return this.terms[this.from + index];
+    }
+
+    @Override
+    public final int size() {
+        return this.to - this.from;
+    }
+
+    @Nonnull
+    @Override
+    public final TermSlice subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "Range: [" + fromIndex + ", " + toIndex + "), Size: " + size());
+        }
+        if (fromIndex == 0 && toIndex == size()) {
+            return this;
+        }
+        if (fromIndex == toIndex) {
+            return EMPTY;
+        }
+        return new TermSlice(this.terms, this.from + fromIndex, this.from + toIndex);
+    }
+
+    /**
+     * Joins this slice with the following one.
+     *
+     * @param next the slice following this one.
+     *
+     * @return a slice containing the terms of both slices. This is {@code O(1)} when the slices are adjacent parts
+     * of the same term array.
+     */
+    @Nonnull
+    final TermSlice join(@Nonnull TermSlice next) {
+        if (next.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return next;
+        }
+        if (this.terms == next.terms && this.to == next.from) {
+            return new TermSlice(this.terms, this.from, next.to);
+        }
+
+        final int size = size();
+        final PlainTerm[] joined = new PlainTerm[size + next.size()];
+
+        System.arraycopy(this.terms, this.from, joined, 0, size);
+        System.arraycopy(next.terms, next.from, joined, size, next.size());
+
+        return new TermSlice(joined, 0, joined.length);
+    }
+
+}
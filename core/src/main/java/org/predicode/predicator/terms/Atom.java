@@ -1,11 +1,9 @@
 package org.predicode.predicator.terms;
 
 import jdk.nashorn.internal.ir.annotations.Immutable;
-import org.predicode.predicator.Knowns;
 import org.predicode.predicator.grammar.TermPrinter;
 
 import javax.annotation.Nonnull;
-import java.util.Optional;
 
 import static org.predicode.predicator.grammar.QuotedName.ATOM_NAME;
 import static org.predicode.predicator.grammar.QuotingStyle.ALWAYS_QUOTE;
@@ -41,6 +39,7 @@ public abstract class Atom extends ResolvedTerm {
      * @param name atom name.
      */
     public Atom(@Nonnull String name) {
+        super(TAG_ATOM);
         this.name = name;
     }
 
@@ -62,43 +61,6 @@ public abstract class Atom extends ResolvedTerm {
         return visitor.visitAtom(this, p);
     }
 
-    @Nonnull
-    @Override
-    public final Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-
-        final Atom self = this;
-
-        return term.accept(
-                new PlainTerm.Visitor<Knowns, Optional<Knowns>>() {
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitAtom(@Nonnull Atom atom, @Nonnull Knowns knowns) {
-                        return self.equals(atom) ? Optional.of(knowns) : Optional.empty();
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitVariable(@Nonnull Variable variable, @Nonnull Knowns knowns) {
-                        return knowns.resolve(variable, self);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlaceholder(@Nonnull Placeholder placeholder, @Nonnull Knowns knowns) {
-                        return Optional.of(knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlain(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-                        return Optional.empty();
-                    }
-
-                },
-                knowns);
-    }
-
     @Override
     public void print(@Nonnull TermPrinter out) {
         out.atom(getName());
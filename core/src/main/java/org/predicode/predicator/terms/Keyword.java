@@ -1,15 +1,15 @@
 package org.predicode.predicator.terms;
 
 import jdk.nashorn.internal.ir.annotations.Immutable;
-import org.predicode.predicator.Knowns;
 import org.predicode.predicator.grammar.QuotedName;
 import org.predicode.predicator.grammar.TermPrinter;
 import org.predicode.predicator.predicates.Predicate;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
-import java.util.Optional;
+import java.util.Iterator;
 
+import static java.util.Collections.singleton;
 import static org.predicode.predicator.grammar.QuotedName.*;
 import static org.predicode.predicator.grammar.QuotingStyle.ALWAYS_QUOTE;
 
@@ -99,6 +99,7 @@ public abstract class Keyword extends SignatureTerm {
      * @param kind keyword kind.
      */
     public Keyword(@Nonnull String name, @Nonnull Kind kind) {
+        super(TAG_KEYWORD);
         this.name = name;
         this.kind = kind;
     }
@@ -127,14 +128,14 @@ public abstract class Keyword extends SignatureTerm {
 
     @Nonnull
     @Override
-    public final Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-        return equals(term) ? Optional.of(knowns) : Optional.empty();
+    public final Flux<Expansion> expand(@Nonnull Predicate.Resolver resolver) {
+        return Flux.just(new Expansion(this, resolver.getKnowns()));
     }
 
     @Nonnull
     @Override
-    public final Flux<Expansion> expand(@Nonnull Predicate.Resolver resolver) {
-        return Flux.just(new Expansion(this, resolver.getKnowns()));
+    public final Iterator<Expansion> expansions(@Nonnull Predicate.Resolver resolver) {
+        return singleton(new Expansion(this, resolver.getKnowns())).iterator();
     }
 
     @Nonnull
@@ -0,0 +1,48 @@
+package org.predicode.predicator.terms;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Variable with lazily built name.
+ *
+ * <p>The name is {@link #buildName() built} when requested for the first time. So no string is built for variables
+ * that are never printed, like temporary and rule-local ones.</p>
+ */
+public abstract class LazilyNamedVariable extends Variable {
+
+    @Nullable
+    private String name;
+
+    /**
+     * Constructs lazily named variable.
+     */
+    protected LazilyNamedVariable() {
+    }
+
+    @Nonnull
+    @Override
+    final String name() {
+
+        String name = this.name;
+
+        if (name == null) {
+            this.name = name = buildName();
+        }
+
+        return name;
+    }
+
+    /**
+     * Builds variable name.
+     *
+     * <p>This is called when the name of variable is requested for the first time. It may be called more than once if
+     * the name is requested concurrently.</p>
+     *
+     * @return variable name.
+     */
+    @Nonnull
+    protected abstract String buildName();
+
+}
@@ -13,7 +13,8 @@ import static org.predicode.predicator.terms.Placeholder.placeholder;
 @Immutable
 public abstract class MappedTerm extends PlainTerm {
 
-    MappedTerm() {
+    MappedTerm(int tag) {
+        super(tag);
     }
 
     @Nonnull
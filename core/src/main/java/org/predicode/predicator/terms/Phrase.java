@@ -13,7 +13,6 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.predicode.predicator.grammar.TermPrinter.printTerms;
-import static org.predicode.predicator.terms.Variable.temp;
 
 
 /**
@@ -57,17 +56,12 @@ public class Phrase extends CompoundTerm implements Predicate {
     @Override
     public Flux<Expansion> expand(@Nonnull Resolver resolver) {
         return expansion(resolver)
-                .map(phraseExpansion -> {
-
-                    final Variable tempVar = temp("phrase expansion");
-
-                    return phraseExpansion.resolver.getKnowns().declareLocal(
-                            tempVar,
-                            (local, knowns) -> new Expansion(
-                                    tempVar,
-                                    knowns,
-                                    predicate -> phraseExpansion.definition(local).and(predicate)));
-                });
+                .map(phraseExpansion -> phraseExpansion.resolver.getKnowns().declareTemp(
+                        "phrase expansion",
+                        (tempVar, local, knowns) -> new Expansion(
+                                tempVar,
+                                knowns,
+                                predicate -> phraseExpansion.definition(local).and(predicate))));
     }
 
     /**
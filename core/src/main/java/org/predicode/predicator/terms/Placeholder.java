@@ -1,13 +1,14 @@
 package org.predicode.predicator.terms;
 
 import jdk.nashorn.internal.ir.annotations.Immutable;
-import org.predicode.predicator.Knowns;
 import org.predicode.predicator.grammar.TermPrinter;
 import org.predicode.predicator.predicates.Predicate;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
-import java.util.Optional;
+import java.util.Iterator;
+
+import static java.util.Collections.singleton;
 
 
 /**
@@ -32,40 +33,19 @@ public class Placeholder extends SignatureTerm {
     }
 
     private Placeholder() {
+        super(TAG_PLACEHOLDER);
     }
 
     @Nonnull
     @Override
-    public Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-        return term.accept(
-                new PlainTerm.Visitor<Knowns, Optional<Knowns>>() {
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitMapped(@Nonnull MappedTerm term, @Nonnull Knowns knowns) {
-                        return Optional.of(knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlaceholder(@Nonnull Placeholder placeholder, @Nonnull Knowns knowns) {
-                        return Optional.of(knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlain(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-                        return Optional.empty();
-                    }
-
-                },
-                knowns);
+    public Flux<Expansion> expand(@Nonnull Predicate.Resolver resolver) {
+        return Flux.just(new Expansion(this, resolver.getKnowns()));
     }
 
     @Nonnull
     @Override
-    public Flux<Expansion> expand(@Nonnull Predicate.Resolver resolver) {
-        return Flux.just(new Expansion(this, resolver.getKnowns()));
+    public Iterator<Expansion> expansions(@Nonnull Predicate.Resolver resolver) {
+        return singleton(new Expansion(this, resolver.getKnowns())).iterator();
     }
 
     @Nonnull
@@ -5,6 +5,7 @@ import org.predicode.predicator.Knowns;
 import org.predicode.predicator.Rule;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,33 +28,169 @@ import java.util.Optional;
 @Immutable
 public abstract class PlainTerm extends Term {
 
+    /**
+     * Matches the given call terms against pattern ones.
+     *
+     * @param patternTerms pattern terms.
+     * @param callTerms call terms to match.
+     * @param knowns known resolutions to update.
+     *
+     * @return updated knowns if all the terms match, or empty optional otherwise.
+     */
     @Nonnull
     public static Optional<Knowns> matchTerms(
             @Nonnull List<? extends PlainTerm> patternTerms,
             @Nonnull List<? extends PlainTerm> callTerms,
             @Nonnull Knowns knowns) {
-        if (patternTerms.size() != callTerms.size()) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(tryMatchTerms(patternTerms, callTerms, knowns));
+    }
 
-        int index = 0;
+    /**
+     * Matches the given call terms against pattern ones without allocating anything on mismatch.
+     *
+     * @param patternTerms pattern terms.
+     * @param callTerms call terms to match.
+     * @param knowns known resolutions to update.
+     *
+     * @return updated knowns if all the terms match, or {@code null} otherwise.
+     */
+    @Nullable
+    public static Knowns tryMatchTerms(
+            @Nonnull List<? extends PlainTerm> patternTerms,
+            @Nonnull List<? extends PlainTerm> callTerms,
+            @Nonnull Knowns knowns) {
 
-        for (PlainTerm term : patternTerms) {
+        final int size = patternTerms.size();
 
-            final Optional<Knowns> match = term.match(callTerms.get(index), knowns);
+        if (size != callTerms.size()) {
+            return null;
+        }
 
-            if (!match.isPresent()) {
-                return Optional.empty();
+        for (int i = 0; i < size; ++i) {
+            knowns = patternTerms.get(i).tryMatch(callTerms.get(i), knowns);
+            if (knowns == null) {
+                return null;
             }
+        }
+
+        return knowns;
+    }
+
+    /**
+     * Matches the leading call terms against pattern ones without allocating anything on mismatch.
+     *
+     * <p>Unlike {@link #tryMatchTerms(List, List, Knowns)}, the call may contain more terms than the pattern. The
+     * extra terms are ignored.</p>
+     *
+     * @param patternTerms pattern terms.
+     * @param callTerms call terms to match.
+     * @param knowns known resolutions to update.
+     *
+     * @return updated knowns if all the pattern terms match, or {@code null} otherwise.
+     */
+    @Nullable
+    public static Knowns tryMatchLeadingTerms(
+            @Nonnull List<? extends PlainTerm> patternTerms,
+            @Nonnull List<? extends PlainTerm> callTerms,
+            @Nonnull Knowns knowns) {
+
+        final int size = patternTerms.size();
 
-            knowns = match.get();
-            ++index;
+        if (size > callTerms.size()) {
+            return null;
         }
 
-        return Optional.of(knowns);
+        for (int i = 0; i < size; ++i) {
+            knowns = patternTerms.get(i).tryMatch(callTerms.get(i), knowns);
+            if (knowns == null) {
+                return null;
+            }
+        }
+
+        return knowns;
     }
 
-    PlainTerm() {
+    /**
+     * Keyword {@link #tag tag}.
+     */
+    static final int TAG_KEYWORD = 0;
+
+    /**
+     * Atom {@link #tag tag}.
+     */
+    static final int TAG_ATOM = 1;
+
+    /**
+     * Value {@link #tag tag}.
+     */
+    static final int TAG_VALUE = 2;
+
+    /**
+     * Variable {@link #tag tag}.
+     */
+    static final int TAG_VARIABLE = 3;
+
+    /**
+     * Placeholder {@link #tag tag}.
+     */
+    static final int TAG_PLACEHOLDER = 4;
+
+    private static final int NUM_TAGS = 5;
+
+    private static final byte MATCH_NONE = 0;
+    private static final byte MATCH_ANY = 1;
+    private static final byte MATCH_EQUAL = 2;
+    private static final byte MATCH_VALUE = 3;
+    private static final byte MATCH_RESOLVE = 4;
+    private static final byte MATCH_MAP = 5;
+
+    /**
+     * The way the call term of one kind matches the pattern term of another one.
+     *
+     * <p>Indexed by {@code pattern.tag * NUM_TAGS + term.tag}.</p>
+     */
+    private static final byte[] MATCH_TABLE = {
+            // keyword    atom           value          variable       placeholder    <- call term / pattern term
+            MATCH_EQUAL,  MATCH_NONE,    MATCH_NONE,    MATCH_NONE,    MATCH_NONE,    // keyword
+            MATCH_NONE,   MATCH_EQUAL,   MATCH_NONE,    MATCH_RESOLVE, MATCH_ANY,     // atom
+            MATCH_NONE,   MATCH_NONE,    MATCH_VALUE,   MATCH_RESOLVE, MATCH_ANY,     // value
+            MATCH_NONE,   MATCH_MAP,     MATCH_MAP,     MATCH_MAP,     MATCH_ANY,     // variable
+            MATCH_NONE,   MATCH_ANY,     MATCH_ANY,     MATCH_ANY,     MATCH_ANY,     // placeholder
+    };
+
+    /**
+     * Matches the call term against the pattern one.
+     *
+     * <p>The match is driven by the {@link #MATCH_TABLE table} indexed by the pair of term {@link #tag tags}. So it
+     * does not involve any visitors.</p>
+     */
+    @Nullable
+    private static Knowns matchPair(@Nonnull PlainTerm pattern, @Nonnull PlainTerm term, @Nonnull Knowns knowns) {
+        switch (MATCH_TABLE[pattern.tag * NUM_TAGS + term.tag]) {
+        case MATCH_ANY:
+            return knowns;
+        case MATCH_EQUAL:
+            return pattern.equals(term) ? knowns : null;
+        case MATCH_VALUE:
+            return ((Value<?>) term).tryValueMatch((Value<?>) pattern, knowns);
+        case MATCH_RESOLVE:
+            return knowns.tryResolve((Variable) term, (ResolvedTerm) pattern);
+        case MATCH_MAP:
+            return knowns.tryMap((Variable) pattern, (MappedTerm) term);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Term kind tag.
+     *
+     * <p>This is one of {@code TAG_XXX} constants. It never changes for the same term.</p>
+     */
+    private final int tag;
+
+    PlainTerm(int tag) {
+        this.tag = tag;
     }
 
     /**
@@ -62,19 +199,58 @@ public abstract class PlainTerm extends Term {
     @Nonnull
     public abstract SignatureTerm getSignature();
 
+    /**
+     * Whether this term can be used as an index key.
+     *
+     * <p>An index key matches only the terms {@link #equals(Object) equal} to it, as well as variables and
+     * placeholders. This is always true for keywords and atoms. Values are index keys when their
+     * {@link Value#tryValueMatch(Value, Knowns) matching} is consistent with equality.</p>
+     *
+     * <p>Rule bases may use index keys to select the rules without matching the others.</p>
+     *
+     * @return {@code true} if this term can be used as index key, or {@code false} otherwise.
+     */
+    public boolean isIndexKey() {
+        return this.tag == TAG_KEYWORD || this.tag == TAG_ATOM;
+    }
+
     /**
      * Attempts to match against another term.
      *
      * <p>This method is called for the terms of the {@link Rule#getCondition() rule condition} with corresponding
      * query term as argument.</p>
      *
+     * <p>By default, this method delegates to {@link #tryMatch(PlainTerm, Knowns)}. The rules are matched with the
+     * latter, so override it rather than this one to customize matching.</p>
+     *
      * @param term a term to match against.
      * @param knowns known resolutions to update.
      *
      * @return updated knowns if the term matches, or empty optional otherwise.
      */
     @Nonnull
-    public abstract Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns);
+    public Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
+        return Optional.ofNullable(tryMatch(term, knowns));
+    }
+
+    /**
+     * Attempts to match against another term without allocating anything on mismatch.
+     *
+     * <p>This is the same as {@link #match(PlainTerm, Knowns)}, except it returns {@code null} when the term does not
+     * match.</p>
+     *
+     * <p>By default, the match is driven by the pair of term kinds. Subclasses may override this method to customize
+     * matching.</p>
+     *
+     * @param term a term to match against.
+     * @param knowns known resolutions to update.
+     *
+     * @return updated knowns if the term matches, or {@code null} otherwise.
+     */
+    @Nullable
+    public Knowns tryMatch(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
+        return matchPair(this, term, knowns);
+    }
 
     @Nonnull
     public abstract <P, R> R accept(@Nonnull Visitor<P, R> visitor, @Nonnull P p);
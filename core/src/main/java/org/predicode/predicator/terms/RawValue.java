@@ -3,6 +3,7 @@ package org.predicode.predicator.terms;
 import org.predicode.predicator.Knowns;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.Optional;
 
@@ -28,10 +29,21 @@ final class RawValue<T> extends Value<T> {
         return this.value;
     }
 
+    @Override
+    public boolean isIndexKey() {
+        return true;
+    }
+
     @Nonnull
     @Override
     protected Optional<Knowns> valueMatch(@Nonnull Value<?> other, @Nonnull Knowns knowns) {
-        return equals(other) ? Optional.of(knowns) : Optional.empty();
+        return Optional.ofNullable(tryValueMatch(other, knowns));
+    }
+
+    @Nullable
+    @Override
+    protected Knowns tryValueMatch(@Nonnull Value<?> other, @Nonnull Knowns knowns) {
+        return equals(other) ? knowns : null;
     }
 
     @Override
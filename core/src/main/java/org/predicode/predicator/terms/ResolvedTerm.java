@@ -5,6 +5,9 @@ import org.predicode.predicator.predicates.Predicate;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
+import java.util.Iterator;
+
+import static java.util.Collections.singleton;
 
 
 /**
@@ -13,7 +16,8 @@ import javax.annotation.Nonnull;
 @Immutable
 public abstract class ResolvedTerm extends MappedTerm {
 
-    ResolvedTerm() {
+    ResolvedTerm(int tag) {
+        super(tag);
     }
 
     @Nonnull
@@ -31,6 +35,12 @@ public abstract class ResolvedTerm extends MappedTerm {
         return Flux.just(new Expansion(this, resolver.getKnowns()));
     }
 
+    @Nonnull
+    @Override
+    public final Iterator<Expansion> expansions(@Nonnull Predicate.Resolver resolver) {
+        return singleton(new Expansion(this, resolver.getKnowns())).iterator();
+    }
+
     public interface Visitor<P, R> {
 
         @Nonnull
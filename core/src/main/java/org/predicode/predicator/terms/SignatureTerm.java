@@ -17,7 +17,8 @@ import javax.annotation.concurrent.Immutable;
 @Immutable
 public abstract class SignatureTerm extends PlainTerm {
 
-    SignatureTerm() {
+    SignatureTerm(int tag) {
+        super(tag);
     }
 
     @Nonnull
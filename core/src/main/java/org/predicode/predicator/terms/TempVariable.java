@@ -3,13 +3,88 @@ package org.predicode.predicator.terms;
 import jdk.nashorn.internal.ir.annotations.Immutable;
 
 import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Immutable
-final class TempVariable extends Variable {
+final class TempVariable extends LazilyNamedVariable {
+
+    /**
+     * The number of identifiers each thread reserves at once for {@link #next(String) unnumbered} temporary variables.
+     */
+    private static final int ID_BLOCK_SIZE = 1 << 12;
+
+    /**
+     * The last identifier reserved by any thread. Unnumbered temporary variables have negative identifiers.
+     */
+    private static final AtomicLong reservedIds = new AtomicLong();
+
+    private static final ThreadLocal<IdBlock> idBlock = ThreadLocal.withInitial(IdBlock::new);
+
+    /**
+     * Creates unnumbered temporary variable.
+     *
+     * <p>Its identifier is unique within JVM. It is drawn from the block of identifiers reserved by the current
+     * thread. So the threads contend only when the block is exhausted.</p>
+     */
+    @Nonnull
+    static TempVariable next(@Nonnull String prefix) {
+        return new TempVariable(prefix, idBlock.get().next());
+    }
+
+    @Nonnull
+    private final String prefix;
+
+    private final long id;
+
+    TempVariable(@Nonnull String prefix, long id) {
+        this.prefix = prefix;
+        this.id = id;
+    }
+
+    @Nonnull
+    @Override
+    protected String buildName() {
+        return this.prefix + ' ' + (this.id < 0 ? -this.id : this.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final TempVariable that = (TempVariable) o;
+
+        if (this.id != that.id) {
+            return false;
+        }
+
+        return this.prefix.equals(that.prefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.id);
+    }
+
+    private static final class IdBlock {
+
+        private long next;
+
+        private long limit;
+
+        long next() {
+            if (this.next == this.limit) {
+                this.limit = reservedIds.addAndGet(ID_BLOCK_SIZE);
+                this.next = this.limit - ID_BLOCK_SIZE;
+            }
+            return -(++this.next);
+        }
 
-    TempVariable(@Nonnull String name) {
-        super(name);
     }
 
 }
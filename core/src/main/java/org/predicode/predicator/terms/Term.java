@@ -7,6 +7,7 @@ import org.predicode.predicator.grammar.TermPrinter;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
+import java.util.Iterator;
 import java.util.function.BiFunction;
 import java.util.function.UnaryOperator;
 
@@ -42,6 +43,21 @@ public abstract class Term {
     @Nonnull
     public abstract Flux<Expansion> expand(@Nonnull Predicate.Resolver resolver);
 
+    /**
+     * Expands this term synchronously.
+     *
+     * <p>This is used by {@link org.predicode.predicator.predicates.Solver pull-based solver}.</p>
+     *
+     * @param resolver predicate resolver instance to resolve/expand against.
+     *
+     * @return an iterator over this term expansions. By default it pulls them from {@link #expand(Predicate.Resolver)
+     * flux}.
+     */
+    @Nonnull
+    public Iterator<Expansion> expansions(@Nonnull Predicate.Resolver resolver) {
+        return expand(resolver).toIterable(1).iterator();
+    }
+
     /**
      * Prints this term representation with the given term printer.
      *
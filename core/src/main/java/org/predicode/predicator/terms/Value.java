@@ -4,13 +4,14 @@ import org.predicode.predicator.Knowns;
 import org.predicode.predicator.grammar.TermPrinter;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Optional;
 
 
 /**
  * Arbitrary value term.
  *
- * <p>Values match only {@link #valueMatch(Value, Knowns) matching values} and can be mapped to variables.</p>
+ * <p>Values match only {@link #tryValueMatch(Value, Knowns) matching values} and can be mapped to variables.</p>
  */
 public abstract class Value<T> extends ResolvedTerm {
 
@@ -26,41 +27,11 @@ public abstract class Value<T> extends ResolvedTerm {
         return new RawValue<>(value);
     }
 
-    @Nonnull
-    @Override
-    public Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-
-        final Value<?> self = this;
-
-        return term.accept(
-                new PlainTerm.Visitor<Knowns, Optional<Knowns>>() {
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitValue(@Nonnull Value<?> value, @Nonnull Knowns knowns) {
-                        return value.valueMatch(self, knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitVariable(@Nonnull Variable variable, @Nonnull Knowns knowns) {
-                        return knowns.resolve(variable, self);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlaceholder(@Nonnull Placeholder placeholder, @Nonnull Knowns knowns) {
-                        return Optional.of(knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlain(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-                        return Optional.empty();
-                    }
-
-                },
-                knowns);
+    /**
+     * Constructs value.
+     */
+    protected Value() {
+        super(TAG_VALUE);
     }
 
     @Nonnull
@@ -80,7 +51,7 @@ public abstract class Value<T> extends ResolvedTerm {
     /**
      * Attempts to match against another value.
      *
-     * <p>This method is called from {@link #match(PlainTerm, Knowns)} one when the term to match is a value.</p>
+     * <p>This method is called from {@link #tryValueMatch(Value, Knowns)} one by default.</p>
      *
      * @param other another value to match against.
      * @param knowns known resolutions to update.
@@ -90,4 +61,20 @@ public abstract class Value<T> extends ResolvedTerm {
     @Nonnull
     protected abstract Optional<Knowns> valueMatch(@Nonnull Value<?> other, @Nonnull Knowns knowns);
 
+    /**
+     * Attempts to match against another value without allocating anything on mismatch.
+     *
+     * <p>This method is called from {@link PlainTerm#tryMatch(PlainTerm, Knowns)} one when both the pattern term and
+     * the term to match are values. By default, it delegates to {@link #valueMatch(Value, Knowns)}.</p>
+     *
+     * @param other another value to match against.
+     * @param knowns known resolutions to update.
+     *
+     * @return updated knowns if the term matches, or {@code null} otherwise.
+     */
+    @Nullable
+    protected Knowns tryValueMatch(@Nonnull Value<?> other, @Nonnull Knowns knowns) {
+        return valueMatch(other, knowns).orElse(null);
+    }
+
 }
@@ -7,11 +7,12 @@ import org.predicode.predicator.predicates.Predicate;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Iterator;
 
+import static java.util.Collections.singleton;
 import static org.predicode.predicator.grammar.QuotedName.VARIABLE_NAME;
 import static org.predicode.predicator.grammar.QuotingStyle.ALWAYS_QUOTE;
 
@@ -26,8 +27,6 @@ import static org.predicode.predicator.grammar.QuotingStyle.ALWAYS_QUOTE;
  */
 public abstract class Variable extends MappedTerm {
 
-    private static Random tempNameRandom = new Random();
-
     /**
      * Creates a named {@link Variable variable}.
      *
@@ -44,17 +43,37 @@ public abstract class Variable extends MappedTerm {
     /**
      * Create temporary {@link Variable variable}.
      *
-     * <p>Temporary variables are compared by their identity. In contrast to {@link #named(String)
-     * named variables} the name of temporary one is used only for its representation.</p>
+     * <p>Each call creates a variable distinct from any other one. In contrast to {@link #named(String)
+     * named variables} the name of temporary one is used only for its representation. It is built on request.</p>
+     *
+     * <p>Prefer {@link Knowns#declareTemp(String, Knowns.TempHandler)} when resolving predicates. It
+     * numbers temporary variables deterministically.</p>
      *
      * @param prefix temporary variable name prefix.
      */
     @Nonnull
     public static Variable temp(@Nonnull String prefix) {
-        return new TempVariable(prefix + " " + tempNameRandom.nextInt());
+        return TempVariable.next(prefix);
     }
 
+    /**
+     * Create numbered temporary {@link Variable variable}.
+     *
+     * <p>Temporary variables with the same prefix and number are equal to each other. The name of temporary variable
+     * is used only for its representation. It is built on request.</p>
+     *
+     * @param prefix temporary variable name prefix.
+     * @param id non-negative temporary variable number.
+     */
     @Nonnull
+    public static Variable temp(@Nonnull String prefix, long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Temporary variable number can not be negative: " + id);
+        }
+        return new TempVariable(prefix, id);
+    }
+
+    @Nullable
     private final String name;
 
     /**
@@ -63,50 +82,35 @@ public abstract class Variable extends MappedTerm {
      * @param name variable name.
      */
     public Variable(@Nonnull String name) {
+        super(TAG_VARIABLE);
         this.name = name;
     }
 
+    /**
+     * Constructs {@link LazilyNamedVariable lazily named variable}.
+     */
+    Variable() {
+        super(TAG_VARIABLE);
+        this.name = null;
+    }
+
     /**
      * Variable name.
      *
      * <p>This is used generally for representation only.</p>
      *
-     * @return {@code name} passed to the constructor.
+     * @return {@code name} passed to the constructor, or the one {@link LazilyNamedVariable#buildName() built} on
+     * request.
      */
     @Nonnull
     public final String getName() {
-        return this.name;
+        return name();
     }
 
     @Nonnull
-    @Override
-    public Optional<Knowns> match(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-
-        final Variable self = this;
-
-        return term.accept(
-                new PlainTerm.Visitor<Knowns, Optional<Knowns>>() {
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitMapped(@Nonnull MappedTerm term, @Nonnull Knowns knowns) {
-                        return knowns.map(self, term);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlaceholder(@Nonnull Placeholder placeholder, @Nonnull Knowns knowns) {
-                        return Optional.of(knowns);
-                    }
-
-                    @Nonnull
-                    @Override
-                    public Optional<Knowns> visitPlain(@Nonnull PlainTerm term, @Nonnull Knowns knowns) {
-                        return Optional.empty();
-                    }
-
-                },
-                knowns);
+    String name() {
+        assert this.name != null;
+        return this.name;
     }
 
     @Nonnull
@@ -115,6 +119,12 @@ public abstract class Variable extends MappedTerm {
         return Flux.just(resolver.getKnowns().<Expansion>mapping(this, Expansion::new));
     }
 
+    @Nonnull
+    @Override
+    public Iterator<Expansion> expansions(@Nonnull Predicate.Resolver resolver) {
+        return singleton(resolver.getKnowns().<Expansion>mapping(this, Expansion::new)).iterator();
+    }
+
     @Nonnull
     @Override
     public final <P, R> R accept(@Nonnull Visitor<P, R> visitor, @Nonnull P p) {
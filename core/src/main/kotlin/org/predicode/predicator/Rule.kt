@@ -22,7 +22,7 @@ private class MatchingRuleSelector(private val rules: Array<out Rule>) : Rule.Se
 
     override fun matchingRules(call: Predicate.Call, knowns: Knowns) =
             rules.toFlux().flatMap { rule ->
-                Mono.justOrEmpty(rule.match(call, knowns))
+                Mono.justOrEmpty(rule.tryMatch(call, knowns))
             }
 
     override fun equals(other: Any?): Boolean {
@@ -0,0 +1,87 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.predicates.newPredicateCall
+import org.predicode.predicator.terms.*
+
+
+class AdaptiveRuleBaseTest {
+
+    private val parents = (0 until 100).map { i ->
+        newRulePattern { k("parent"); a("child $i"); k("of"); a("parent ${i / 2}") }.fact()
+    }
+
+    @Test
+    fun `does not index before enough calls`() {
+
+        val base = AdaptiveRuleBase.of(parents)
+
+        repeat(AdaptiveRuleBase.MIN_KEYED_CALLS - 1) {
+            base.candidates(newPredicateCall { k("parent"); v("X"); k("of"); a("parent 7") })
+        }
+
+        assertThat(base.indexes).toBe(emptyList())
+    }
+
+    @Test
+    fun `indexes bound argument`() {
+
+        val base = AdaptiveRuleBase.of(parents)
+        val call = newPredicateCall { k("parent"); v("X"); k("of"); a("parent 7") }
+
+        repeat(AdaptiveRuleBase.MIN_KEYED_CALLS) {
+            base.candidates(call)
+        }
+
+        assertThat(base.candidates(call).toList()).toBe(listOf(parents[14], parents[15]))
+        assertThat(base.indexes.map { it.position }).toBe(listOf(3))
+        assertThat(base.indexes[0].keys).toBe(50)
+        assertThat(base.indexes[0].lookups).toBe(2L)
+        assertThat(base.indexes[0].hitRate).toBe(1.0)
+    }
+
+    @Test
+    fun `does not index non-selective position`() {
+
+        val base = AdaptiveRuleBase.of(parents)
+        val call = newPredicateCall { k("parent"); a("child 3"); k("of"); v("Y") }
+
+        repeat(AdaptiveRuleBase.MIN_KEYED_CALLS + 1) {
+            base.candidates(call)
+        }
+
+        assertThat(base.indexes.map { it.position }).toBe(listOf(1))
+        assertThat(base.candidates(call).toList()).toBe(listOf(parents[3]))
+    }
+
+    @Test
+    fun `selects the smallest bucket`() {
+
+        val base = AdaptiveRuleBase.of(parents)
+        val call = newPredicateCall { k("parent"); a("child 3"); k("of"); a("parent 1") }
+
+        repeat(AdaptiveRuleBase.MIN_KEYED_CALLS) {
+            base.candidates(call)
+        }
+
+        assertThat(base.indexes.map { it.position }).toBe(listOf(1, 3))
+        assertThat(base.candidates(call).toList()).toBe(listOf(parents[3]))
+    }
+
+    @Test
+    fun `counts index misses`() {
+
+        val base = AdaptiveRuleBase.of(parents)
+
+        repeat(AdaptiveRuleBase.MIN_KEYED_CALLS) {
+            base.candidates(newPredicateCall { k("parent"); v("X"); k("of"); a("parent 1") })
+        }
+
+        assertThat(base.candidates(newPredicateCall { k("parent"); v("X"); k("of"); a("nobody") }).toList())
+                .toBe(emptyList())
+        assertThat(base.indexes[0].hitRate).toBe(0.5)
+    }
+
+}
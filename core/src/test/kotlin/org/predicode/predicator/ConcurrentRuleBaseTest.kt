@@ -0,0 +1,134 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.predicates.TestPredicateResolver
+import org.predicode.predicator.predicates.newPredicateCall
+import org.predicode.predicator.terms.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+
+class ConcurrentRuleBaseTest {
+
+    @Test
+    fun `adds and removes rules`() {
+
+        val rule1 = newRulePattern { a("a"); a("b") }.fact()
+        val rule2 = newRulePattern { v("X"); a("b") }.fact()
+        val base = ConcurrentRuleBase.create()
+
+        assertThat(base.add(rule1)).toBe(true)
+        assertThat(base.add(rule2)).toBe(true)
+        assertThat(base.add(rule1)).toBe(false)
+        assertThat(base.version()).toBe(2L)
+        assertThat(base.candidates(newPredicateCall { a("a"); a("b") }).toList()).toBe(listOf(rule1, rule2))
+
+        assertThat(base.remove(rule1)).toBe(true)
+        assertThat(base.remove(rule1)).toBe(false)
+        assertThat(base.version()).toBe(3L)
+        assertThat(base.candidates(newPredicateCall { a("a"); a("b") }).toList()).toBe(listOf(rule2))
+    }
+
+    @Test
+    fun `updates in batch`() {
+
+        val rules = (0 until 100).map { i -> newRulePattern { a("fact $i") }.fact() }
+        val base = ConcurrentRuleBase.of(rules.subList(0, 50))
+
+        assertThat(base.version()).toBe(1L)
+        assertThat(base.update { batch -> rules.subList(50, 100).forEach { batch.add(it) } }).toBe(2L)
+        assertThat(base.size()).toBe(100)
+        assertThat(base.update { batch -> batch.remove(rules[0]).add(rules[0]) }).toBe(3L)
+        assertThat(base.candidates(newPredicateCall { a("fact 0") }).toList()).toBe(listOf(rules[0]))
+        assertThat(base.candidates(newPredicateCall { v("X") }).toList().size).toBe(100)
+        assertThat(base.candidates(newPredicateCall { v("X") }).last()).toBe(rules[0])
+    }
+
+    @Test
+    fun `does not change version when batch changes nothing`() {
+
+        val rule1 = newRulePattern { a("a") }.fact()
+        val rule2 = newRulePattern { a("b") }.fact()
+        val base = ConcurrentRuleBase.of(rule1)
+
+        assertThat(base.update { batch -> batch.add(rule2).remove(rule2) }).toBe(1L)
+        assertThat(base.update { batch -> batch.add(rule1) }).toBe(1L)
+        assertThat(base.candidates(newPredicateCall { v("X") }).toList()).toBe(listOf(rule1))
+    }
+
+    @Test
+    fun `pins snapshot`() {
+
+        val rule1 = newRulePattern { a("a") }.fact()
+        val rule2 = newRulePattern { v("X") }.fact()
+        val base = ConcurrentRuleBase.of(rule1)
+        val snapshot = base.snapshot()
+
+        base.add(rule2)
+        base.remove(rule1)
+
+        assertThat(snapshot.version()).toBe(1L)
+        assertThat(snapshot.candidates(newPredicateCall { a("a") }).toList()).toBe(listOf(rule1))
+        assertThat(base.snapshot().version()).toBe(3L)
+        assertThat(base.candidates(newPredicateCall { a("a") }).toList()).toBe(listOf(rule2))
+    }
+
+    @Test
+    fun `resolves against snapshot`() {
+
+        val rule1 = newRulePattern { a("a") }.fact()
+        val base = ConcurrentRuleBase.of(rule1)
+        val resolver = TestPredicateResolver(Knowns.none()).withSelector(base)
+
+        base.add(newRulePattern { v("X") }.fact())
+
+        assertThat(resolver.matchingRules(newPredicateCall { a("a") }).map { it.rule }.collectList().block())
+                .toBe(listOf(rule1))
+    }
+
+    @Test
+    fun `reads while writing`() {
+
+        val base = ConcurrentRuleBase.of(newRulePattern { k("stable") }.fact())
+        val executor = Executors.newFixedThreadPool(4)
+
+        try {
+
+            val writer = executor.submit(Callable {
+                for (i in 0 until 1000) {
+                    base.update { batch ->
+                        for (j in 0 until 10) {
+                            batch.add(newRulePattern { k("fact"); raw(i * 10 + j) }.fact())
+                        }
+                    }
+                }
+            })
+            val readers = (0 until 3).map {
+                executor.submit(Callable {
+                    var seen = 0
+                    while (!writer.isDone) {
+                        assertThat(base.candidates(newPredicateCall { k("stable") }).size).toBe(1)
+
+                        val count = base.candidates(newPredicateCall { k("fact"); v("X") }).size
+
+                        assertThat(count % 10).toBe(0)
+                        assertThat(count >= seen).toBe(true)
+                        seen = count
+                    }
+                })
+            }
+
+            writer.get(1, TimeUnit.MINUTES)
+            readers.forEach { it.get(1, TimeUnit.MINUTES) }
+        } finally {
+            executor.shutdown()
+        }
+
+        assertThat(base.size()).toBe(10001)
+        assertThat(base.version()).toBe(1001L)
+    }
+
+}
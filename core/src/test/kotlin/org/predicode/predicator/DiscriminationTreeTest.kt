@@ -0,0 +1,90 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.predicates.Predicate
+import org.predicode.predicator.predicates.newPredicateCall
+import org.predicode.predicator.terms.*
+import java.util.*
+
+
+class DiscriminationTreeTest {
+
+    private val knowns = Knowns.none()
+
+    @Test
+    fun `selects rules by pattern terms`() {
+
+        val rule1 = newRulePattern { k("edge"); a("a"); a("b") }.fact()
+        val rule2 = newRulePattern { k("edge"); a("b"); a("c") }.fact()
+        val rule3 = newRulePattern { k("path"); a("a"); a("b") }.fact()
+        val tree = DiscriminationTree.of(rule1, rule2, rule3)
+
+        assertThat(tree.candidates(newPredicateCall { k("edge"); a("b"); a("c") }).toList())
+                .toBe(listOf(rule2))
+        assertThat(tree.candidates(newPredicateCall { k("edge"); a("b"); a("d") }).toList())
+                .toBe(emptyList())
+    }
+
+    @Test
+    fun `treats variables and placeholders as wildcards`() {
+
+        val rule1 = newRulePattern { k("edge"); v("X"); a("b") }.fact()
+        val rule2 = newRulePattern { k("edge"); a("b"); term(Placeholder.placeholder()) }.fact()
+        val rule3 = newRulePattern { k("edge"); a("c"); a("b") }.fact()
+        val tree = DiscriminationTree.of(rule1, rule2, rule3)
+
+        assertThat(tree.candidates(newPredicateCall { k("edge"); a("b"); a("b") }).toList())
+                .toBe(listOf(rule1, rule2))
+        assertThat(tree.candidates(newPredicateCall { k("edge"); v("Y"); a("b") }).toList())
+                .toBe(listOf(rule1, rule2, rule3))
+        assertThat(matchingRules(tree, newPredicateCall { k("edge"); a("c"); a("b") }))
+                .toBe(listOf(rule1, rule3))
+    }
+
+    @Test
+    fun `selects prefix patterns`() {
+
+        val rule1 = newRulePattern { k("edge"); a("a") }.fact()
+        val rule2 = newRulePrefixPattern { k("edge") }.fact()
+        val rule3 = newRulePrefixPattern { k("path") }.fact()
+        val rule4 = newRulePrefixPattern { }.fact()
+        val tree = DiscriminationTree.of(rule1, rule2, rule3, rule4)
+
+        assertThat(tree.candidates(newPredicateCall { k("edge"); a("a") }).toList())
+                .toBe(listOf(rule1, rule2, rule4))
+        assertThat(tree.candidates(newPredicateCall { k("edge"); a("a"); a("b"); a("c") }).toList())
+                .toBe(listOf(rule2, rule4))
+    }
+
+    @Test
+    fun `selects prefix patterns for infinite call`() {
+
+        val rule1 = newRulePrefixPattern { a("a"); a("a") }.fact()
+        val rule2 = newRulePattern { a("a") }.fact()
+        val rule3 = newRulePrefixPattern { a("b") }.fact()
+        val tree = DiscriminationTree.of(rule1, rule2, rule3)
+        val call = Predicate.infiniteCall { length ->
+            Optional.of(Predicate.prefix(Collections.nCopies(length, Atom.named("a")), Predicate.emptyCall()))
+        }
+
+        assertThat(tree.candidates(call).toList()).toBe(listOf(rule1))
+    }
+
+    @Test
+    fun `selects facts among many`() {
+
+        val facts = (0 until 100_000).map { i -> newRulePattern { k("fact"); a("key ${i % 1000}"); raw(i) }.fact() }
+        val tree = DiscriminationTree.of(facts)
+
+        assertThat(tree.candidates(newPredicateCall { k("fact"); a("key 123"); raw(12123) }).toList())
+                .toBe(listOf(facts[12123]))
+        assertThat(tree.candidates(newPredicateCall { k("fact"); a("key 123"); v("X") }).size)
+                .toBe(100)
+    }
+
+    private fun matchingRules(tree: DiscriminationTree, call: Predicate.Call) =
+            tree.matchingRules(call, knowns).map { it.rule }.collectList().block()
+
+}
@@ -0,0 +1,136 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.isSameAs
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+
+
+class HashTrieTest {
+
+    @Test
+    fun `is empty initially`() {
+
+        val trie = HashTrie.empty<String, Int>()
+
+        assertThat(trie.size()).toBe(0)
+        assertThat(trie.isEmpty).toBe(true)
+        assertThat(trie.get("key")).toBe(null)
+    }
+
+    @Test
+    fun `puts values`() {
+
+        val trie = HashTrie.empty<String, Int>()
+                .put("one", 1)
+                .put("two", 2)
+
+        assertThat(trie.size()).toBe(2)
+        assertThat(trie.get("one")).toBe(1)
+        assertThat(trie.get("two")).toBe(2)
+    }
+
+    @Test
+    fun `does not update the same value`() {
+
+        val value = "value"
+        val trie = HashTrie.empty<String, String>().put("key", value)
+
+        assertThat(trie.put("key", value)).isSameAs(trie)
+    }
+
+    @Test
+    fun `replaces values`() {
+
+        val trie = HashTrie.empty<String, Int>()
+                .put("key", 1)
+                .put("key", 2)
+
+        assertThat(trie.size()).toBe(1)
+        assertThat(trie.get("key")).toBe(2)
+    }
+
+    @Test
+    fun `does not modify original`() {
+
+        val original = HashTrie.empty<String, Int>().put("one", 1)
+        val updated = original.put("one", 11).put("two", 2)
+
+        assertThat(original.size()).toBe(1)
+        assertThat(original.get("one")).toBe(1)
+        assertThat(original.get("two")).toBe(null)
+        assertThat(updated.get("one")).toBe(11)
+        assertThat(updated.get("two")).toBe(2)
+    }
+
+    @Test
+    fun `removes values`() {
+
+        val trie = HashTrie.empty<String, Int>()
+                .put("one", 1)
+                .put("two", 2)
+                .remove("one")
+
+        assertThat(trie.size()).toBe(1)
+        assertThat(trie.get("one")).toBe(null)
+        assertThat(trie.get("two")).toBe(2)
+        assertThat(trie.remove("absent")).isSameAs(trie)
+        assertThat(trie.remove("two").isEmpty).toBe(true)
+    }
+
+    @Test
+    fun `handles hash collisions`() {
+
+        val keys = (0 until 100).map { Collision(it) }
+        var trie = HashTrie.empty<Collision, Int>()
+
+        keys.forEach { trie = trie.put(it, it.id) }
+
+        assertThat(trie.size()).toBe(keys.size)
+        keys.forEach { assertThat(trie.get(it)).toBe(it.id) }
+
+        keys.filter { it.id % 2 == 0 }.forEach { trie = trie.remove(it) }
+
+        assertThat(trie.size()).toBe(keys.size / 2)
+        keys.forEach { assertThat(trie.get(it)).toBe(if (it.id % 2 == 0) null else it.id) }
+    }
+
+    @Test
+    fun `holds thousands of entries`() {
+
+        val size = 10_000
+        var trie = HashTrie.empty<Int, Int>()
+        val snapshots = mutableListOf<HashTrie<Int, Int>>()
+
+        for (i in 0 until size) {
+            trie = trie.put(i, i * 2)
+            if (i % 1000 == 0) {
+                snapshots.add(trie)
+            }
+        }
+
+        assertThat(trie.size()).toBe(size)
+        for (i in 0 until size) {
+            assertThat(trie.get(i)).toBe(i * 2)
+        }
+        snapshots.forEachIndexed { index, snapshot ->
+            assertThat(snapshot.size()).toBe(index * 1000 + 1)
+            assertThat(snapshot.get(index * 1000 + 1)).toBe(null)
+        }
+
+        val visited = mutableMapOf<Int, Int>()
+
+        trie.forEach { key, value -> visited[key] = value }
+
+        assertThat(visited.size).toBe(size)
+    }
+
+    private class Collision(val id: Int) {
+
+        override fun hashCode() = id % 3
+
+        override fun equals(other: Any?) = other is Collision && other.id == id
+
+    }
+
+}
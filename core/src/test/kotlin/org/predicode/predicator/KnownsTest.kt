@@ -1,13 +1,16 @@
 package org.predicode.predicator
 
 import ch.tutteli.atrium.api.cc.en_GB.isSameAs
+import ch.tutteli.atrium.api.cc.en_GB.notToBe
 import ch.tutteli.atrium.api.cc.en_GB.toBe
 import ch.tutteli.atrium.api.cc.en_GB.toThrow
 import ch.tutteli.atrium.verbs.assertThat
 import ch.tutteli.atrium.verbs.expect
 import org.junit.jupiter.api.Nested
 import org.junit.jupiter.api.Test
+import org.predicode.predicator.predicates.Predicate
 import org.predicode.predicator.terms.Atom
+import org.predicode.predicator.terms.Keyword
 import org.predicode.predicator.terms.Variable
 import org.predicode.predicator.testutils.isEmpty
 import org.predicode.predicator.testutils.notToBeEmpty
@@ -97,6 +100,368 @@ class KnownsTest {
             }
         }
 
+        @Test
+        fun `does not alias variable to itself`() {
+
+            val localVar1 = Variable.named("localVar1")
+            val localVar2 = Variable.named("localVar2")
+            val queryVar1 = Variable.named("queryVar1")
+            val queryVar2 = Variable.named("queryVar2")
+            val resolution = Atom.named("resolution")
+
+            var knowns = Knowns.forVariables(queryVar1, queryVar2)
+                    .map(localVar1, queryVar1).get()
+                    .map(localVar2, queryVar2).get()
+
+            knowns = knowns.map(localVar1, queryVar2).get() // Alias queryVar1 -> queryVar2
+            knowns = knowns.map(localVar2, queryVar1).get() // Already aliased
+
+            assertThat(knowns.resolve(queryVar2, resolution)).notToBeEmpty {
+                assertThat(subject.resolution(queryVar1).aliased())
+                        .toContain(queryVar2)
+                assertThat(subject.resolution(queryVar2).value())
+                        .toContain(resolution)
+            }
+        }
+
+        @Test
+        fun `resolves long alias chains`() {
+
+            val variables = (0 until 10_000).map { Variable.named("var$it") }
+            val resolution = Atom.named("resolution")
+            var knowns = Knowns.forVariables(*variables.toTypedArray())
+
+            for (index in 1 until variables.size) {
+
+                val localVar = Variable.named("local$index")
+
+                knowns = knowns.map(localVar, variables[index - 1]).get()
+                knowns = knowns.map(localVar, variables[index]).get() // Alias var(N-1) -> varN
+            }
+
+            val resolved = knowns.resolve(variables.first(), resolution).get()
+
+            variables.forEach {
+                assertThat(resolved.resolve(it, resolution)).toContain(resolved)
+                assertThat(resolved.resolve(it, Atom.named("other"))).isEmpty()
+            }
+        }
+
+        @Test
+        fun `resolves thousands of variables`() {
+
+            val variables = (0 until 5_000).map { Variable.named("var$it") }
+            val locals = (0 until 5_000).map { Variable.named("local$it") }
+            var knowns = Knowns.forVariables(*variables.toTypedArray())
+            val initial = knowns
+
+            variables.forEachIndexed { index, variable ->
+                knowns = knowns.map(locals[index], variable).get()
+                knowns = knowns.resolve(variable, Atom.named("resolution$index")).get()
+            }
+
+            variables.forEachIndexed { index, variable ->
+                assertThat(knowns.resolution(variable).value())
+                        .toContain(Atom.named("resolution$index"))
+                knowns.mapping(locals[index]) { mapping, _ ->
+                    assertThat(mapping).toBe(variable)
+                }
+                assertThat(initial.resolution(variable).isResolved).toBe(false)
+            }
+        }
+
+    }
+
+    @Nested
+    inner class Attributes {
+
+        private val key = Knowns.Attr.create<String>("test")
+
+        @Test
+        fun `has no attributes initially`() {
+            assertThat(Knowns.none().attr(key)).isEmpty()
+        }
+
+        @Test
+        fun `assigns attribute by key`() {
+
+            val knowns = Knowns.none().attr(key, "value")
+
+            assertThat(knowns.attr(key)).toContain("value")
+            assertThat(knowns.attr(Knowns.Attr.create<String>("other"))).isEmpty()
+            assertThat(Knowns.none().attr(key)).isEmpty()
+        }
+
+        @Test
+        fun `assigns attribute by type`() {
+
+            val knowns = Knowns.none().attr(String::class.java, "value")
+
+            assertThat(Knowns.Attr.of(String::class.java)).isSameAs(Knowns.Attr.of(String::class.java))
+            assertThat(knowns.attr(String::class.java)).toContain("value")
+            assertThat(knowns.attr(Knowns.Attr.of(String::class.java))).toContain("value")
+        }
+
+        @Test
+        fun `wipes out attributes when matching started`() {
+
+            val knowns = Knowns.none().attr(key, "value")
+
+            assertThat(knowns.startMatching().attr(key)).isEmpty()
+        }
+
+    }
+
+    @Nested
+    inner class Equality {
+
+        private val variable1 = Variable.named("variable1")
+        private val variable2 = Variable.named("variable2")
+        private val variable3 = Variable.named("variable3")
+        private val local = Variable.named("local")
+        private val knowns = Knowns.forVariables(variable1, variable2, variable3)
+
+        @Test
+        fun `equal when resolved to the same values`() {
+
+            val resolved1 = knowns.resolve(variable1, Atom.named("resolution")).get()
+            val resolved2 = knowns.startMatching().resolve(variable1, Atom.named("resolution")).get()
+
+            assertThat(resolved1).toBe(resolved2)
+            assertThat(resolved1.hashCode()).toBe(resolved2.hashCode())
+            assertThat(resolved1.fingerprint()).toBe(resolved2.fingerprint())
+        }
+
+        @Test
+        fun `not equal when resolved to different values`() {
+
+            val resolved1 = knowns.resolve(variable1, Atom.named("resolution1")).get()
+            val resolved2 = knowns.resolve(variable1, Atom.named("resolution2")).get()
+
+            assertThat(resolved1).notToBe(resolved2)
+            assertThat(resolved1).notToBe(knowns)
+        }
+
+        @Test
+        fun `equal when aliased the same way`() {
+
+            val aliased1 = knowns.map(local, variable1).get().map(local, variable2).get()
+            val aliased2 = knowns.map(local, variable2).get().map(local, variable1).get()
+
+            assertThat(aliased1).toBe(aliased2)
+        }
+
+        @Test
+        fun `not equal when aliased differently`() {
+
+            val aliased1 = knowns.map(local, variable1).get().map(local, variable2).get()
+            val aliased2 = knowns.map(local, variable1).get().map(local, variable3).get()
+
+            assertThat(aliased1).notToBe(aliased2)
+        }
+
+        @Test
+        fun `ignores locals`() {
+
+            val declared = knowns.startMatching().declareLocal(local) { _, knowns -> knowns }
+
+            assertThat(declared).toBe(knowns)
+        }
+
+        @Test
+        fun `compares sequential knowns`() {
+
+            val sequential = knowns.sequential()
+            val resolved1 = sequential.resolve(variable1, Atom.named("resolution1")).get()
+            val resolved2 = sequential.resolve(variable1, Atom.named("resolution2")).get()
+
+            assertThat(resolved1).toBe(knowns.resolve(variable1, Atom.named("resolution1")).get())
+            assertThat(resolved1).notToBe(resolved2)
+        }
+
+    }
+
+    @Nested
+    inner class Sequential {
+
+        @Test
+        fun `is persistent by default`() {
+
+            val knowns = Knowns.forVariables(Variable.named("variable"))
+
+            assertThat(knowns.isSequential).toBe(false)
+            assertThat(knowns.persistent()).isSameAs(knowns)
+        }
+
+        @Test
+        fun `converts to sequential`() {
+
+            val knowns = Knowns.forVariables(Variable.named("variable")).sequential()
+
+            assertThat(knowns.isSequential).toBe(true)
+            assertThat(knowns.sequential()).isSameAs(knowns)
+        }
+
+        @Test
+        fun `undoes resolutions on backtracking`() {
+
+            val variable1 = Variable.named("variable1")
+            val variable2 = Variable.named("variable2")
+            val choice = Knowns.forVariables(variable1, variable2).sequential()
+            val first = choice.resolve(variable1, Atom.named("first")).get()
+            val second = choice.resolve(variable2, Atom.named("second")).get()
+
+            assertThat(second.resolution(variable1).isResolved).toBe(false)
+            assertThat(second.resolution(variable2).value()).toContain(Atom.named("second"))
+            assertThat(choice.resolution(variable2).isResolved).toBe(false)
+            assertThat(first.resolution(variable1).value()).toContain(Atom.named("first"))
+            assertThat(first.resolution(variable2).isResolved).toBe(false)
+        }
+
+        @Test
+        fun `converts to persistent`() {
+
+            val variable = Variable.named("variable")
+            val choice = Knowns.forVariables(variable).sequential()
+            val resolved = choice.resolve(variable, Atom.named("first")).get().persistent()
+
+            choice.resolve(variable, Atom.named("second"))
+
+            assertThat(resolved.isSequential).toBe(false)
+            assertThat(resolved.resolution(variable).value()).toContain(Atom.named("first"))
+        }
+
+    }
+
+    @Nested
+    inner class Matching {
+
+        @Test
+        fun `maps pattern variables`() {
+
+            val variable = Variable.named("variable")
+            val atom = Atom.named("atom")
+            val pattern = Rule.pattern(listOf(Keyword.named("keyword"), variable))
+            val call = Predicate.call(listOf(Keyword.named("keyword"), atom))
+
+            assertThat(pattern.match(call, Knowns.none())).notToBeEmpty {
+                subject.mapping(variable) { mapping, _ ->
+                    assertThat(mapping).toBe(atom)
+                }
+            }
+        }
+
+        @Test
+        fun `starts with empty mappings`() {
+
+            val variable = Variable.named("variable")
+            val atom = Atom.named("atom")
+            val knowns = Knowns.none().map(variable, atom).get()
+
+            knowns.startMatching().mapping(variable) { mapping, _ ->
+                assertThat(mapping).notToBe(atom)
+            }
+        }
+
+        @Test
+        fun `restores caller mappings when finished`() {
+
+            val variable = Variable.named("variable")
+            val queryVar = Variable.named("queryVar")
+            val resolution = Atom.named("resolution")
+            val caller = Knowns.forVariables(queryVar).map(variable, queryVar).get()
+            val finished = caller.startMatching()
+                    .map(variable, resolution).get()
+                    .resolve(queryVar, resolution).get()
+                    .finishMatching(caller)
+
+            finished.mapping(variable) { mapping, _ ->
+                assertThat(mapping).toBe(queryVar)
+            }
+            assertThat(finished.resolution(queryVar).value()).toContain(resolution)
+        }
+
+        @Test
+        fun `declares distinct locals per match`() {
+
+            val variable = Variable.named("variable")
+            val first = Knowns.none().startMatching()
+            val firstLocal = first.declareLocal(variable) { local, _ -> local }
+            val secondLocal = first.startMatching().declareLocal(variable) { local, _ -> local }
+
+            assertThat(firstLocal).notToBe(secondLocal)
+        }
+
+        @Test
+        fun `removes dead locals`() {
+
+            val queryVar = Variable.named("queryVar")
+            val variable = Variable.named("variable")
+            var knowns = Knowns.forVariables(queryVar)
+
+            for (i in 0 until 100_000) {
+
+                val caller = knowns
+
+                knowns = caller.startMatching()
+                        .map(variable, queryVar).get()
+                        .declareLocal(Variable.named("local")) { local, kns -> kns.map(variable, local).get() }
+                        .finishMatching(caller)
+
+                assertThat(knowns.size() < 256).toBe(true)
+            }
+
+            assertThat(knowns.resolve(queryVar, Atom.named("resolution")).get())
+                    .toBe(Knowns.forVariables(queryVar).resolve(queryVar, Atom.named("resolution")).get())
+        }
+
+        @Test
+        fun `removes dead locals of nested matches`() {
+
+            val queryVar = Variable.named("queryVar")
+            val variable = Variable.named("variable")
+            val callers = mutableListOf<Knowns>()
+            var knowns = Knowns.forVariables(queryVar)
+
+            for (i in 0 until 10_000) {
+                callers.add(knowns)
+                knowns = knowns.startMatching()
+                        .map(variable, queryVar).get()
+                        .declareLocal(Variable.named("local")) { local, kns -> kns.map(variable, local).get() }
+            }
+
+            knowns = knowns.resolve(queryVar, Atom.named("resolution")).get()
+            callers.asReversed().forEach { knowns = knowns.finishMatching(it) }
+
+            assertThat(knowns.size() < 256).toBe(true)
+            assertThat(knowns)
+                    .toBe(Knowns.forVariables(queryVar).resolve(queryVar, Atom.named("resolution")).get())
+        }
+
+        @Test
+        fun `numbers temporary variables`() {
+
+            val first = Knowns.none().startMatching()
+            val temps = first.declareTemp("temp") { temp1, _, knowns ->
+                knowns.declareTemp("temp") { temp2, _, _ -> listOf(temp1, temp2) }
+            }
+            val sameTemps = first.declareTemp("temp") { temp1, _, knowns ->
+                knowns.declareTemp("temp") { temp2, _, _ -> listOf(temp1, temp2) }
+            }
+
+            assertThat(temps).toBe(sameTemps)
+            assertThat(temps[0]).notToBe(temps[1])
+        }
+
+        @Test
+        fun `maps temporary variables to locals`() {
+
+            Knowns.none().startMatching().declareTemp("temp") { temp, local, knowns ->
+                knowns.mapping(temp) { mapping, _ -> assertThat(mapping).toBe(local) }
+                assertThat(knowns.resolution(local).isResolved).toBe(false)
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,154 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.predicates.Predicate
+import org.predicode.predicator.predicates.newPredicateCall
+import org.predicode.predicator.terms.*
+import java.util.*
+
+
+class RuleBaseTest {
+
+    private val knowns = Knowns.none()
+
+    @Test
+    fun `selects rules by first term`() {
+
+        val rule1 = newRulePattern { a("a"); a("b") }.fact()
+        val rule2 = newRulePattern { a("b"); a("c") }.fact()
+        val rule3 = newRulePattern { a("a"); a("c") }.fact()
+        val base = RuleBase.of(rule1, rule2, rule3)
+
+        assertThat(base.candidates(newPredicateCall { a("a"); a("c") }).toList())
+                .toBe(listOf(rule1, rule3))
+        assertThat(matchingRules(base, newPredicateCall { a("a"); a("c") }))
+                .toBe(listOf(rule3))
+        assertThat(base.candidates(newPredicateCall { a("d"); a("c") }).toList())
+                .toBe(emptyList())
+    }
+
+    @Test
+    fun `selects rules by length`() {
+
+        val rule1 = newRulePattern { k("a") }.fact()
+        val rule2 = newRulePattern { k("a"); a("b") }.fact()
+        val base = RuleBase.of(rule1, rule2)
+
+        assertThat(matchingRules(base, newPredicateCall { k("a"); a("b") }))
+                .toBe(listOf(rule2))
+        assertThat(base.candidates(newPredicateCall { k("a"); a("b"); a("c") }).toList())
+                .toBe(emptyList())
+    }
+
+    @Test
+    fun `selects rules in declaration order`() {
+
+        val rule1 = newRulePrefixPattern { a("a") }.fact()
+        val rule2 = newRulePattern { v("X"); a("b") }.fact()
+        val rule3 = newRulePattern { a("a"); a("b") }.fact()
+        val rule4 = newRulePattern { term(Placeholder.placeholder()); a("b") }.fact()
+        val rule5 = newRulePattern { a("c"); a("b") }.fact()
+        val base = RuleBase.of(rule1, rule2, rule3, rule4, rule5)
+
+        assertThat(matchingRules(base, newPredicateCall { a("a"); a("b") }))
+                .toBe(listOf(rule1, rule2, rule3, rule4))
+    }
+
+    @Test
+    fun `selects all rules of the same length for variable`() {
+
+        val queryVar = Variable.named("Q")
+        val rule1 = newRulePattern { a("a"); a("b") }.fact()
+        val rule2 = newRulePattern { a("b"); a("c") }.fact()
+        val rule3 = newRulePattern { a("c") }.fact()
+        val base = RuleBase.of(rule1, rule2, rule3)
+
+        assertThat(
+                base.matchingRules(newPredicateCall { term(queryVar); a("c") }, Knowns.forVariables(queryVar))
+                        .map { it.knowns.resolution(queryVar).value().get() }
+                        .collectList()
+                        .block())
+                .toBe(listOf<Any>(Atom.named("b")))
+    }
+
+    @Test
+    fun `selects prefix rules for infinite call`() {
+
+        val rule1 = newRulePrefixPattern { a("a") }.fact()
+        val rule2 = newRulePattern { a("a") }.fact()
+        val base = RuleBase.of(rule1, rule2)
+        val call = Predicate.infiniteCall { length ->
+            Optional.of(Predicate.prefix(Collections.nCopies(length, Atom.named("a")), Predicate.emptyCall()))
+        }
+
+        assertThat(base.candidates(call).toList()).toBe(listOf(rule1))
+    }
+
+    @Test
+    fun `selects facts among many`() {
+
+        val facts = (0 until 200_000).map { i -> newRulePattern { a("fact $i"); a("value") }.fact() }
+        val base = RuleBase.of(facts)
+
+        assertThat(base.size()).toBe(200_000)
+        assertThat(base.candidates(newPredicateCall { a("fact 12345"); a("value") }).toList())
+                .toBe(listOf(facts[12345]))
+    }
+
+    @Test
+    fun `filters out calls not matching any rule`() {
+
+        val facts = (0 until 1000).map { i -> newRulePattern { k("fact"); a("key $i"); v("X") }.fact() }
+        val base = RuleBase.of(facts)
+
+        assertThat(matchingRules(base, newPredicateCall { k("fact"); a("key 1"); a("value") }))
+                .toBe(listOf(facts[1]))
+        assertThat(base.filter.passed).toBe(1L)
+
+        for (i in 1000 until 2000) {
+            assertThat(matchingRules(base, newPredicateCall { k("fact"); a("key $i"); a("value") }))
+                    .toBe(emptyList())
+        }
+
+        assertThat(base.filter.rejected + base.filter.falsePositives).toBe(1000L)
+        assertThat(base.filter.falsePositiveRate < 0.05).toBe(true)
+    }
+
+    @Test
+    fun `passes calls with leading variables`() {
+
+        val base = RuleBase.of(newRulePattern { k("fact"); a("key") }.fact())
+
+        assertThat(base.candidates(newPredicateCall { v("X"); a("other") }).size).toBe(1)
+        assertThat(base.filter.passed).toBe(1L)
+    }
+
+    @Test
+    fun `does not count untested calls as false positives`() {
+
+        val base = RuleBase.of(newRulePattern { k("fact"); a("key") }.fact())
+
+        assertThat(matchingRules(base, newPredicateCall { v("X"); a("other") })).toBe(emptyList())
+        assertThat(base.findMatchingRules(newPredicateCall { v("X"); a("other") }, knowns).hasNext()).toBe(false)
+        assertThat(base.filter.passed).toBe(2L)
+        assertThat(base.filter.falsePositives).toBe(0L)
+    }
+
+    @Test
+    fun `passes calls matching prefix patterns`() {
+
+        val rule = newRulePrefixPattern { k("fact"); a("key"); a("value") }.fact()
+        val base = RuleBase.of(rule)
+
+        assertThat(base.candidates(newPredicateCall { k("fact"); a("key"); a("value"); a("more") }).toList())
+                .toBe(listOf(rule))
+        assertThat(base.candidates(newPredicateCall { k("fact"); a("other"); a("value"); a("more") }).toList())
+                .toBe(emptyList())
+    }
+
+    private fun matchingRules(base: RuleBase, call: Predicate.Call) =
+            base.matchingRules(call, knowns).map { it.rule }.collectList().block()
+
+}
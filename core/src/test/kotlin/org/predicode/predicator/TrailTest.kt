@@ -0,0 +1,96 @@
+package org.predicode.predicator
+
+import ch.tutteli.atrium.api.cc.en_GB.isSameAs
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+
+
+class TrailTest {
+
+    @Test
+    fun `starts with initial bindings`() {
+
+        val trail = Trail.start(HashTrie.empty<String, Int>().put("one", 1))
+
+        assertThat(trail.get("one")).toBe(1)
+        assertThat(trail.get("two")).toBe(null)
+    }
+
+    @Test
+    fun `does not record the same value`() {
+
+        val value = "value"
+        val trail = Trail.start(HashTrie.empty<String, String>()).put("key", value)
+
+        assertThat(trail.put("key", value)).isSameAs(trail)
+    }
+
+    @Test
+    fun `rolls back to mark`() {
+
+        val mark = Trail.start(HashTrie.empty<String, Int>()).put("one", 1)
+        val updated = mark.put("one", 11).put("two", 2)
+
+        assertThat(updated.get("one")).toBe(11)
+        assertThat(updated.get("two")).toBe(2)
+        assertThat(mark.get("one")).toBe(1)
+        assertThat(mark.get("two")).toBe(null)
+    }
+
+    @Test
+    fun `restores undone bindings`() {
+
+        val mark = Trail.start(HashTrie.empty<String, Int>()).put("one", 1)
+        val first = mark.put("two", 2).put("three", 3)
+        val second = mark.put("two", 22)
+
+        assertThat(second.get("two")).toBe(22)
+        assertThat(second.get("three")).toBe(null)
+        assertThat(first.get("two")).toBe(2)
+        assertThat(first.get("three")).toBe(3)
+        assertThat(second.get("one")).toBe(1)
+        assertThat(second.get("three")).toBe(null)
+    }
+
+    @Test
+    fun `converts to hash trie`() {
+
+        val trail = Trail.start(HashTrie.empty<String, Int>()).put("one", 1).put("two", 2)
+        val trie = trail.toHashTrie()
+
+        trail.put("three", 3)
+
+        assertThat(trie.size()).toBe(2)
+        assertThat(trie.get("one")).toBe(1)
+        assertThat(trie.get("two")).toBe(2)
+        assertThat(trie.get("three")).toBe(null)
+    }
+
+    @Test
+    fun `backtracks over thousands of bindings`() {
+
+        val size = 10_000
+        val start = Trail.start(HashTrie.empty<Int, Int>())
+        var trail = start
+        val marks = mutableListOf<Trail<Int, Int>>()
+
+        for (i in 0 until size) {
+            trail = trail.put(i, i * 2)
+            if (i % 1000 == 0) {
+                marks.add(trail)
+            }
+        }
+
+        marks.asReversed().forEachIndexed { index, mark ->
+
+            val last = (marks.size - index - 1) * 1000
+
+            assertThat(mark.get(last)).toBe(last * 2)
+            assertThat(mark.get(last + 1)).toBe(null)
+        }
+        assertThat(start.get(0)).toBe(null)
+        assertThat(trail.get(size - 1)).toBe((size - 1) * 2)
+    }
+
+}
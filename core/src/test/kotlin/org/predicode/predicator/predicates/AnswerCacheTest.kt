@@ -0,0 +1,156 @@
+package org.predicode.predicator.predicates
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.ConcurrentRuleBase
+import org.predicode.predicator.Knowns
+import org.predicode.predicator.Rule
+import org.predicode.predicator.RuleBase
+import org.predicode.predicator.newRulePattern
+import org.predicode.predicator.terms.Atom
+import org.predicode.predicator.terms.Variable
+import reactor.core.publisher.Flux
+
+
+class AnswerCacheTest {
+
+    private val queryVar = Variable.named("Q")
+
+    @Test
+    fun `caches answers to ground calls`() {
+
+        val rules = CountingSelector(RuleBase.of(
+                newRulePattern { k("has-permission"); a("alice"); a("doc42") }.fact()))
+        val cache = AnswerCache.create(rules, 100, 1000)
+        val call = newPredicateCall { k("has-permission"); a("alice"); a("doc42") }
+
+        assertThat(count(call, cache)).toBe(1L)
+        assertThat(count(call, cache)).toBe(1L)
+        assertThat(rules.selections).toBe(1)
+        assertThat(cache.misses).toBe(1L)
+        assertThat(cache.hits).toBe(1L)
+    }
+
+    @Test
+    fun `caches failures`() {
+
+        val rules = CountingSelector(RuleBase.of(
+                newRulePattern { k("has-permission"); a("alice"); a("doc42") }.fact()))
+        val cache = AnswerCache.create(rules, 100, 1000)
+        val call = newPredicateCall { k("has-permission"); a("bob"); a("doc42") }
+
+        assertThat(count(call, cache)).toBe(0L)
+        assertThat(count(call, cache)).toBe(0L)
+        assertThat(rules.selections).toBe(1)
+        assertThat(cache.hits).toBe(1L)
+    }
+
+    @Test
+    fun `treats resolved variables as ground`() {
+
+        val rules = CountingSelector(RuleBase.of(
+                newRulePattern { k("has-permission"); a("alice"); a("doc42") }.fact()))
+        val cache = AnswerCache.create(rules, 100, 1000)
+        val knowns = Knowns.forVariables(queryVar).resolve(queryVar, Atom.named("doc42")).get()
+        val call = newPredicateCall { k("has-permission"); a("alice"); term(queryVar) }
+
+        assertThat(count(call, cache, knowns)).toBe(1L)
+        assertThat(count(call, cache, knowns)).toBe(1L)
+        assertThat(rules.selections).toBe(1)
+    }
+
+    @Test
+    fun `does not cache non-ground calls`() {
+
+        val rules = CountingSelector(RuleBase.of(
+                newRulePattern { k("has-permission"); a("alice"); a("doc42") }.fact()))
+        val cache = AnswerCache.create(rules, 100, 1000)
+        val call = newPredicateCall { k("has-permission"); a("alice"); term(queryVar) }
+
+        assertThat(count(call, cache)).toBe(1L)
+        assertThat(count(call, cache)).toBe(1L)
+        assertThat(rules.selections).toBe(2)
+        assertThat(cache.hits + cache.misses).toBe(0L)
+    }
+
+    @Test
+    fun `invalidates answers when rules change`() {
+
+        val rules = ConcurrentRuleBase.of(listOf(
+                newRulePattern { k("has-permission"); a("alice"); a("doc42") }.fact()))
+        val cache = AnswerCache.create(rules, 100, 1000)
+        val call = newPredicateCall { k("has-permission"); a("alice"); a("doc43") }
+
+        assertThat(count(call, cache)).toBe(0L)
+        assertThat(cache.size()).toBe(1)
+
+        rules.add(newRulePattern { k("has-permission"); a("alice"); a("doc43") }.fact())
+
+        assertThat(count(call, cache)).toBe(1L)
+        assertThat(cache.size()).toBe(1)
+        assertThat(cache.misses).toBe(2L)
+    }
+
+    @Test
+    fun `bounds the number of answers`() {
+
+        val cache = AnswerCache.create(RuleBase.of(), 10, 1000)
+
+        (0 until 100).forEach { i -> count(newPredicateCall { k("check"); a("$i") }, cache) }
+
+        assertThat(cache.size()).toBe(10)
+        assertThat(cache.evictions).toBe(90L)
+    }
+
+    @Test
+    fun `bounds the weight of answers`() {
+
+        val cache = AnswerCache.create(RuleBase.of(), 100, 10)
+
+        (0 until 100).forEach { i -> count(newPredicateCall { k("check"); a("$i"); a("x") }, cache) }
+
+        // Each answer weighs 3, as the call has 3 terms
+        assertThat(cache.size()).toBe(3)
+        assertThat(cache.weight()).toBe(9L)
+    }
+
+    @Test
+    fun `keeps frequently requested answers`() {
+
+        val cache = AnswerCache.create(RuleBase.of(), 10, 1000)
+        val hot = newPredicateCall { k("check"); a("hot") }
+
+        repeat(10) { count(hot, cache) }
+        (0 until 1000).forEach { i ->
+            count(newPredicateCall { k("check"); a("cold $i") }, cache)
+            if (i % 50 == 0) {
+                count(hot, cache)
+            }
+        }
+
+        val hits = cache.hits
+
+        count(hot, cache)
+
+        assertThat(cache.hits).toBe(hits + 1)
+    }
+
+    private fun count(
+            call: Predicate.Call,
+            cache: AnswerCache,
+            knowns: Knowns = Knowns.forVariables(queryVar)) =
+            call.resolve(TestPredicateResolver(knowns).withAnswerCache(cache)).count().block()
+
+    private class CountingSelector(private val rules: Rule.Selector) : Rule.Selector {
+
+        var selections = 0
+
+        override fun matchingRules(call: Predicate.Call, knowns: Knowns): Flux<Rule.Match> {
+            ++selections
+            return rules.matchingRules(call, knowns)
+        }
+
+    }
+
+}
@@ -8,10 +8,14 @@ import io.mockk.mockk
 import io.mockk.verify
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.predicode.predicator.Knowns
+import org.predicode.predicator.newRulePattern
 import org.predicode.predicator.predicates.Predicate.emptyCall
+import org.predicode.predicator.selectOneOf
 import org.predicode.predicator.terms.*
 import org.predicode.predicator.terms.Value
 import org.predicode.predicator.testutils.isEmpty
+import reactor.test.StepVerifier
 import java.util.*
 import java.util.function.IntFunction
 
@@ -81,6 +85,11 @@ class FiniteCallTest {
         assertThat(call).toBe(Predicate.prefix(terms))
     }
 
+    @Test
+    fun `has finite terms`() {
+        assertThat(call.finiteTerms()).toBe(terms)
+    }
+
 }
 
 class InfiniteCallTest {
@@ -107,6 +116,17 @@ class InfiniteCallTest {
         assertThat(call.length()).isLessThan(0)
     }
 
+    @Test
+    fun `has no finite terms`() {
+        assertThat(call.finiteTerms()).toBe(null)
+    }
+
+    @Test
+    fun `is not matched by exact pattern`() {
+        assertThat(newRulePattern { k("keyword"); a("atom") }.tryMatch(call, Knowns.none())).toBe(null)
+        verify(exactly = 0) { buildPrefix.apply(any()) }
+    }
+
     @Test
     fun `builds prefix with the given function`() {
 
@@ -122,4 +142,120 @@ class InfiniteCallTest {
         verify { buildPrefix.apply(3) }
     }
 
+    @Test
+    fun `reuses built prefix`() {
+
+        val restPrefix: IntFunction<Optional<Predicate.Prefix>> = mockk("restPrefix")
+        val rest = Predicate.infiniteCall(restPrefix)
+        val terms = listOf(Keyword.named("keyword"), Atom.named("atom"), Value.raw(System.currentTimeMillis()))
+        val more = Atom.named("more")
+
+        every { buildPrefix.apply(any()) }.returns(Optional.of(Predicate.prefix(terms, rest)))
+        every { restPrefix.apply(1) }.returns(Optional.of(Predicate.prefix(listOf(more), rest)))
+
+        assertThat(call.prefix(3).get().terms).toBe(terms)
+        assertThat(call.prefix(2).get().terms).toBe(terms.subList(0, 2))
+        assertThat(call.prefix(4).get().terms).toBe(terms + more)
+        assertThat(call.prefix(4).get().terms).toBe(terms + more)
+        assertThat(call.qualify(testQualifier()).prefix(1).get().terms).toBe(terms.subList(0, 1))
+
+        verify(exactly = 1) { buildPrefix.apply(any()) }
+        verify(exactly = 1) { restPrefix.apply(any()) }
+    }
+
+}
+
+class LazyCallTest {
+
+    private var pulled = 0
+    lateinit var call: Predicate.Call
+
+    @BeforeEach
+    fun create() {
+        pulled = 0
+        call = Predicate.lazyCall(generateSequence(0) { it + 1 }.map { pulled++; Value.raw(it) }.iterator())
+    }
+
+    @Test
+    fun `is infinite`() {
+        assertThat(call.isFinite).toBe(false)
+        assertThat(call.length()).isLessThan(0)
+    }
+
+    @Test
+    fun `pulls terms lazily`() {
+        assertThat(pulled).toBe(0)
+        assertThat(call.prefix(3).get().terms).toBe((0 until 3).map { Value.raw(it) })
+        assertThat(pulled).toBe(3)
+        assertThat(call.prefix(2).get().terms).toBe((0 until 2).map { Value.raw(it) })
+        assertThat(pulled).toBe(3)
+    }
+
+    @Test
+    fun `builds prefix of rest`() {
+
+        val rest = call.prefix(60).get().rest
+
+        assertThat(rest.prefix(10).get().terms).toBe((60 until 70).map { Value.raw(it) })
+        assertThat(rest.prefix(200).get().terms).toBe((60 until 260).map { Value.raw(it) })
+        assertThat(pulled).toBe(260)
+    }
+
+    @Test
+    fun `can not build too long prefix`() {
+
+        val call = Predicate.lazyCall(listOf(Keyword.named("keyword"), Atom.named("atom")).iterator())
+
+        assertThat(call.prefix(3)).isEmpty()
+        assertThat(call.prefix(2).get().terms).toBe(listOf(Keyword.named("keyword"), Atom.named("atom")))
+    }
+
+}
+
+class CallResolutionTest {
+
+    @Test
+    fun `resolves recursive rules`() {
+
+        val queryVar = Variable.named("Q")
+        val rules = selectOneOf(
+                newRulePattern { k("edge"); a("a"); a("b") }.fact(),
+                newRulePattern { k("edge"); a("b"); a("c") }.fact(),
+                newRulePattern { k("edge"); a("c"); a("d") }.fact(),
+                newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") }),
+                newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Z") } and newPhrase { k("path"); v("Z"); v("Y") }))
+        val resolver = TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules)
+        val call = newPredicateCall { k("path"); a("a"); term(queryVar) }
+
+        StepVerifier.create(call.resolve(resolver).map { it.resolution(queryVar).value().get() })
+                .expectNext(Atom.named("b"), Atom.named("c"), Atom.named("d"))
+                .verifyComplete()
+    }
+
+    @Test
+    fun `resolves sequentially`() {
+
+        val queryVar = Variable.named("Q")
+        val rules = selectOneOf(
+                newRulePattern { k("edge"); a("a"); a("b") }.fact(),
+                newRulePattern { k("edge"); a("a"); a("c") }.fact(),
+                newRulePattern { k("edge"); a("c"); a("d") }.fact(),
+                newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") }),
+                newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Z") } and newPhrase { k("path"); v("Z"); v("Y") }))
+        val resolver = TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules).sequential()
+        val call = newPredicateCall { k("path"); a("a"); term(queryVar) }
+
+        assertThat(resolver.isSequential).toBe(true)
+        StepVerifier.create(call.resolve(resolver))
+                .expectNextMatches { it.isSequential }
+                .expectNextCount(2)
+                .verifyComplete()
+        assertThat(call.resolve(resolver).map { it.resolution(queryVar).value().get() }.collectList().block())
+                .toBe(listOf(Atom.named("b"), Atom.named("c"), Atom.named("d")))
+    }
+
 }
@@ -112,6 +112,29 @@ class FinitePrefixTest {
         }
     }
 
+    @Test
+    fun `keeps qualifiers when building prefix`() {
+
+        val qualifier = testQualifier()
+        val qualified = prefix.qualify(qualifier)
+
+        assertThat(qualified.prefix(1).get().qualifiers).toBe(qualified.qualifiers)
+        assertThat(qualified.prefix(qualified.length()).get().qualifiers).toBe(qualified.qualifiers)
+    }
+
+    @Test
+    fun `shares terms between prefixes`() {
+
+        val shorter = prefix.prefix(1).get()
+        val longer = shorter.rest.prefix(2).get()
+
+        assertThat(longer.toFinite()).notToBeNull {
+            assertThat(subject.allTerms()).toBe(prefixTerms.slice(1..(prefixTerms.size - 1)) + suffixTerms)
+        }
+        assertThat(longer.terms).toBe(listOf(prefixTerms[1], suffixTerms[0]))
+        assertThat(longer.rest.length()).toBe(suffixTerms.size - 1)
+    }
+
 }
 
 class InfinitePrefixTest {
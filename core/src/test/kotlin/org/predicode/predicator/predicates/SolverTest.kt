@@ -0,0 +1,319 @@
+package org.predicode.predicator.predicates
+
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.Knowns
+import org.predicode.predicator.Rule
+import org.predicode.predicator.RuleBase
+import org.predicode.predicator.newRulePattern
+import org.predicode.predicator.terms.*
+import reactor.core.publisher.Flux
+import java.util.concurrent.ForkJoinPool
+import kotlin.streams.toList
+
+
+class SolverTest {
+
+    private val queryVar = Variable.named("Q")
+
+    @Test
+    fun `solves transitive closure`() {
+
+        val rules = RuleBase.of(
+                (0 until 50).map { i -> newRulePattern { k("edge"); a("node $i"); a("node ${i + 1}") }.fact() }
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") })
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Z") } and newPhrase { k("path"); v("Z"); v("Y") }))
+        val call = newPredicateCall { k("path"); a("node 0"); term(queryVar) }
+
+        assertThat(solve(call, rules)).toBe((1..50).map { Atom.named("node $it") })
+        assertThat(solve(call, rules)).toBe(resolve(call, rules))
+    }
+
+    @Test
+    fun `solves n-queens`() {
+
+        val columns = (1..4).map { Atom.named("$it") }
+        val rules = RuleBase.of(
+                columns.map { column -> newRulePattern { k("column"); term(column) }.fact() }
+                        + columns.indices.flatMap { i ->
+                    columns.indices.flatMap { j ->
+                        (1..3).filter { d -> i != j && Math.abs(i - j) != d }.map { d ->
+                            newRulePattern { k("safe"); term(columns[i]); term(columns[j]); a("$d") }.fact()
+                        }
+                    }
+                }
+                        + newRulePattern { k("queens"); v("A") }.rule(
+                        newPhrase { k("column"); v("A") }
+                                and newPhrase { k("column"); v("B") }
+                                and newPhrase { k("safe"); v("A"); v("B"); a("1") }
+                                and newPhrase { k("column"); v("C") }
+                                and newPhrase { k("safe"); v("A"); v("C"); a("2") }
+                                and newPhrase { k("safe"); v("B"); v("C"); a("1") }
+                                and newPhrase { k("column"); v("D") }
+                                and newPhrase { k("safe"); v("A"); v("D"); a("3") }
+                                and newPhrase { k("safe"); v("B"); v("D"); a("2") }
+                                and newPhrase { k("safe"); v("C"); v("D"); a("1") }))
+        val call = newPredicateCall { k("queens"); term(queryVar) }
+
+        assertThat(solve(call, rules)).toBe(listOf(Atom.named("2"), Atom.named("3")))
+        assertThat(solve(call, rules)).toBe(resolve(call, rules))
+    }
+
+    @Test
+    fun `solves n-queens in parallel`() {
+
+        val rules = queens(6)
+        val call = newPredicateCall { k("queens"); term(queryVar) }
+        val expected = solve(call, rules).map { it.toString() }.sorted()
+
+        assertThat(expected.size).toBe(4)
+
+        listOf(1, Runtime.getRuntime().availableProcessors()).forEach { parallelism ->
+
+            val pool = ForkJoinPool(parallelism)
+
+            try {
+                listOf(1, 16, 256).forEach { granularity ->
+                    assertThat(
+                            Solver.resolveParallel(
+                                    call,
+                                    TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules),
+                                    pool,
+                                    granularity)
+                                    .map { it.resolution(queryVar).value().get().toString() }
+                                    .collectList()
+                                    .block()!!
+                                    .sorted())
+                            .toBe(expected)
+                }
+
+                val limited = Solver.resolveParallel(
+                        call,
+                        TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules),
+                        pool,
+                        1)
+                        .limitRate(1)
+                        .take(2)
+                        .map { it.resolution(queryVar).value().get().toString() }
+                        .collectList()
+                        .block()!!
+
+                assertThat(limited.size).toBe(2)
+                assertThat(expected.containsAll(limited)).toBe(true)
+            } finally {
+                pool.shutdown()
+            }
+        }
+    }
+
+    @Test
+    fun `solves disjunction and negation`() {
+
+        val rules = RuleBase.of(
+                newRulePattern { k("fact"); a("a") }.fact(),
+                newRulePattern { k("fact"); a("b") }.fact(),
+                newRulePattern { k("other"); a("b") }.fact())
+        val call = newPhrase { k("fact"); term(queryVar) } and !newPhrase { k("other"); term(queryVar) }
+                or newPhrase { k("other"); term(queryVar) }
+
+        assertThat(solve(call, rules)).toBe(listOf(Atom.named("a"), Atom.named("b")))
+        assertThat(solve(call, rules)).toBe(resolve(call, rules))
+    }
+
+    @Test
+    fun `solves custom predicate`() {
+
+        val predicate = Predicate { resolver ->
+            Flux.just(
+                    resolver.knowns.resolve(queryVar, Atom.named("a")).get(),
+                    resolver.knowns.resolve(queryVar, Atom.named("b")).get())
+        }
+
+        assertThat(solve(predicate, RuleBase.of())).toBe(listOf(Atom.named("a"), Atom.named("b")))
+    }
+
+    @Test
+    fun `cancels custom predicate subscription when closed`() {
+
+        var requested = 0L
+        var cancelled = 0
+        val predicate = Predicate { resolver ->
+            Flux.generate<Knowns> { sink -> sink.next(resolver.knowns.resolve(queryVar, Atom.named("a")).get()) }
+                    .doOnRequest { requested += it }
+                    .doOnCancel { ++cancelled }
+        }
+        val solver = Solver.solve(predicate, TestPredicateResolver(Knowns.forVariables(queryVar)))
+
+        assertThat(solver.next().resolution(queryVar).value().get()).toBe(Atom.named("a"))
+        assertThat(requested).toBe(1L)
+
+        solver.close()
+
+        assertThat(cancelled).toBe(1)
+        assertThat(solver.hasNext()).toBe(false)
+
+        assertThat(solve(!predicate, RuleBase.of())).toBe(emptyList())
+        assertThat(cancelled).toBe(2)
+    }
+
+    @Test
+    fun `finds solutions lazily`() {
+
+        val rules = RuleBase.of(
+                newRulePattern { k("fact"); a("a") }.fact(),
+                newRulePattern { k("fact"); a("b") }.fact())
+        val solver = Solver.solve(
+                newPredicateCall { k("fact"); term(queryVar) },
+                TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules))
+
+        assertThat(solver.next().resolution(queryVar).value().get()).toBe(Atom.named("a"))
+        assertThat(solver.hasNext()).toBe(true)
+        assertThat(solver.next().resolution(queryVar).value().get()).toBe(Atom.named("b"))
+        assertThat(solver.hasNext()).toBe(false)
+    }
+
+    @Test
+    fun `solves left recursion with tabling`() {
+
+        val rules = RuleBase.of(
+                cycle("a", "b", "c")
+                        + newRulePattern { k("edge"); a("c"); a("d") }.fact()
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("path"); v("X"); v("Z") } and newPhrase { k("edge"); v("Z"); v("Y") })
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") }))
+        val tabling = Tabling.of(newRulePattern { k("path"); v("X"); v("Y") })
+
+        assertThat(solve(newPredicateCall { k("path"); a("a"); term(queryVar) }, rules, tabling).toSet())
+                .toBe(setOf("a", "b", "c", "d").map { Atom.named(it) }.toSet())
+        assertThat(solve(newPredicateCall { k("path"); term(queryVar); a("d") }, rules, tabling).toSet())
+                .toBe(setOf("a", "b", "c").map { Atom.named(it) }.toSet())
+    }
+
+    @Test
+    fun `solves right recursion over cyclic graph with tabling`() {
+
+        val nodes = (0 until 100).map { "node $it" }
+        val rules = RuleBase.of(
+                cycle(*nodes.toTypedArray())
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") })
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Z") } and newPhrase { k("path"); v("Z"); v("Y") }))
+        val tabling = Tabling.of(newRulePattern { k("path"); v("X"); v("Y") })
+        val solutions = solve(newPredicateCall { k("path"); a("node 0"); term(queryVar) }, rules, tabling)
+
+        assertThat(solutions.size).toBe(nodes.size)
+        assertThat(solutions.toSet()).toBe(nodes.map { Atom.named(it) }.toSet())
+    }
+
+    @Test
+    fun `completes mutually recursive tables`() {
+
+        val rules = RuleBase.of(
+                cycle("a", "b", "c")
+                        + newRulePattern { k("reach"); v("X"); v("Y") }.rule(
+                        newPhrase { k("edge"); v("X"); v("Y") })
+                        + newRulePattern { k("reach"); v("X"); v("Y") }.rule(
+                        newPhrase { k("path"); v("X"); v("Z") } and newPhrase { k("edge"); v("Z"); v("Y") })
+                        + newRulePattern { k("path"); v("X"); v("Y") }.rule(
+                        newPhrase { k("reach"); v("X"); v("Y") }))
+        val tabling = Tabling.of(
+                newRulePattern { k("path"); v("X"); v("Y") },
+                newRulePattern { k("reach"); v("X"); v("Y") })
+
+        assertThat(solve(newPredicateCall { k("reach"); a("a"); term(queryVar) }, rules, tabling).toSet())
+                .toBe(setOf("a", "b", "c").map { Atom.named(it) }.toSet())
+    }
+
+    @Test
+    fun `counts down from one million`() {
+        assertThat(Solver.solve(countdown(1_000_000), countdownResolver { it }).hasNext()).toBe(true)
+    }
+
+    @Test
+    fun `counts down from one million without tail calls`() {
+        assertThat(Solver.resolve(countdown(1_000_000), countdownResolver { it and Predicate.TRUE })
+                .hasElements()
+                .block())
+                .toBe(true)
+    }
+
+    @Test
+    fun `counts down with tabling`() {
+
+        val tabling = Tabling.of(newRulePattern { k("count"); v("N") })
+
+        assertThat(Solver.solve(countdown(100_000), countdownResolver { it }, tabling).hasNext()).toBe(true)
+    }
+
+    @Test
+    fun `counts down with negations`() {
+        assertThat(Solver.solve(countdown(100_000), countdownResolver { !(!it) }).hasNext()).toBe(true)
+        assertThat(Solver.solve(countdown(100_000), countdownResolver { !it }).hasNext()).toBe(true)
+        assertThat(Solver.solve(countdown(99_999), countdownResolver { !it }).hasNext()).toBe(false)
+    }
+
+    private fun countdown(n: Int) = newPredicateCall { k("count"); a("$n") }
+
+    private fun countdownResolver(body: (Predicate.Call) -> Predicate) =
+            TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(object : Rule.Selector {
+
+                override fun matchingRules(call: Predicate.Call, knowns: Knowns) =
+                        Flux.fromIterable(Iterable { findMatchingRules(call, knowns) })
+
+                override fun findMatchingRules(call: Predicate.Call, knowns: Knowns): Iterator<Rule.Match> {
+
+                    // Builds the rule for the called number only, instead of keeping a million of them
+                    val n = (call.finiteTerms()!![1] as Atom).name.toInt()
+                    val pattern = newRulePattern { k("count"); a("$n") }
+                    val rule = if (n == 0) pattern.fact() else pattern.rule(body(countdown(n - 1)))
+
+                    return listOfNotNull(rule.match(call, knowns).orElse(null)).iterator()
+                }
+
+            })
+
+    private fun queens(n: Int): RuleBase {
+
+        val columns = (1..n).map { Atom.named("$it") }
+        val variables = (0 until n).map { Variable.named("V$it") }
+        val safe = columns.indices.flatMap { i ->
+            columns.indices.flatMap { j ->
+                (1 until n).filter { d -> i != j && Math.abs(i - j) != d }.map { d ->
+                    newRulePattern { k("safe"); term(columns[i]); term(columns[j]); a("$d") }.fact()
+                }
+            }
+        }
+        val condition = variables.indices.fold(Predicate.TRUE) { condition, i ->
+            variables.indices.take(i).fold(condition and newPhrase { k("column"); term(variables[i]) }) { c, j ->
+                c and newPhrase { k("safe"); term(variables[j]); term(variables[i]); a("${i - j}") }
+            }
+        }
+
+        return RuleBase.of(
+                columns.map { column -> newRulePattern { k("column"); term(column) }.fact() }
+                        + safe
+                        + newRulePattern { k("queens"); term(variables[0]) }.rule(condition))
+    }
+
+    private fun cycle(vararg nodes: String) =
+            nodes.indices.map { i ->
+                newRulePattern { k("edge"); a(nodes[i]); a(nodes[(i + 1) % nodes.size]) }.fact()
+            }
+
+    private fun solve(predicate: Predicate, rules: RuleBase, tabling: Tabling = Tabling.none()) =
+            Solver.stream(predicate, TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules), tabling)
+                    .map { it.resolution(queryVar).value().get() }
+                    .toList()
+
+    private fun resolve(predicate: Predicate, rules: RuleBase) =
+            predicate.resolve(TestPredicateResolver(Knowns.forVariables(queryVar)).withSelector(rules).sequential())
+                    .map { it.resolution(queryVar).value().get() }
+                    .collectList()
+                    .block()
+
+}
@@ -71,6 +71,16 @@ class AtomTest {
 
     }
 
+    @Test
+    fun `tries to match without optional`() {
+
+        val atom = Atom.named("name")
+
+        assertThat(atom.tryMatch(Atom.named("name"), knowns)).toBe(knowns)
+        assertThat(atom.tryMatch(Atom.named("other"), knowns)).toBe(null)
+        assertThat(atom.tryMatch(Keyword.named("name"), knowns)).toBe(null)
+    }
+
     @Test
     fun `expands to itself`() {
 
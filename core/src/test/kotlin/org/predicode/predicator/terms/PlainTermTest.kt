@@ -0,0 +1,82 @@
+package org.predicode.predicator.terms
+
+import ch.tutteli.atrium.api.cc.en_GB.notToBeNull
+import ch.tutteli.atrium.api.cc.en_GB.toBe
+import ch.tutteli.atrium.verbs.assertThat
+import org.junit.jupiter.api.Test
+import org.predicode.predicator.Knowns
+import org.predicode.predicator.testutils.toContain
+
+
+class PlainTermTest {
+
+    private val keyword = Keyword.named("name")
+    private val atom = Atom.named("name")
+    private val value = Value.raw("name")
+    private val placeholder = Placeholder.placeholder()
+
+    @Test
+    fun `matches mixed terms`() {
+
+        val variable = Variable.named("var")
+        val knowns = Knowns.forVariables(variable)
+        val local = Variable.named("local")
+
+        val patternTerms = listOf(keyword, atom, value, placeholder, local)
+        val callTerms = listOf(keyword, variable, value, keyword, atom)
+
+        assertThat(PlainTerm.tryMatchTerms(patternTerms, callTerms, knowns)).notToBeNull {
+            assertThat(subject.resolution(variable).value()).toContain(atom)
+        }
+    }
+
+    @Test
+    fun `does not match mixed terms`() {
+
+        val knowns = Knowns.none()
+        val local = Variable.named("local")
+
+        assertThat(PlainTerm.tryMatchTerms(listOf(atom, local), listOf(placeholder, keyword), knowns))
+                .toBe(null)
+        assertThat(PlainTerm.tryMatchTerms(listOf(value, keyword), listOf(value, placeholder), knowns))
+                .toBe(null)
+        assertThat(PlainTerm.tryMatchTerms(listOf(placeholder), listOf(keyword), knowns))
+                .toBe(null)
+    }
+
+    @Test
+    fun `does not match terms of different length`() {
+        assertThat(PlainTerm.tryMatchTerms(listOf(atom, value), listOf(atom), Knowns.none()))
+                .toBe(null)
+    }
+
+    @Test
+    fun `matches leading terms`() {
+        assertThat(PlainTerm.tryMatchLeadingTerms(listOf(keyword, atom), listOf(keyword, atom, value), Knowns.none()))
+                .toBe(Knowns.none())
+        assertThat(PlainTerm.tryMatchLeadingTerms(listOf(keyword, atom), listOf(keyword), Knowns.none()))
+                .toBe(null)
+        assertThat(PlainTerm.tryMatchLeadingTerms(listOf(atom), listOf(keyword, atom), Knowns.none()))
+                .toBe(null)
+    }
+
+    @Test
+    fun `matches many mixed facts`() {
+
+        val variable = Variable.named("var")
+        val knowns = Knowns.forVariables(variable)
+        val facts = (0 until 10000).map { i ->
+            when (i % 3) {
+                0 -> listOf(Keyword.named("fact"), Atom.named("atom $i"))
+                1 -> listOf(Keyword.named("fact"), Value.raw(i))
+                else -> listOf(Keyword.named("other"), Atom.named("atom $i"))
+            }
+        }
+        val call = listOf(Keyword.named("fact"), Value.raw(9997))
+
+        assertThat(facts.count { PlainTerm.tryMatchTerms(it, call, knowns) != null }).toBe(1)
+        assertThat(facts.count { PlainTerm.tryMatchTerms(it, listOf(Keyword.named("fact"), variable), knowns) != null })
+                .toBe(6667)
+    }
+
+}
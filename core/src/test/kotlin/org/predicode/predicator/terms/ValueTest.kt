@@ -68,6 +68,22 @@ class ValueTest {
         assertThat(value.match(Atom.named("name"), knowns)).isEmpty()
     }
 
+    @Test
+    fun `tries to match without optional`() {
+
+        val value = Value.raw("value")
+        val variable = Variable.named("var")
+
+        knowns = Knowns.forVariables(variable)
+
+        assertThat(value.tryMatch(Value.raw("value"), knowns)).toBe(knowns)
+        assertThat(value.tryMatch(Value.raw(123), knowns)).toBe(null)
+
+        val resolved = value.tryMatch(variable, knowns)!!
+
+        assertThat(Value.raw(123).tryMatch(variable, resolved)).toBe(null)
+    }
+
     @Test
     fun `expands to itself`() {
 
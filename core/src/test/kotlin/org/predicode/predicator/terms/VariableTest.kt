@@ -18,6 +18,8 @@ import org.predicode.predicator.testutils.isEmpty
 import org.predicode.predicator.testutils.notToBeEmpty
 import org.predicode.predicator.testutils.toContain
 import reactor.test.StepVerifier
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 
 class VariableTest {
 
@@ -215,8 +217,8 @@ class VariableTest {
         assertThat(localVar.match(queryVar3, knowns)).notToBeEmpty {
             assertThat(subject.resolution(queryVar1).aliased())
                     .toContain(queryVar2)
-            assertThat(subject.resolution(queryVar2).aliased())
-                    .toContain(queryVar3)
+            assertThat(subject.resolution(queryVar3).aliased())
+                    .toContain(queryVar2) // Lower-ranked alias set joins the higher-ranked one
             subject.mapping(localVar) { mapping, _ ->
                 assertThat(mapping)
                         .toBe(queryVar1)
@@ -261,6 +263,42 @@ class VariableTest {
                     .startsWith("$prefix ")
         }
 
+        @Test
+        fun `numbered ones compared by number`() {
+
+            val variable = Variable.temp("t", 13)
+
+            assertThat(variable).toBe(Variable.temp("t", 13))
+            assertThat(variable.hashCode()).toBe(Variable.temp("t", 13).hashCode())
+            assertThat(variable).notToBe(Variable.temp("t", 14))
+            assertThat(variable.name).toBe("t 13")
+        }
+
+        @Test
+        fun `can not have negative number`() {
+            expect { Variable.temp("t", -1) }
+                    .toThrow<IllegalArgumentException> {}
+        }
+
+        @Test
+        fun `are unique across threads`() {
+
+            val threads = 4
+            val perThread = 10_000
+            val executor = Executors.newFixedThreadPool(threads)
+
+            try {
+
+                val variables = (0 until threads)
+                        .map { executor.submit(Callable { (0 until perThread).map { Variable.temp("t") } }) }
+                        .flatMap { it.get() }
+
+                assertThat(variables.toSet().size).toBe(threads * perThread)
+            } finally {
+                executor.shutdown()
+            }
+        }
+
     }
 
 }